@@ -30,6 +30,13 @@ java {
     withSourcesJar()
 }
 
+// Optional SIMD kernels (see AsciiCompressor.isVectorized()). At runtime, they are only used if the module is added too.
+val vectorModule = listOf("--add-modules", "jdk.incubator.vector")
+
+tasks.withType<JavaCompile>().configureEach {
+    options.compilerArgs.addAll(vectorModule)
+}
+
 tasks.build {
     doLast {
         copy {
@@ -41,12 +48,28 @@ tasks.build {
 
 tasks.javadoc {
     (options as StandardJavadocDocletOptions).addStringOption("Xdoclint:all,-missing", "-quiet")
+    (options as StandardJavadocDocletOptions).addStringOption("-add-modules", "jdk.incubator.vector")
 }
 
 tasks.test {
     useJUnitPlatform()
 }
 
+// Runs the compressor tests again, now on the SIMD kernels.
+val testVectorized by tasks.registering(Test::class) {
+    testClassesDirs = sourceSets.test.get().output.classesDirs
+    classpath = sourceSets.test.get().runtimeClasspath
+    useJUnitPlatform()
+    jvmArgs(vectorModule)
+    filter {
+        includeTestsMatching("com.dannemann.stringcompressor.*BitAsciiCompressorTest")
+    }
+}
+
+tasks.check {
+    dependsOn(testVectorized)
+}
+
 jmh {
     jmhVersion = "1.37"
     includes = listOf(".Benchmark.")
@@ -57,6 +80,7 @@ jmh {
     iterations = 3
     timeOnIteration = "10s"
     threads = 1
+    jvmArgsAppend = vectorModule
     timeUnit = "ms"
     resultFormat = "TEXT"
     resultsFile = file(
@@ -0,0 +1,112 @@
+package com.dannemann.stringcompressor.bulk;
+
+import com.dannemann.stringcompressor.SixBitAsciiCompressor;
+import com.dannemann.stringcompressor.util.TriConsumer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+import static com.dannemann.stringcompressor.SixBitAsciiCompressor.DEFAULT_6BIT_CHARSET;
+
+/**
+ * Compresses 10 MB of strings per operation ({@code length} bytes each) with {@link BulkCompressor}, against the
+ * previous engine: one parallel stream element and one boxed callback per string ({@code perString*}).
+ * @author Jean Dannemann Carone
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BulkCompressorBenchmark {
+
+	private static final int TOTAL_BYTES = 10 * 1024 * 1024;
+
+	@Param({"10", "100", "10240"})
+	int length;
+
+	byte[][] source;
+	byte[][] destination;
+	SixBitAsciiCompressor compressor;
+	BulkCompressor bulk;
+	LongAdder compressedBytes;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		final Random random = new Random(42);
+		source = new byte[TOTAL_BYTES / length][];
+		for (int i = 0; i < source.length; i++) {
+			source[i] = new byte[length];
+			for (int j = 0; j < length; j++)
+				source[i][j] = DEFAULT_6BIT_CHARSET[random.nextInt(DEFAULT_6BIT_CHARSET.length)];
+		}
+		destination = new byte[source.length][];
+		compressor = new SixBitAsciiCompressor(true, true);
+		bulk = new BulkCompressor(compressor, destination);
+		compressedBytes = new LongAdder();
+	}
+
+	@Benchmark
+	public byte[][] perString() {
+		perString(null);
+		return destination;
+	}
+
+	@Benchmark
+	public byte[][] perStringWithCallback() {
+		perString((i, s, c) -> compressedBytes.add(c.length));
+		return destination;
+	}
+
+	@Benchmark
+	public byte[][] chunked() {
+		bulk.bulkCompress(source, 0);
+		return destination;
+	}
+
+	@Benchmark
+	public byte[][] chunkedWithCallback() {
+		bulk.bulkCompressChunks(source, 0, (from, to) -> {
+			long bytes = 0;
+			for (int i = from; i < to; i++)
+				bytes += destination[i].length;
+			compressedBytes.add(bytes);
+		});
+		return destination;
+	}
+
+	/**
+	 * The engine {@link BulkCompressor} had before chunking.
+	 */
+	private void perString(final TriConsumer<Integer, byte[], byte[]> callback) {
+		IntStream.range(0, source.length).parallel().forEach(i -> {
+			final byte[] string = source[i];
+			final byte[] compressed = compressor.compress(string);
+			destination[i] = compressed;
+			if (callback != null)
+				callback.accept(i, string, compressed);
+		});
+	}
+
+	/**
+	 * For debugging (see JMH in build.gradle.kts).
+	 */
+	public static void main(String[] args) throws RunnerException {
+		new Runner(
+			new OptionsBuilder()
+				.include(BulkCompressorBenchmark.class.getSimpleName())
+				.forks(0)
+				.build())
+			.run();
+	}
+
+}
@@ -0,0 +1,134 @@
+package com.dannemann.stringcompressor.search;
+
+import com.dannemann.stringcompressor.FourBitAsciiCompressor;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import static com.dannemann.stringcompressor.AsciiCompressor.getBytes;
+
+/**
+ * Compares binary and interpolation search on 12-digit numeric IDs compressed with {@link FourBitAsciiCompressor}.
+ * {@code UNIFORM} IDs are spread evenly; {@code SKEWED} IDs vary in length and crowd at the low end of the range. The
+ * {@code *Probes} benchmarks count the strings compared per search ({@code probes / searches}).
+ * @author Jean Dannemann Carone
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class InterpolationSearchBenchmark {
+
+	private static final int KEYS = 1 << 16;
+
+	@Param({"UNIFORM", "SKEWED"})
+	String distribution;
+
+	@Param({"1000000", "10000000"})
+	int size;
+
+	FourBitBinarySearch binary;
+	FourBitBinarySearch binaryWithPrefixKeys;
+	InterpolationSearch interpolation;
+	InterpolationSearch bisection; // Same prefixes, no guesses.
+	byte[][] keys;
+	int next;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		final Random random = new Random(42);
+		final TreeSet<String> ids = new TreeSet<>();
+
+		while (ids.size() < size)
+			ids.add(String.valueOf("SKEWED".equals(distribution) ?
+				(long) Math.pow(10, random.nextDouble(12)) : random.nextLong(100_000_000_000L, 1_000_000_000_000L)));
+
+		final FourBitAsciiCompressor compressor = new FourBitAsciiCompressor();
+		final String[] sorted = ids.toArray(new String[0]);
+		final byte[][] data = new byte[size][];
+
+		for (int i = 0; i < size; i++)
+			data[i] = compressor.compress(getBytes(sorted[i]));
+
+		binary = new FourBitBinarySearch(data, false);
+		binaryWithPrefixKeys = new FourBitBinarySearch(data, false);
+		binaryWithPrefixKeys.buildPrefixKeys();
+		interpolation = new InterpolationSearch(binary);
+		bisection = new InterpolationSearch(binary, 0);
+
+		// Half of the keys are stored, half are missing.
+		keys = new byte[KEYS][];
+		for (int i = 0; i < KEYS; i++)
+			keys[i] = getBytes(i % 2 == 0 ? sorted[random.nextInt(size)] :
+				String.valueOf(random.nextLong(100_000_000_000L, 1_000_000_000_000L)));
+	}
+
+	@Benchmark
+	public int binarySearch() {
+		return binary.search(nextKey());
+	}
+
+	@Benchmark
+	public int binarySearchWithPrefixKeys() {
+		return binaryWithPrefixKeys.search(nextKey());
+	}
+
+	@Benchmark
+	public int interpolationSearch() {
+		return interpolation.search(nextKey());
+	}
+
+	@Benchmark
+	public void binaryProbes(final Probes counter) {
+		counter.probes += bisection.probes(nextKey());
+		counter.searches++;
+	}
+
+	@Benchmark
+	public void interpolationProbes(final Probes counter) {
+		counter.probes += interpolation.probes(nextKey());
+		counter.searches++;
+	}
+
+	private byte[] nextKey() {
+		return keys[next++ & KEYS - 1];
+	}
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Probes {
+
+		public long probes;
+		public long searches;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			probes = 0;
+			searches = 0;
+		}
+
+	}
+
+	/**
+	 * For debugging (see JMH in build.gradle.kts).
+	 */
+	public static void main(String[] args) throws RunnerException {
+		new Runner(
+			new OptionsBuilder()
+				.include(InterpolationSearchBenchmark.class.getSimpleName())
+				.forks(0)
+				.build())
+			.run();
+	}
+
+}
@@ -2,8 +2,12 @@ package com.dannemann.stringcompressor;
 
 import com.dannemann.stringcompressor.exception.CharacterNotSupportedException;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
+import static java.nio.ByteOrder.BIG_ENDIAN;
 import static java.nio.charset.StandardCharsets.ISO_8859_1;
 
 /**
@@ -20,11 +24,29 @@ public abstract class AsciiCompressor {
 	protected static final boolean THROW_EXCEPTION_DEFAULT = false;
 	protected static final boolean PRESERVE_ORIGINAL_DEFAULT = false;
 
+	/**
+	 * Big-endian {@code long} view over {@code byte[]}, used by the word-at-a-time (8 characters per step) kernels.
+	 */
+	protected static final VarHandle LONG_VIEW = MethodHandles.byteArrayViewVarHandle(long[].class, BIG_ENDIAN);
+
+	/**
+	 * @see #isVectorized()
+	 */
+	protected static final boolean VECTORIZED = vectorSupported();
+
+	/**
+	 * Number of characters decompressed into charset indices before they are mapped to characters by the SIMD kernel.
+	 */
+	protected static final int DECODE_BLOCK = 1024;
+
 	protected final byte[] supportedCharset;
 	protected final boolean throwException;
 	protected final boolean preserveOriginal;
 
 	private final byte[] lookupTable = new byte[128];
+	private final byte[] encodingTable = new byte[256];
+	final byte[] vectorLookupTable; // Also used by the packing kernels of the compressors.
+	private final byte[] vectorCharset;
 
 	// Constructor:
 
@@ -43,6 +65,13 @@ public abstract class AsciiCompressor {
 		Arrays.fill(lookupTable, (byte) -1);
 		for (int i = 0, len = supportedCharset.length; i < len; i++)
 			lookupTable[supportedCharset[i]] = (byte) i;
+
+		// Non-ASCII characters are masked to 7 bits in lenient mode, as they always were.
+		for (int i = 0; i < 256; i++)
+			encodingTable[i] = i < 128 ? lookupTable[i] : throwException ? -1 : lookupTable[i & 0x7F];
+
+		vectorLookupTable = VECTORIZED ? VectorCodec.pad(lookupTable) : null;
+		vectorCharset = VECTORIZED ? VectorCodec.pad(supportedCharset) : null;
 	}
 
 	// Abstract methods:
@@ -65,8 +94,107 @@ public abstract class AsciiCompressor {
 	 */
 	public abstract byte[] decompress(final byte[] compressed);
 
+	/**
+	 * <p>Compresses {@code len} bytes of {@code src}, starting at {@code off}, directly into {@code dst} starting at
+	 * {@code dstOff}. The source is not modified and no intermediate arrays are allocated.</p>
+	 * <p>The output is identical to {@link #compress(byte[])} applied to the same range. Use {@link #compressedLength(int)}
+	 * to size the destination.</p>
+	 * @param src Source string bytes.
+	 * @param off Index of the first byte of {@code src} to be compressed.
+	 * @param len Number of bytes to be compressed.
+	 * @param dst Destination array.
+	 * @param dstOff Index of {@code dst} where the compressed data starts being written.
+	 * @return The number of bytes written to {@code dst}.
+	 * @throws NullPointerException If {@code src} or {@code dst} is null.
+	 * @throws IndexOutOfBoundsException If the source range is out of bounds or {@code dst} is too small.
+	 */
+	public abstract int compress(final byte[] src, final int off, final int len, final byte[] dst, final int dstOff);
+
+	/**
+	 * <p>Decompresses {@code len} bytes of {@code src}, starting at {@code off}, directly into {@code dst} starting at
+	 * {@code dstOff}. The source range must contain exactly one compressed string.</p>
+	 * <p>Use {@link #decompressedLength(byte[], int, int)} to size the destination.</p>
+	 * @param src Compressed data.
+	 * @param off Index of the first byte of the compressed string.
+	 * @param len Length of the compressed string.
+	 * @param dst Destination array.
+	 * @param dstOff Index of {@code dst} where the decompressed data starts being written.
+	 * @return The number of bytes written to {@code dst}.
+	 * @throws NullPointerException If {@code src} or {@code dst} is null.
+	 * @throws IndexOutOfBoundsException If the source range is out of bounds or {@code dst} is too small.
+	 */
+	public abstract int decompress(final byte[] src, final int off, final int len, final byte[] dst, final int dstOff);
+
+	/**
+	 * @return Number of bits each character occupies once compressed (4, 5 or 6 for the standard compressors).
+	 */
+	public abstract int getBitsPerCharacter();
+
+	/**
+	 * @param len Length of an uncompressed string.
+	 * @return The exact number of bytes the compressed form of a {@code len}-byte string occupies.
+	 */
+	public abstract int compressedLength(final int len);
+
+	/**
+	 * @param compressed Compressed data.
+	 * @param off Index of the first byte of the compressed string.
+	 * @param len Length of the compressed string.
+	 * @return The exact number of bytes the decompressed string occupies.
+	 */
+	public abstract int decompressedLength(final byte[] compressed, final int off, final int len);
+
+	/**
+	 * <p>Compresses all remaining bytes of {@code in} into {@code out}, starting at their current positions. Works with
+	 * heap, direct, read-only, and memory-mapped buffers. The input buffer is never modified and nothing is allocated.</p>
+	 * <p>On success, the position of {@code in} is advanced to its limit and the position of {@code out} by the number
+	 * of bytes written. The output is identical to {@link #compress(byte[])}.</p>
+	 * <p>Off-heap {@code java.lang.foreign.MemorySegment}s can be compressed without copies through
+	 * {@code segment.asByteBuffer()}.</p>
+	 * @param in Source string bytes.
+	 * @param out Destination buffer.
+	 * @return The number of bytes written to {@code out}.
+	 * @throws java.nio.BufferOverflowException If {@code out} has fewer than {@link #compressedLength(int)} bytes
+	 * remaining. Neither buffer is modified in this case.
+	 * @throws java.nio.ReadOnlyBufferException If {@code out} is read-only.
+	 */
+	public abstract int compress(final ByteBuffer in, final ByteBuffer out);
+
+	/**
+	 * <p>Decompresses all remaining bytes of {@code in}, which must contain exactly one compressed string, into
+	 * {@code out}, starting at their current positions.</p>
+	 * <p>On success, the position of {@code in} is advanced to its limit and the position of {@code out} by the number
+	 * of bytes written.</p>
+	 * @param in Compressed data.
+	 * @param out Destination buffer.
+	 * @return The number of bytes written to {@code out}.
+	 * @throws java.nio.BufferOverflowException If {@code out} has fewer than {@link #decompressedLength(ByteBuffer)}
+	 * bytes remaining. Neither buffer is modified in this case.
+	 * @throws java.nio.ReadOnlyBufferException If {@code out} is read-only.
+	 */
+	public abstract int decompress(final ByteBuffer in, final ByteBuffer out);
+
+	/**
+	 * @param compressed Buffer whose remaining bytes hold exactly one compressed string. Its position is not changed.
+	 * @return The exact number of bytes the decompressed string occupies.
+	 */
+	public abstract int decompressedLength(final ByteBuffer compressed);
+
 	protected abstract void validateSupportedCharset(byte[] supportedCharset);
 
+	// Incremental compression:
+
+	/**
+	 * <p>Creates a session that compresses a string delivered in fragments (e.g., network reads) as they arrive, without
+	 * buffering the whole string. The output is identical to {@link #compress(byte[])} applied to the concatenated fragments.</p>
+	 * <p>Sessions are cheap, reusable through {@link AsciiEncoderSession#reset()}, and not thread-safe.</p>
+	 * @return A new session bound to this compressor.
+	 * @author Jean Dannemann Carone
+	 */
+	public AsciiEncoderSession newSession() {
+		return new AsciiEncoderSession(this);
+	}
+
 	// Protected interface:
 
 	protected void standardCharsetValidation(byte[] supportedCharset, int numBits) {
@@ -86,25 +214,116 @@ public abstract class AsciiCompressor {
 	 * @author Jean Dannemann Carone
 	 */
 	protected void encode(final byte[] string, final int len) {
-		if (throwException)
-			for (int i = 0; i < len; i++) {
-				final byte bite = string[i];
+		encode(string, 0, len);
+	}
+
+	/**
+	 * <p>Replaces each character in the range with its index in the supported charset.</p>
+	 * <p>Strict mode uses the same check as the single-pass kernels: the results of {@link #encode(byte)} are ORed and
+	 * {@link #unsupported(byte[], int, int)} is only called if that turns negative. The range is checked before being
+	 * mapped, so it is left untouched if an exception is thrown.</p>
+	 */
+	protected void encode(final byte[] string, final int off, final int len) {
+		final int end = off + len;
+
+		if (throwException) {
+			int invalid = 0;
+
+			for (int i = off; i < end; i++)
+				invalid |= encode(string[i]);
+
+			if (invalid < 0)
+				throw unsupported(string, off, len);
+		}
+
+		for (int i = off; i < end; i++)
+			string[i] = encode(string[i]);
+	}
+
+	/**
+	 * Replaces each charset index in the range with its character. The inverse of {@link #encode(byte[], int, int)}.
+	 */
+	protected void decode(final byte[] string, final int off, final int len) {
+		final int end = off + len;
+
+		for (int i = VECTORIZED ? VectorCodec.decode(vectorCharset, string, off, len) : off; i < end; i++)
+			string[i] = supportedCharset[string[i]];
+	}
 
-				if (bite < 0)
-					throw new CharacterNotSupportedException(
-						"Only ASCII characters are supported. Invalid '" + (char) bite + "' with code point " + bite + " in string (maybe incomplete): \"" + getString(string) + "\"");
+	/**
+	 * <p>Maps a single character to its index in the supported charset, without validation (see {@link #validate(ByteBuffer, int, int)}).</p>
+	 * <p>Returns a negative value for unsupported characters. In strict mode, this also includes non-ASCII ones.</p>
+	 */
+	protected final byte encode(final byte bite) {
+		return encodingTable[bite & 0xFF];
+	}
 
-				final byte encoded = lookupTable[bite];
+	/**
+	 * <p>Builds the exception for the first unsupported character in the range. Meant for compressors that map and pack
+	 * in a single pass without modifying the input: they only need to OR the results of {@link #encode(byte)} (negative
+	 * if anything was wrong in strict mode) and call this at the end.</p>
+	 * @throws IllegalStateException If every character in the range is supported.
+	 */
+	protected final CharacterNotSupportedException unsupported(final byte[] string, final int off, final int len) {
+		for (int i = off, end = off + len; i < end; i++) {
+			final byte bite = string[i];
 
-				if (encoded == -1)
-					throw new CharacterNotSupportedException(
-						"Character '" + (char) bite + "' with code point " + bite + " is not defined in the supported characters array. Source string is (maybe incomplete): \"" + getString(string) + "\"");
+			if (bite < 0)
+				return notAscii(bite, getString(string, off, len));
+
+			if (lookupTable[bite] == -1)
+				return notSupported(bite, getString(string, off, len));
+		}
 
-				string[i] = encoded;
-			}
-		else
-			for (int i = 0; i < len; i++)
-				string[i] = lookupTable[string[i] & 0x7F];
+		throw new IllegalStateException("No unsupported character found");
+	}
+
+	/**
+	 * <p>Checks, without modifying the buffer, that every character in the range is supported. Used by the
+	 * {@link ByteBuffer} methods, which never write to their input.</p>
+	 * <p>Does nothing if {@link #throwException} is {@code false}.</p>
+	 * @throws CharacterNotSupportedException If an unsupported character is found.
+	 */
+	protected void validate(final ByteBuffer string, final int off, final int len) {
+		if (throwException) {
+			int invalid = 0;
+
+			for (int i = off, end = off + len; i < end; i++)
+				invalid |= encode(string.get(i));
+
+			if (invalid < 0)
+				for (int i = off, end = off + len; i < end; i++) {
+					final byte bite = string.get(i);
+
+					if (bite < 0)
+						throw notAscii(bite, getString(string, off, len));
+
+					if (lookupTable[bite] == -1)
+						throw notSupported(bite, getString(string, off, len));
+				}
+		}
+	}
+
+	private static boolean vectorSupported() {
+		if (!Boolean.parseBoolean(System.getProperty("stringcompressor.vector", "true"))
+			|| ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty())
+			return false;
+
+		try {
+			return VectorCodec.LANES >= 32;
+		} catch (LinkageError e) {
+			return false;
+		}
+	}
+
+	private static CharacterNotSupportedException notAscii(final byte bite, final String source) {
+		return new CharacterNotSupportedException(
+			"Only ASCII characters are supported. Invalid '" + (char) bite + "' with code point " + bite + " in string (maybe incomplete): \"" + source + "\"");
+	}
+
+	private static CharacterNotSupportedException notSupported(final byte bite, final String source) {
+		return new CharacterNotSupportedException(
+			"Character '" + (char) bite + "' with code point " + bite + " is not defined in the supported characters array. Source string is (maybe incomplete): \"" + source + "\"");
 	}
 
 	// Utils:
@@ -135,6 +354,27 @@ public abstract class AsciiCompressor {
 		return bytes != null ? new String(bytes, ISO_8859_1) : null;
 	}
 
+	private static String getString(final byte[] bytes, final int off, final int len) {
+		return new String(bytes, off, len, ISO_8859_1);
+	}
+
+	private static String getString(final ByteBuffer buffer, final int off, final int len) {
+		final byte[] bytes = new byte[len];
+		buffer.get(off, bytes);
+		return getString(bytes);
+	}
+
+	/**
+	 * <p>Whether the SIMD (Vector API) kernels are in use. They are selected automatically when the incubating module
+	 * {@code jdk.incubator.vector} is present ({@code --add-modules jdk.incubator.vector}) and the platform's preferred
+	 * vector holds at least 32 bytes (AVX2 and above). Otherwise, the scalar code is used. Both produce the same output.</p>
+	 * <p>Can be disabled with system property {@code -Dstringcompressor.vector=false}.</p>
+	 * @author Jean Dannemann Carone
+	 */
+	public static boolean isVectorized() {
+		return VECTORIZED;
+	}
+
 	// Getters:
 
 	/**
@@ -142,9 +382,13 @@ public abstract class AsciiCompressor {
 	 * explicitly by this charset, which is typically chosen based on specific application requirements.</p>
 	 * <p>Refer to the default character sets provided by this library: {@link FourBitAsciiCompressor#DEFAULT_4BIT_CHARSET},
 	 * {@link FiveBitAsciiCompressor#DEFAULT_5BIT_CHARSET}, and {@link SixBitAsciiCompressor#DEFAULT_6BIT_CHARSET}.</p>
-	 * <p>Important: The order in which you list characters in this array matters, as it defines the lexicographic
-	 * order the binary search will follow. It's good practice to define your custom charset in standard ASCII order.</p>
+	 * <p>Important: The order in which you list characters in this array matters. Binary searches follow the order of
+	 * the original strings (ASCII), and compare compressed bytes directly only if the charset is in ascending ASCII
+	 * order (otherwise, each character is compared by its rank, see
+	 * {@link com.dannemann.stringcompressor.search.CharsetOrder}). It's good practice to define your custom charset in
+	 * standard ASCII order.</p>
 	 * @author Jean Dannemann Carone
+	 * @see com.dannemann.stringcompressor.search.CharsetOrder
 	 * @see com.dannemann.stringcompressor.search.FourBitBinarySearch
 	 * @see com.dannemann.stringcompressor.search.FiveBitBinarySearch
 	 * @see com.dannemann.stringcompressor.search.SixBitBinarySearch
@@ -165,8 +409,10 @@ public abstract class AsciiCompressor {
 	}
 
 	/**
-	 * <p>When dealing directly with byte[] string representation, the compressor will modify the original array, encoding
-	 * it and making it unusable. To avoid this behavior and compress a copy of the original, set this to {@code true}.</p>
+	 * <p>Compressors used to encode {@code byte[]} strings in place, making them unusable, unless this was {@code true}.
+	 * Characters are now mapped while being packed, so input arrays are never modified and no copy is made either way.</p>
+	 * <p>Still used by {@link com.dannemann.stringcompressor.bulk.BulkCompressor}, which releases each source entry once
+	 * compressed when this is {@code false}.</p>
 	 * <p>Useful for testing and debugging on a zero-allocation environment, when the source is also a byte array.</p>
 	 * @author Jean Dannemann Carone
 	 */
@@ -0,0 +1,195 @@
+package com.dannemann.stringcompressor;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+import static java.util.Objects.checkFromIndexSize;
+
+/**
+ * <p>Compresses a single string delivered in fragments, writing the compressed bytes as soon as they are known.
+ * Obtained through {@link AsciiCompressor#newSession()}.</p>
+ * <p>Characters are compressed in groups of 8, whose compressed form is byte-aligned ({@code bits} bytes per group),
+ * so only the last incomplete group (up to 7 characters) is kept between calls. Complete groups are compressed directly
+ * from the fragment into the output buffer (heap or direct), with no intermediate copies. Only the last group of each
+ * call goes through a small array, so nothing is ever written to {@code out} past the bytes returned.</p>
+ * <pre>{@code
+ * AsciiEncoderSession session = compressor.newSession();
+ * // For each fragment:
+ *     session.feed(fragment, 0, fragment.length, out);
+ * session.finish(out); // out now holds exactly what compressor.compress(wholeString) returns.
+ * }</pre>
+ * <p>If the compressor throws exceptions on unsupported characters, they are thrown by {@code feed} (or by
+ * {@link #finish(ByteBuffer)} for the last characters). The session must be {@link #reset()} afterward.</p>
+ * <p>This class is not thread-safe.</p>
+ * @author Jean Dannemann Carone
+ * @see AsciiCompressor#newSession()
+ */
+public final class AsciiEncoderSession {
+
+	// Fields:
+
+	private final AsciiCompressor compressor;
+	private final int bits;
+	private final byte[] pending = new byte[8];
+	private final byte[] tail;
+	private final byte[] group; // Last group of a feed, with its flag byte.
+
+	private int pendingLen;
+	private long count;
+
+	// Constructor:
+
+	AsciiEncoderSession(AsciiCompressor compressor) {
+		this.compressor = compressor;
+		this.bits = compressor.getBitsPerCharacter();
+		this.tail = new byte[compressor.compressedLength(7)];
+		this.group = new byte[compressor.compressedLength(8)];
+	}
+
+	// Session:
+
+	/**
+	 * <p>Compresses the next {@code len} bytes of the string into {@code out}, starting at its current position, which is
+	 * advanced by the number of bytes written. Up to 7 trailing characters are held until the next call.</p>
+	 * @param chunk Fragment of the string.
+	 * @param off Index of the first byte of {@code chunk} to be compressed.
+	 * @param len Number of bytes to be compressed.
+	 * @param out Destination buffer.
+	 * @return The number of bytes written to {@code out}, a multiple of {@link AsciiCompressor#getBitsPerCharacter()}.
+	 * @throws IndexOutOfBoundsException If the fragment range is out of bounds.
+	 * @throws BufferOverflowException If {@code out} has fewer than {@link #feedLength(int)} bytes remaining. Nothing is
+	 * consumed or written in this case.
+	 * @throws java.nio.ReadOnlyBufferException If {@code out} is read-only.
+	 * @author Jean Dannemann Carone
+	 */
+	public int feed(final byte[] chunk, int off, int len, final ByteBuffer out) {
+		checkFromIndexSize(off, len, chunk.length);
+
+		final int written = feedLength(len);
+
+		if (out.remaining() < written)
+			throw new BufferOverflowException();
+
+		count += len;
+
+		if (pendingLen != 0) {
+			final int fill = Math.min(8 - pendingLen, len);
+			System.arraycopy(chunk, off, pending, pendingLen, fill);
+			pendingLen += fill;
+			off += fill;
+			len -= fill;
+
+			if (pendingLen < 8)
+				return written;
+
+			writeGroups(pending, 0, 8, out);
+			pendingLen = 0;
+		}
+
+		final int groups = len & ~7;
+
+		if (groups != 0)
+			writeGroups(chunk, off, groups, out);
+
+		System.arraycopy(chunk, off + groups, pending, 0, len - groups);
+		pendingLen = len - groups;
+
+		return written;
+	}
+
+	/**
+	 * <p>Compresses the characters still held and writes the end of the compressed string into {@code out}, starting at
+	 * its current position, which is advanced by the number of bytes written. The session is then {@link #reset()}
+	 * and can start a new string.</p>
+	 * @param out Destination buffer.
+	 * @return The number of bytes written to {@code out}.
+	 * @throws BufferOverflowException If {@code out} has fewer than {@link #finishLength()} bytes remaining. The session
+	 * is not changed in this case.
+	 * @throws java.nio.ReadOnlyBufferException If {@code out} is read-only.
+	 * @author Jean Dannemann Carone
+	 */
+	public int finish(final ByteBuffer out) {
+		final int written = finishLength();
+
+		if (out.remaining() < written)
+			throw new BufferOverflowException();
+
+		if (pendingLen != 0) {
+			compressor.compress(pending, 0, pendingLen, tail, 0);
+			out.put(tail, 0, written);
+		} else if (count != 0)
+			out.put((byte) 0); // Flag byte of a byte-aligned string.
+
+		reset();
+
+		return written;
+	}
+
+	/**
+	 * Discards the current string (including characters held between calls), so the session can start a new one.
+	 * @author Jean Dannemann Carone
+	 */
+	public void reset() {
+		pendingLen = 0;
+		count = 0;
+	}
+
+	/**
+	 * @param len Length of the next fragment.
+	 * @return The exact number of bytes {@link #feed(byte[], int, int, ByteBuffer)} writes for a {@code len}-byte fragment.
+	 * @author Jean Dannemann Carone
+	 */
+	public int feedLength(final int len) {
+		return (int) ((pendingLen + (long) len) >> 3) * bits;
+	}
+
+	/**
+	 * @return The exact number of bytes {@link #finish(ByteBuffer)} writes.
+	 * @author Jean Dannemann Carone
+	 */
+	public int finishLength() {
+		return pendingLen != 0 ? compressor.compressedLength(pendingLen) : (int) (-count >>> 63);
+	}
+
+	// Getters:
+
+	/**
+	 * @return Number of characters fed since the session started (or was last reset).
+	 * @author Jean Dannemann Carone
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return The compressor this session is bound to.
+	 * @author Jean Dannemann Carone
+	 */
+	public AsciiCompressor getCompressor() {
+		return compressor;
+	}
+
+	// Private methods:
+
+	/**
+	 * Compresses a multiple of 8 characters. Its compressed form is byte-aligned, but the compressor also writes a zero
+	 * flag byte after it. So all groups but the last are compressed straight into {@code out} (their flag byte lands
+	 * where the last group goes), and the last one into {@link #group}, of which only {@code bits} bytes are copied.
+	 */
+	private void writeGroups(final byte[] src, final int off, final int len, final ByteBuffer out) {
+		final int pos = out.position();
+		final int head = len - 8;
+		final int headSize = (head >> 3) * bits;
+
+		if (head != 0)
+			if (out.hasArray())
+				compressor.compress(src, off, head, out.array(), out.arrayOffset() + pos);
+			else
+				compressor.compress(ByteBuffer.wrap(src, off, head), out);
+
+		compressor.compress(src, off + head, 8, group, 0);
+		out.put(pos + headSize, group, 0, bits);
+		out.position(pos + headSize + bits);
+	}
+
+}
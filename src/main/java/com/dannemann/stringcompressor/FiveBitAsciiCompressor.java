@@ -1,5 +1,10 @@
 package com.dannemann.stringcompressor;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+import static java.util.Objects.checkFromIndexSize;
+
 /**
  * <p>Performs 5-bit-per-ASCII-character encoding and decoding.</p>
  * <p>Compression rate: 38%</p>
@@ -71,7 +76,7 @@ public class FiveBitAsciiCompressor extends AsciiCompressor {
 	 * Creates a new compressor instance using the default 5-bit character set ({@link #DEFAULT_5BIT_CHARSET}),
 	 * with configurable exception-throwing behavior and byte array data preservation.
 	 * @param throwException If {@code true}, throws an exception on unsupported characters; otherwise, silently ignores them.
-	 * @param preserveOriginal If {@code true}, preserves the original input byte array by working on a copy; otherwise, modifies it directly.
+	 * @param preserveOriginal Input arrays are never modified anymore. See {@link #isPreserveOriginal()}.
 	 * @author Jean Dannemann Carone
 	 * @see #isThrowException()
 	 * @see #isPreserveOriginal()
@@ -84,7 +89,7 @@ public class FiveBitAsciiCompressor extends AsciiCompressor {
 	 * Creates a new compressor instance with a user defined 5-bit character set, configurable exception-throwing behavior, and byte array data preservation.
 	 * @param supportedCharset The custom set of supported characters. See {@link #DEFAULT_5BIT_CHARSET} for an example of how to define it.
 	 * @param throwException If {@code true}, throws an exception on unsupported characters; otherwise, silently ignores them.
-	 * @param preserveOriginal If {@code true}, preserves the original input byte array by working on a copy; otherwise, modifies it directly.
+	 * @param preserveOriginal Input arrays are never modified anymore. See {@link #isPreserveOriginal()}.
 	 * @author Jean Dannemann Carone
 	 * @see #getSupportedCharset()
 	 * @see #isThrowException()
@@ -104,33 +109,108 @@ public class FiveBitAsciiCompressor extends AsciiCompressor {
 	 */
 	@Override
 	public final byte[] compress(final byte[] string) {
-		final byte[] str = preserveOriginal ? string.clone() : string;
-		final int len = string.length;
-
-		encode(str, len);
+		final byte[] compressed = new byte[compressedLength(string.length)];
+		compress(string, 0, string.length, compressed, 0);
+		return compressed;
+	}
 
+	/**
+	 * Range version of {@link #compress(byte[])}.
+	 * @throws NullPointerException {@inheritDoc}
+	 * @throws IndexOutOfBoundsException {@inheritDoc}
+	 * @author Jean Dannemann Carone
+	 */
+	@Override
+	public final int compress(final byte[] src, final int off, final int len, final byte[] dst, final int dstOff) {
 		final int compressedLen = (int) (len * 5L + 7 >> 3);
-		final byte[] compressed = new byte[compressedLen + (-len >>> 31)];
+
+		checkFromIndexSize(off, len, src.length);
+		checkFromIndexSize(dstOff, compressedLen + (-len >>> 31), dst.length);
+
+		final int end = off + len;
+		final int wordEnd = end - 8;
+		final int dstWordEnd = dstOff + compressedLen + (-len >>> 31) - 8;
+		final int vectorized = VECTORIZED ? VectorCodec.pack(vectorLookupTable, 5, src, off, len, dst, dstOff, dstWordEnd + 8) : 0;
+		int i = off + vectorized;
+		int j = dstOff + (vectorized >> 3) * 5;
+
+		// Word-at-a-time: 8 characters (40 bits) mapped and written per step.
+		for (; i <= wordEnd && j <= dstWordEnd; i += 8, j += 5) {
+			final long c0 = encode(src[i]), c1 = encode(src[i + 1]), c2 = encode(src[i + 2]), c3 = encode(src[i + 3]);
+			final long c4 = encode(src[i + 4]), c5 = encode(src[i + 5]), c6 = encode(src[i + 6]), c7 = encode(src[i + 7]);
+
+			if ((c0 | c1 | c2 | c3 | c4 | c5 | c6 | c7) < 0)
+				break; // Unsupported character. Handled by the loop below to keep the output unchanged.
+
+			LONG_VIEW.set(dst, j, c0 << 59 | c1 << 54 | c2 << 49 | c3 << 44 | c4 << 39 | c5 << 34 | c6 << 29 | c7 << 24);
+		}
+
+		int invalid = 0;
 		int buffer = 0;
 		int bitsInBuffer = 0;
-		int j = 0;
 
-		for (int i = 0; i < len; i++) {
-			buffer = buffer << 5 | str[i];
+		for (; i < end; i++) {
+			final byte encoded = encode(src[i]);
+			invalid |= encoded;
+			buffer = buffer << 5 | encoded;
 			bitsInBuffer += 5;
 
 			if (bitsInBuffer >= 8)
-				compressed[j++] = (byte) (buffer >>> (bitsInBuffer -= 8));
+				dst[j++] = (byte) (buffer >>> (bitsInBuffer -= 8));
 		}
 
+		if (throwException && invalid < 0)
+			throw unsupported(src, off, len);
+
 		if (bitsInBuffer > 0) {
-			compressed[j] = (byte) (buffer << 8 - bitsInBuffer);
+			dst[j++] = (byte) (buffer << 8 - bitsInBuffer);
+			dst[j] = (byte) (bitsInBuffer <= 3 ? 0x01 : 0);
+		} else if (len != 0)
+			dst[j] = 0;
+
+		return compressedLen + (-len >>> 31);
+	}
+
+	/**
+	 * {@link ByteBuffer} version of {@link #compress(byte[])}.
+	 * @throws java.nio.BufferOverflowException {@inheritDoc}
+	 * @author Jean Dannemann Carone
+	 */
+	@Override
+	public final int compress(final ByteBuffer in, final ByteBuffer out) {
+		final int pos = in.position();
+		final int outPos = out.position();
+		final int len = in.limit() - pos;
+		final int compressedLen = compressedLength(len);
+
+		if (out.limit() - outPos < compressedLen)
+			throw new BufferOverflowException();
+
+		validate(in, pos, len);
+
+		final int end = pos + len;
+		int buffer = 0;
+		int bitsInBuffer = 0;
+		int j = outPos;
+
+		for (int i = pos; i < end; i++) {
+			buffer = buffer << 5 | encode(in.get(i));
+			bitsInBuffer += 5;
 
-			if (bitsInBuffer <= 3)
-				compressed[compressedLen] |= 0x01;
+			if (bitsInBuffer >= 8)
+				out.put(j++, (byte) (buffer >>> (bitsInBuffer -= 8)));
 		}
 
-		return compressed;
+		if (bitsInBuffer > 0) {
+			out.put(j++, (byte) (buffer << 8 - bitsInBuffer));
+			out.put(j, (byte) (bitsInBuffer <= 3 ? 0x01 : 0));
+		} else if (len != 0)
+			out.put(j, (byte) 0);
+
+		in.position(end);
+		out.position(outPos + compressedLen);
+
+		return compressedLen;
 	}
 
 	/**
@@ -149,29 +229,145 @@ public class FiveBitAsciiCompressor extends AsciiCompressor {
 	 */
 	@Override
 	public final byte[] decompress(final byte[] compressed) {
-		final int compressedLen = compressed.length;
+		final byte[] decompressed = new byte[decompressedLength(compressed, 0, compressed.length)];
+		decompress(compressed, 0, compressed.length, decompressed, 0);
+		return decompressed;
+	}
+
+	/**
+	 * Range version of {@link #decompress(byte[])}.
+	 * @throws NullPointerException {@inheritDoc}
+	 * @throws IndexOutOfBoundsException {@inheritDoc}
+	 * @author Jean Dannemann Carone
+	 */
+	@Override
+	public final int decompress(final byte[] src, final int off, final int len, final byte[] dst, final int dstOff) {
+		checkFromIndexSize(off, len, src.length);
+
+		final int dLen = decompressedLength(src, off, len);
 
-		if (compressedLen == 0)
-			return new byte[0];
+		checkFromIndexSize(dstOff, dLen, dst.length);
+
+		final int end = off + len - 1;
+		final int dEnd = dstOff + dLen;
+		final int wordEnd = end - 7;
+		final int dWordEnd = dEnd - 8;
+		int i = off;
+		int j = dstOff;
+
+		// Word-at-a-time: 5 bytes (8 characters) per step. With SIMD, they are split into charset indices first,
+		// which are then mapped to characters block by block.
+		if (VECTORIZED)
+			while (i <= wordEnd && j <= dWordEnd) {
+				final int block = j;
+
+				for (final int blockEnd = Math.min(dWordEnd, j + DECODE_BLOCK); i <= wordEnd && j <= blockEnd; i += 5, j += 8)
+					LONG_VIEW.set(dst, j, spread((long) LONG_VIEW.get(src, i) >>> 24));
+
+				decode(dst, block, j - block);
+			}
+		else
+			for (; i <= wordEnd && j <= dWordEnd; i += 5) {
+				final long word = (long) LONG_VIEW.get(src, i) >>> 24;
+
+				for (int shift = 35; shift >= 0; shift -= 5)
+					dst[j++] = supportedCharset[(int) (word >>> shift) & 0x1F];
+			}
 
-		final int cLenMinus = compressedLen - 1;
-		final int dLen = (int) (cLenMinus * 8L / 5) - (compressed[cLenMinus] & 1);
-		final byte[] decompressed = new byte[dLen];
 		int buffer = 0;
 		int bitsInBuffer = 0;
 
-		for (int i = 0, j = 0; i < cLenMinus; i++) {
-			buffer = buffer << 8 | compressed[i] & 0xFF;
+		for (; i < end; i++) {
+			buffer = buffer << 8 | src[i] & 0xFF;
 			bitsInBuffer += 8;
 
 			if (bitsInBuffer >= 5)
-				decompressed[j++] = supportedCharset[buffer >>> (bitsInBuffer -= 5) & 0x1F];
+				dst[j++] = supportedCharset[buffer >>> (bitsInBuffer -= 5) & 0x1F];
 
-			if (bitsInBuffer >= 5 && j < dLen)
-				decompressed[j++] = supportedCharset[buffer >>> (bitsInBuffer -= 5) & 0x1F];
+			if (bitsInBuffer >= 5 && j < dEnd)
+				dst[j++] = supportedCharset[buffer >>> (bitsInBuffer -= 5) & 0x1F];
 		}
 
-		return decompressed;
+		return dLen;
+	}
+
+	/**
+	 * {@link ByteBuffer} version of {@link #decompress(byte[])}.
+	 * @throws java.nio.BufferOverflowException {@inheritDoc}
+	 * @author Jean Dannemann Carone
+	 */
+	@Override
+	public final int decompress(final ByteBuffer in, final ByteBuffer out) {
+		final int pos = in.position();
+		final int outPos = out.position();
+		final int dLen = decompressedLength(in);
+
+		if (out.limit() - outPos < dLen)
+			throw new BufferOverflowException();
+
+		final int end = in.limit() - 1;
+		final int dEnd = outPos + dLen;
+		int buffer = 0;
+		int bitsInBuffer = 0;
+
+		for (int i = pos, j = outPos; i < end; i++) {
+			buffer = buffer << 8 | in.get(i) & 0xFF;
+			bitsInBuffer += 8;
+
+			if (bitsInBuffer >= 5)
+				out.put(j++, supportedCharset[buffer >>> (bitsInBuffer -= 5) & 0x1F]);
+
+			if (bitsInBuffer >= 5 && j < dEnd)
+				out.put(j++, supportedCharset[buffer >>> (bitsInBuffer -= 5) & 0x1F]);
+		}
+
+		in.position(in.limit());
+		out.position(dEnd);
+
+		return dLen;
+	}
+
+	@Override
+	public final int getBitsPerCharacter() {
+		return 5;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>5 bits per character rounded up to a whole byte, plus a trailing flag byte (omitted for empty strings).</p>
+	 */
+	@Override
+	public final int compressedLength(final int len) {
+		return (int) (len * 5L + 7 >> 3) + (-len >>> 31);
+	}
+
+	@Override
+	public final int decompressedLength(final byte[] compressed, final int off, final int len) {
+		if (len == 0)
+			return 0;
+
+		final int cLenMinus = len - 1;
+
+		return (int) (cLenMinus * 8L / 5) - (compressed[off + cLenMinus] & 1);
+	}
+
+	@Override
+	public final int decompressedLength(final ByteBuffer compressed) {
+		final int cLenMinus = compressed.remaining() - 1;
+
+		if (cLenMinus < 0)
+			return 0;
+
+		return (int) (cLenMinus * 8L / 5) - (compressed.get(compressed.limit() - 1) & 1);
+	}
+
+	/**
+	 * Spreads 8 5-bit values (the lowest 40 bits of {@code word}) into the 8 bytes of a big-endian long.
+	 */
+	private static long spread(long word) {
+		word = (word & 0x000000FFFFF00000L) << 12 | word & 0x00000000000FFFFFL;
+		word = (word & 0x000FFC00000FFC00L) << 6 | word & 0x000003FF000003FFL;
+		return (word & 0x03E003E003E003E0L) << 3 | word & 0x001F001F001F001FL;
 	}
 
 	@Override
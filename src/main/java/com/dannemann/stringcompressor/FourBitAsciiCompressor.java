@@ -1,5 +1,10 @@
 package com.dannemann.stringcompressor;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+import static java.util.Objects.checkFromIndexSize;
+
 /**
  * <p>Performs 4-bit-per-ASCII-character encoding and decoding.</p>
  * <p>Compression rate: 50%</p>
@@ -60,7 +65,7 @@ public class FourBitAsciiCompressor extends AsciiCompressor {
 	 * Creates a new compressor instance using the default 4-bit character set ({@link #DEFAULT_4BIT_CHARSET}),
 	 * with configurable exception-throwing behavior and byte array data preservation.
 	 * @param throwException If {@code true}, throws an exception on unsupported characters; otherwise, silently ignores them.
-	 * @param preserveOriginal If {@code true}, preserves the original input byte array by working on a copy; otherwise, modifies it directly.
+	 * @param preserveOriginal Input arrays are never modified anymore. See {@link #isPreserveOriginal()}.
 	 * @author Jean Dannemann Carone
 	 * @see #isThrowException()
 	 * @see #isPreserveOriginal()
@@ -73,7 +78,7 @@ public class FourBitAsciiCompressor extends AsciiCompressor {
 	 * Creates a new compressor instance with a user defined 4-bit character set, configurable exception-throwing behavior, and byte array data preservation.
 	 * @param supportedCharset The custom set of supported characters. See {@link #DEFAULT_4BIT_CHARSET} for an example of how to define it.
 	 * @param throwException If {@code true}, throws an exception on unsupported characters; otherwise, silently ignores them.
-	 * @param preserveOriginal If {@code true}, preserves the original input byte array by working on a copy; otherwise, modifies it directly.
+	 * @param preserveOriginal Input arrays are never modified anymore. See {@link #isPreserveOriginal()}.
 	 * @author Jean Dannemann Carone
 	 * @see #getSupportedCharset()
 	 * @see #isThrowException()
@@ -93,23 +98,81 @@ public class FourBitAsciiCompressor extends AsciiCompressor {
 	 */
 	@Override
 	public final byte[] compress(final byte[] string) {
-		final byte[] str = preserveOriginal ? string.clone() : string;
-		final int len = string.length;
+		final byte[] compressed = new byte[compressedLength(string.length)];
+		compress(string, 0, string.length, compressed, 0);
+		return compressed;
+	}
+
+	/**
+	 * Range version of {@link #compress(byte[])}.
+	 * @throws NullPointerException {@inheritDoc}
+	 * @throws IndexOutOfBoundsException {@inheritDoc}
+	 * @author Jean Dannemann Carone
+	 */
+	@Override
+	public final int compress(final byte[] src, final int off, final int len, final byte[] dst, final int dstOff) {
+		final int compressedLen = compressedLength(len);
 
-		encode(str, len);
+		checkFromIndexSize(off, len, src.length);
+		checkFromIndexSize(dstOff, compressedLen, dst.length);
 
 		final int halfLen = len >> 1;
-		final byte[] compressed = new byte[halfLen + (len & 1) + (-len >>> 31)];
+		final int packed = VECTORIZED ? VectorCodec.packNibbles(vectorLookupTable, src, off, len, dst, dstOff) : 0;
+		int invalid = 0;
 
-		for (int i = 0; i < halfLen; i++)
-			compressed[i] = (byte) (str[i << 1] << 4 | str[(i << 1) + 1]);
+		for (int i = packed >> 1, k = off + packed; i < halfLen; i++, k += 2) {
+			final byte high = encode(src[k]);
+			final byte low = encode(src[k + 1]);
+			invalid |= high | low;
+			dst[dstOff + i] = (byte) (high << 4 | low);
+		}
 
 		if ((len & 1) == 1) {
-			compressed[halfLen] = str[len - 1];
-			compressed[halfLen + 1] |= 0x01;
-		}
+			final byte last = encode(src[off + len - 1]);
+			invalid |= last;
+			dst[dstOff + halfLen] = last;
+			dst[dstOff + halfLen + 1] = 0x01;
+		} else if (len != 0)
+			dst[dstOff + halfLen] = 0;
 
-		return compressed;
+		if (throwException && invalid < 0)
+			throw unsupported(src, off, len);
+
+		return compressedLen;
+	}
+
+	/**
+	 * {@link ByteBuffer} version of {@link #compress(byte[])}.
+	 * @throws java.nio.BufferOverflowException {@inheritDoc}
+	 * @author Jean Dannemann Carone
+	 */
+	@Override
+	public final int compress(final ByteBuffer in, final ByteBuffer out) {
+		final int pos = in.position();
+		final int outPos = out.position();
+		final int len = in.limit() - pos;
+		final int compressedLen = compressedLength(len);
+
+		if (out.limit() - outPos < compressedLen)
+			throw new BufferOverflowException();
+
+		validate(in, pos, len);
+
+		final int halfLen = len >> 1;
+
+		for (int i = 0, k = pos; i < halfLen; i++, k += 2)
+			out.put(outPos + i, (byte) (encode(in.get(k)) << 4 | encode(in.get(k + 1))));
+
+		if ((len & 1) == 1) {
+			out.put(outPos + halfLen, encode(in.get(pos + len - 1)));
+			out.put(outPos + halfLen + 1, (byte) 0x01);
+		} else if (len != 0)
+			out.put(outPos + halfLen, (byte) 0);
+
+		in.position(pos + len);
+		out.position(outPos + compressedLen);
+
+		return compressedLen;
 	}
 
 	/**
@@ -128,25 +191,105 @@ public class FourBitAsciiCompressor extends AsciiCompressor {
 	 */
 	@Override
 	public final byte[] decompress(final byte[] compressed) {
-		int cLenMinus = compressed.length - 1;
+		final byte[] decompressed = new byte[decompressedLength(compressed, 0, compressed.length)];
+		decompress(compressed, 0, compressed.length, decompressed, 0);
+		return decompressed;
+	}
 
-		if (cLenMinus <= 0)
-			return new byte[0];
+	/**
+	 * Range version of {@link #decompress(byte[])}.
+	 * @throws NullPointerException {@inheritDoc}
+	 * @throws IndexOutOfBoundsException {@inheritDoc}
+	 * @author Jean Dannemann Carone
+	 */
+	@Override
+	public final int decompress(final byte[] src, final int off, final int len, final byte[] dst, final int dstOff) {
+		checkFromIndexSize(off, len, src.length);
 
-		final int odd = compressed[cLenMinus];
-		final int dLen = odd == 1 ? (--cLenMinus << 1) + 1 : cLenMinus << 1;
-		final byte[] decompressed = new byte[dLen];
+		final int dLen = decompressedLength(src, off, len);
 
-		for (int i = 0, j = 0; i < cLenMinus; i++) {
-			final byte bite = compressed[i];
-			decompressed[j++] = supportedCharset[(bite & 0xF0) >> 4];
-			decompressed[j++] = supportedCharset[bite & 0x0F];
+		checkFromIndexSize(dstOff, dLen, dst.length);
+
+		if (dLen == 0)
+			return 0;
+
+		final int end = off + (dLen >> 1);
+
+		for (int i = off, j = dstOff; i < end; i++) {
+			final byte bite = src[i];
+			dst[j++] = supportedCharset[(bite & 0xF0) >> 4];
+			dst[j++] = supportedCharset[bite & 0x0F];
 		}
 
-		if (odd == 1)
-			decompressed[dLen - 1] = supportedCharset[compressed[cLenMinus]];
+		if ((dLen & 1) == 1)
+			dst[dstOff + dLen - 1] = supportedCharset[src[end]];
 
-		return decompressed;
+		return dLen;
+	}
+
+	/**
+	 * {@link ByteBuffer} version of {@link #decompress(byte[])}.
+	 * @throws java.nio.BufferOverflowException {@inheritDoc}
+	 * @author Jean Dannemann Carone
+	 */
+	@Override
+	public final int decompress(final ByteBuffer in, final ByteBuffer out) {
+		final int pos = in.position();
+		final int outPos = out.position();
+		final int dLen = decompressedLength(in);
+
+		if (out.limit() - outPos < dLen)
+			throw new BufferOverflowException();
+
+		final int end = pos + (dLen >> 1);
+
+		for (int i = pos, j = outPos; i < end; i++) {
+			final byte bite = in.get(i);
+			out.put(j++, supportedCharset[(bite & 0xF0) >> 4]);
+			out.put(j++, supportedCharset[bite & 0x0F]);
+		}
+
+		if ((dLen & 1) == 1)
+			out.put(outPos + dLen - 1, supportedCharset[in.get(end)]);
+
+		in.position(in.limit());
+		out.position(outPos + dLen);
+
+		return dLen;
+	}
+
+	@Override
+	public final int getBitsPerCharacter() {
+		return 4;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>Two characters per byte, plus a trailing byte flagging odd lengths (omitted for empty strings).</p>
+	 */
+	@Override
+	public final int compressedLength(final int len) {
+		return (len >> 1) + (len & 1) + (-len >>> 31);
+	}
+
+	@Override
+	public final int decompressedLength(final byte[] compressed, final int off, final int len) {
+		int cLenMinus = len - 1;
+
+		if (cLenMinus <= 0)
+			return 0;
+
+		return compressed[off + cLenMinus] == 1 ? (--cLenMinus << 1) + 1 : cLenMinus << 1;
+	}
+
+	@Override
+	public final int decompressedLength(final ByteBuffer compressed) {
+		int cLenMinus = compressed.remaining() - 1;
+
+		if (cLenMinus <= 0)
+			return 0;
+
+		return compressed.get(compressed.limit() - 1) == 1 ? (--cLenMinus << 1) + 1 : cLenMinus << 1;
 	}
 
 	@Override
@@ -0,0 +1,188 @@
+package com.dannemann.stringcompressor;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.nio.ByteOrder;
+
+import static jdk.incubator.vector.VectorOperators.LSHL;
+import static jdk.incubator.vector.VectorOperators.LSHR;
+import static jdk.incubator.vector.VectorOperators.S2B;
+
+/**
+ * <p>SIMD kernels built on the incubating Vector API ({@code jdk.incubator.vector}).</p>
+ * <p>This class must only be touched when {@link AsciiCompressor#VECTORIZED} is {@code true}, as loading it without the
+ * incubator module fails. Each method processes whole vectors only and returns how far it got, leaving the tail (and any
+ * chunk it declined to handle) to the scalar code.</p>
+ * @author Jean Dannemann Carone
+ */
+final class VectorCodec {
+
+	static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+	static final int LANES = SPECIES.length();
+
+	private static final VectorSpecies<Byte> HALF_SPECIES = VectorSpecies.of(byte.class, VectorShape.forBitSize(SPECIES.vectorBitSize() / 2));
+	private static final int LANES_SHIFT = Integer.numberOfTrailingZeros(LANES);
+	private static final boolean LITTLE_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+	private static final VectorShuffle<Byte> GATHER_5 = gather(5);
+	private static final VectorShuffle<Byte> GATHER_6 = gather(6);
+
+	private VectorCodec() {
+	}
+
+	/**
+	 * Repeats a table shorter than a vector until it fills one, so it can be loaded as a whole.
+	 */
+	static byte[] pad(final byte[] table) {
+		final byte[] padded = new byte[Math.max(table.length, LANES)];
+		for (int i = 0; i < padded.length; i++)
+			padded[i] = table[i % table.length];
+		return padded;
+	}
+
+	/**
+	 * Maps charset indices to characters in place ({@code charset} padded by {@link #pad(byte[])}).
+	 * @return Index of the first byte not processed.
+	 */
+	static int decode(final byte[] charset, final byte[] string, final int off, final int len) {
+		final int end = off + len - LANES;
+		int i = off;
+
+		if (i > end)
+			return i;
+
+		final Table table = new Table(charset);
+
+		for (; i <= end; i += LANES)
+			table.lookup(ByteVector.fromArray(SPECIES, string, i)).intoArray(string, i);
+
+		return i;
+	}
+
+	/**
+	 * <p>Maps characters to 4-bit charset indices ({@code lookupTable} has 128 entries) and packs them in pairs
+	 * into bytes, {@link #LANES} characters per step. The source is not modified.</p>
+	 * <p>Stops at the first vector containing an unsupported character, which the scalar loop handles.</p>
+	 * @return Number of characters processed (always even).
+	 */
+	static int packNibbles(final byte[] lookupTable, final byte[] string, final int off, final int len, final byte[] dst, final int dstOff) {
+		final int end = off + len - LANES;
+		int i = off;
+		int j = dstOff;
+
+		if (i > end)
+			return 0;
+
+		final Table table = new Table(lookupTable);
+
+		for (; i <= end; i += LANES, j += LANES >> 1) {
+			final ByteVector bytes = ByteVector.fromArray(SPECIES, string, i);
+			final ByteVector encoded = table.lookup(bytes.and((byte) 0x7F));
+
+			if (bytes.or(encoded).lt((byte) 0).anyTrue())
+				break;
+
+			final ShortVector pairs = encoded.reinterpretAsShorts();
+			final ShortVector packed = LITTLE_ENDIAN
+				? pairs.lanewise(LSHR, 8).or(pairs.lanewise(LSHL, 4)).and((short) 0xFF)
+				: pairs.lanewise(LSHR, 4).and((short) 0xF0).or(pairs.and((short) 0x0F));
+
+			((ByteVector) packed.convertShape(S2B, HALF_SPECIES, 0)).intoArray(dst, j);
+		}
+
+		return i - off;
+	}
+
+	/**
+	 * <p>Maps characters to 5 or 6-bit charset indices ({@code lookupTable} as in {@link #packNibbles}) and packs them into
+	 * {@code dst}, {@link #LANES} characters per step. Groups of 8 indices are merged within each 64-bit lane (same
+	 * layout as the scalar word-at-a-time loop), then a shuffle gathers their {@code bits} significant bytes in big-endian
+	 * order. The source is not modified.</p>
+	 * <p>Each step writes a whole vector, so it stops when that would go past {@code dstEnd}. Also stops at the first
+	 * vector containing an unsupported character, and does nothing on big-endian platforms.</p>
+	 * @return Number of characters processed (always a multiple of 8).
+	 */
+	static int pack(final byte[] lookupTable, final int bits, final byte[] string, final int off, final int len, final byte[] dst, final int dstOff, final int dstEnd) {
+		final int end = off + len - LANES;
+		final int dstLast = dstEnd - LANES;
+		final int step = (LANES >> 3) * bits;
+		int i = off;
+		int j = dstOff;
+
+		if (i > end || j > dstLast || !LITTLE_ENDIAN)
+			return 0;
+
+		final Table table = new Table(lookupTable);
+		final VectorShuffle<Byte> gather = bits == 5 ? GATHER_5 : GATHER_6;
+		final long pairMask = 0x0001000100010001L * ((1 << bits) - 1);
+		final long quadMask = 0x0000000100000001L * ((1 << 2 * bits) - 1);
+		final long octMask = (1L << 4 * bits) - 1;
+
+		for (; i <= end && j <= dstLast; i += LANES, j += step) {
+			final ByteVector bytes = ByteVector.fromArray(SPECIES, string, i);
+			final ByteVector encoded = table.lookup(bytes.and((byte) 0x7F));
+
+			if (bytes.or(encoded).lt((byte) 0).anyTrue())
+				break;
+
+			// Little-endian lanes: the first character of each pair/quad/oct is in the lower half, and must end up higher.
+			LongVector word = encoded.reinterpretAsLongs();
+			word = word.and(pairMask).lanewise(LSHL, bits).or(word.lanewise(LSHR, 8).and(pairMask));
+			word = word.and(quadMask).lanewise(LSHL, 2 * bits).or(word.lanewise(LSHR, 16).and(quadMask));
+			word = word.and(octMask).lanewise(LSHL, 4 * bits).or(word.lanewise(LSHR, 32).and(octMask));
+			word.reinterpretAsBytes().rearrange(gather).intoArray(dst, j);
+		}
+
+		return i - off;
+	}
+
+	/**
+	 * For each output byte, the byte of the merged little-endian 64-bit lanes it comes from.
+	 */
+	private static VectorShuffle<Byte> gather(final int bytesPerLane) {
+		return VectorShuffle.fromOp(SPECIES, o -> {
+			final int lane = o / bytesPerLane;
+			return lane < LANES >> 3 ? (lane << 3) + bytesPerLane - 1 - o % bytesPerLane : 0;
+		});
+	}
+
+	/**
+	 * A lookup table of up to 4 vectors, indexed by lane values in {@code [0, parts * LANES)}.
+	 */
+	private static final class Table {
+
+		final int parts;
+		final ByteVector t0, t1, t2, t3;
+
+		Table(final byte[] table) {
+			parts = table.length / LANES;
+			t0 = ByteVector.fromArray(SPECIES, table, 0);
+			t1 = parts > 1 ? ByteVector.fromArray(SPECIES, table, LANES) : t0;
+			t2 = parts > 2 ? ByteVector.fromArray(SPECIES, table, LANES * 2) : t0;
+			t3 = parts > 3 ? ByteVector.fromArray(SPECIES, table, LANES * 3) : t0;
+		}
+
+		ByteVector lookup(final ByteVector indices) {
+			final VectorShuffle<Byte> shuffle = indices.and((byte) (LANES - 1)).toShuffle();
+			ByteVector result = t0.rearrange(shuffle);
+
+			if (parts > 1) {
+				final ByteVector part = indices.lanewise(LSHR, LANES_SHIFT);
+				result = result.blend(t1.rearrange(shuffle), part.eq((byte) 1));
+
+				if (parts > 2)
+					result = result
+						.blend(t2.rearrange(shuffle), part.eq((byte) 2))
+						.blend(t3.rearrange(shuffle), part.eq((byte) 3));
+			}
+
+			return result;
+		}
+
+	}
+
+}
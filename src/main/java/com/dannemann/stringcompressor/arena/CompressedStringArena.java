@@ -0,0 +1,537 @@
+package com.dannemann.stringcompressor.arena;
+
+import com.dannemann.stringcompressor.AsciiCompressor;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntConsumer;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+
+import static com.dannemann.stringcompressor.AsciiCompressor.getBytes;
+import static java.util.Objects.checkIndex;
+
+/**
+ * <p>Stores compressed strings back to back in large memory pages (on or off the Java heap), instead of one
+ * {@code byte[]} per string. A {@code byte[][]} costs an array header (16 bytes) plus a reference for each string,
+ * which for short strings can be more than the compressed string itself. Here, the only overhead is one {@code int}
+ * per string (its end offset within the page).</p>
+ * <p>Pages hold up to {@link #getPageSize()} bytes (1 GB by default), so the total size is not limited to 2 GB.
+ * A string never spans two pages. The last page grows as needed, like an {@code ArrayList}.</p>
+ * <p>Strings are appended and referenced by their index, in insertion order. Binary searches can run directly on an
+ * arena (see {@link com.dannemann.stringcompressor.search.SixBitBinarySearch#SixBitBinarySearch(CompressedStringArena, boolean)},
+ * for example), as long as the strings were sorted before being added.</p>
+ * <p>Adding strings is not thread-safe. Once added, strings can be read by any number of threads.</p>
+ * <p>Arenas can be saved to disk and memory-mapped back (read-only) with {@link CompressedStringFile}. Mapped arenas
+ * can't be read once their file is closed ({@link IllegalStateException}).</p>
+ * @author Jean Dannemann Carone
+ * @see com.dannemann.stringcompressor.bulk.ManagedBulkCompressor#ManagedBulkCompressor(AsciiCompressor, CompressedStringArena)
+ */
+public final class CompressedStringArena {
+
+	// Fields:
+
+	/**
+	 * Default maximum size of each page: 1 GB.
+	 */
+	public static final int DEFAULT_PAGE_SIZE = 1 << 30;
+
+	private static final int INITIAL_PAGE_CAPACITY = 1 << 16;
+	private static final int INITIAL_INDEX_CAPACITY = 1 << 10;
+	private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+	/**
+	 * Mapped end offsets are split into chunks of 2^28 {@code int}s (1 GB), the maximum a single mapping can hold.
+	 */
+	static final int ENDS_CHUNK_SHIFT = 28;
+
+	private final boolean offHeap;
+	private final int pageSize;
+	private final IntBuffer[] mappedEnds; // Replaces ends when mapped from a file.
+
+	private ByteBuffer[] pages = new ByteBuffer[4];
+	private int[] pageFirst = new int[4]; // Index of the first string of each page.
+	private int[] ends = new int[INITIAL_INDEX_CAPACITY]; // End offset of each string within its page.
+	private int pageCount;
+	private int size;
+	private int position; // Bytes used in the last page.
+	private long byteSize;
+	private int maxLength;
+	private boolean closed; // Its file was closed.
+
+	// Constructors:
+
+	/**
+	 * Creates an empty arena on the Java heap, with pages of up to {@link #DEFAULT_PAGE_SIZE} bytes.
+	 * @author Jean Dannemann Carone
+	 */
+	public CompressedStringArena() {
+		this(false, DEFAULT_PAGE_SIZE);
+	}
+
+	/**
+	 * Creates an empty arena with pages of up to {@link #DEFAULT_PAGE_SIZE} bytes.
+	 * @param offHeap If {@code true}, pages are allocated outside the Java heap (direct buffers).
+	 * @author Jean Dannemann Carone
+	 */
+	public CompressedStringArena(boolean offHeap) {
+		this(offHeap, DEFAULT_PAGE_SIZE);
+	}
+
+	/**
+	 * Creates an empty arena.
+	 * @param offHeap If {@code true}, pages are allocated outside the Java heap (direct buffers).
+	 * @param pageSize Maximum size of each page, in bytes. Limits the size of a single compressed string.
+	 * @throws IllegalArgumentException If {@code pageSize} is not positive or too large for an array.
+	 * @author Jean Dannemann Carone
+	 */
+	public CompressedStringArena(boolean offHeap, int pageSize) {
+		if (pageSize <= 0 || pageSize > MAX_ARRAY_LENGTH)
+			throw new IllegalArgumentException("Invalid page size: " + pageSize + ".");
+
+		this.offHeap = offHeap;
+		this.pageSize = pageSize;
+		this.mappedEnds = null;
+	}
+
+	/**
+	 * Read-only arena over memory-mapped data.
+	 * @see CompressedStringFile
+	 */
+	CompressedStringArena(int pageSize, ByteBuffer[] pages, int[] pageFirst, IntBuffer[] mappedEnds, int size, long byteSize, int maxLength) {
+		this.offHeap = true;
+		this.pageSize = pageSize;
+		this.mappedEnds = mappedEnds;
+		this.pages = pages;
+		this.pageFirst = pageFirst;
+		this.ends = null;
+		this.pageCount = pages.length;
+		this.size = size;
+		this.position = size == 0 ? 0 : end(size - 1);
+		this.byteSize = byteSize;
+		this.maxLength = maxLength;
+	}
+
+	// Adding strings:
+
+	/**
+	 * Appends a string that is already compressed.
+	 * @param compressed A compressed string.
+	 * @return The index of the string in this arena.
+	 * @throws IllegalArgumentException If the string doesn't fit in a page.
+	 * @author Jean Dannemann Carone
+	 */
+	public int add(final byte[] compressed) {
+		final int index = reserve(1, k -> compressed.length);
+		final int page = pageOf(index);
+		pages[page].put(start(index, page), compressed);
+		return index;
+	}
+
+	/**
+	 * Compresses a string directly into this arena (for heap arenas, without intermediate arrays).
+	 * @param compressor The compressor.
+	 * @param string String to be compressed.
+	 * @return The index of the string in this arena.
+	 * @throws IllegalArgumentException If the compressed string doesn't fit in a page.
+	 * @author Jean Dannemann Carone
+	 */
+	public int add(final AsciiCompressor compressor, final byte[] string) {
+		final int index = reserve(1, k -> compressor.compressedLength(string.length));
+
+		try {
+			write(index, compressor, string);
+		} catch (RuntimeException e) {
+			rollback(index);
+			throw e;
+		}
+
+		return index;
+	}
+
+	/**
+	 * <p>Compresses a batch of strings in parallel and appends them in order (this is the arena counterpart of
+	 * {@link com.dannemann.stringcompressor.bulk.BulkCompressor}). Space for the whole batch is reserved first, from the
+	 * exact compressed length of each string, so every string is then compressed straight into its final position.</p>
+	 * <p>If compression fails (for instance, an unsupported character when exceptions are enabled), the batch is
+	 * discarded and the exception is rethrown.</p>
+	 * @param compressor The compressor.
+	 * @param strings Strings to be compressed. Not modified.
+	 * @return The index of the first string of the batch in this arena.
+	 * @author Jean Dannemann Carone
+	 */
+	public int addAll(final AsciiCompressor compressor, final byte[][] strings) {
+		final int first = reserve(strings.length, k -> compressor.compressedLength(strings[k].length));
+
+		writeAll(first, strings.length, k -> write(first + k, compressor, strings[k]));
+		return first;
+	}
+
+	/**
+	 * Overloaded version of {@link #addAll(AsciiCompressor, byte[][])}.
+	 * @author Jean Dannemann Carone
+	 */
+	public int addAll(final AsciiCompressor compressor, final String[] strings) {
+		final int first = reserve(strings.length, k -> compressor.compressedLength(strings[k].length()));
+
+		writeAll(first, strings.length, k -> write(first + k, compressor, getBytes(strings[k])));
+		return first;
+	}
+
+	/**
+	 * Overloaded version of {@link #addAll(AsciiCompressor, byte[][])}.
+	 * @author Jean Dannemann Carone
+	 */
+	public int addAll(final AsciiCompressor compressor, final List<String> strings) {
+		final int first = reserve(strings.size(), k -> compressor.compressedLength(strings.get(k).length()));
+
+		writeAll(first, strings.size(), k -> write(first + k, compressor, getBytes(strings.get(k))));
+		return first;
+	}
+
+	// Reading strings:
+
+	/**
+	 * @param index Index of the string.
+	 * @return A copy of the compressed string.
+	 * @throws IndexOutOfBoundsException If {@code index} is out of bounds.
+	 * @author Jean Dannemann Carone
+	 */
+	public byte[] get(final int index) {
+		final byte[] compressed = new byte[length(index)];
+		get(index, compressed, 0);
+		return compressed;
+	}
+
+	/**
+	 * Copies a compressed string into {@code dst}. Size the destination with {@link #length(int)} or {@link #maxLength()}.
+	 * @param index Index of the string.
+	 * @param dst Destination array.
+	 * @param dstOff Index of {@code dst} where the string starts being written.
+	 * @return The length of the compressed string.
+	 * @throws IndexOutOfBoundsException If {@code index} is out of bounds or {@code dst} is too small.
+	 * @author Jean Dannemann Carone
+	 */
+	public int get(final int index, final byte[] dst, final int dstOff) {
+		check(index);
+		final int page = pageOf(index);
+		final int start = start(index, page);
+		final int len = end(index) - start;
+		pages[page].get(start, dst, dstOff, len);
+		return len;
+	}
+
+	/**
+	 * Returns a read-only view of a compressed string, without copying it. The view is only valid while this arena is
+	 * (the last page may be replaced by a larger one as strings are added).
+	 * @param index Index of the string.
+	 * @return A read-only buffer whose remaining bytes are the compressed string.
+	 * @throws IndexOutOfBoundsException If {@code index} is out of bounds.
+	 * @author Jean Dannemann Carone
+	 */
+	public ByteBuffer slice(final int index) {
+		check(index);
+		final int page = pageOf(index);
+		final int start = start(index, page);
+		return pages[page].slice(start, end(index) - start).asReadOnlyBuffer();
+	}
+
+	/**
+	 * Decompresses a string without copying its compressed form first (for heap arenas).
+	 * @param index Index of the string.
+	 * @param compressor A compressor with the same charset used to compress the string.
+	 * @return The decompressed string.
+	 * @throws IndexOutOfBoundsException If {@code index} is out of bounds.
+	 * @author Jean Dannemann Carone
+	 */
+	public byte[] decompress(final int index, final AsciiCompressor compressor) {
+		check(index);
+		final int page = pageOf(index);
+		final ByteBuffer buffer = pages[page];
+
+		if (!buffer.hasArray())
+			return compressor.decompress(get(index));
+
+		final int start = buffer.arrayOffset() + start(index, page);
+		final int len = end(index) - start(index, page);
+		final byte[] decompressed = new byte[compressor.decompressedLength(buffer.array(), start, len)];
+		compressor.decompress(buffer.array(), start, len, decompressed, 0);
+		return decompressed;
+	}
+
+	/**
+	 * @param index Index of the string.
+	 * @return The length of the compressed string.
+	 * @throws IndexOutOfBoundsException If {@code index} is out of bounds.
+	 * @author Jean Dannemann Carone
+	 */
+	public int length(final int index) {
+		check(index);
+		return end(index) - start(index, pageOf(index));
+	}
+
+	// Getters:
+
+	/**
+	 * @return Number of strings in this arena.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return Total length of the compressed strings, in bytes (the index and unused page capacity are not included).
+	 */
+	public long byteSize() {
+		return byteSize;
+	}
+
+	/**
+	 * @return Length of the longest compressed string.
+	 */
+	public int maxLength() {
+		return maxLength;
+	}
+
+	/**
+	 * @return {@code true} if pages are allocated outside the Java heap.
+	 */
+	public boolean isOffHeap() {
+		return offHeap;
+	}
+
+	/**
+	 * @return Maximum size of each page, in bytes.
+	 */
+	public int getPageSize() {
+		return pageSize;
+	}
+
+	/**
+	 * @return {@code true} if this arena is mapped from a file (see {@link CompressedStringFile#open(java.nio.file.Path)}),
+	 * in which case strings can't be added.
+	 */
+	public boolean isReadOnly() {
+		return mappedEnds != null;
+	}
+
+	// Package-private accessors (used by CompressedStringFile):
+
+	int pageCount() {
+		return pageCount;
+	}
+
+	ByteBuffer page(final int page) {
+		return pages[page];
+	}
+
+	int pageFirst(final int page) {
+		return pageFirst[page];
+	}
+
+	int pageLength(final int page) {
+		return page == pageCount - 1 ? position : end(pageFirst[page + 1] - 1);
+	}
+
+	/**
+	 * Invalidates a mapped arena and drops its references to the mappings (see {@link CompressedStringFile#close()}).
+	 */
+	void close() {
+		closed = true;
+		Arrays.fill(pages, null);
+		Arrays.fill(mappedEnds, null);
+	}
+
+	void ensureOpen() {
+		if (closed)
+			throw new IllegalStateException("Arena is closed (its file was closed).");
+	}
+
+	int end(final int index) {
+		return mappedEnds == null ? ends[index] : mappedEnds[index >>> ENDS_CHUNK_SHIFT].get(index & (1 << ENDS_CHUNK_SHIFT) - 1);
+	}
+
+	// Private methods:
+
+	/**
+	 * Assigns the position of {@code count} new strings, allocating pages as needed.
+	 * @return Index of the first new string.
+	 */
+	private int reserve(final int count, final IntUnaryOperator compressedLength) {
+		if (isReadOnly())
+			throw new UnsupportedOperationException("Arena is read-only (mapped from a file).");
+
+		if (count > MAX_ARRAY_LENGTH - size)
+			throw new IllegalStateException("Arena is full (" + size + " strings).");
+
+		if (size + count > ends.length)
+			ends = Arrays.copyOf(ends, (int) Math.min(MAX_ARRAY_LENGTH, Math.max(size + count, ends.length * 3L / 2)));
+
+		final int first = size;
+		final int firstPage = pageCount;
+		final int firstPosition = position;
+
+		try {
+			for (int k = 0; k < count; k++) {
+				final int len = compressedLength.applyAsInt(k);
+
+				if (len > pageSize)
+					throw new IllegalArgumentException("Compressed string is larger than the page size (" + len + " > " + pageSize + " bytes).");
+
+				if (pageCount == 0 || len > pageSize - position)
+					newPage();
+
+				ends[size++] = position += len;
+				byteSize += len;
+				maxLength = Math.max(maxLength, len);
+			}
+		} catch (RuntimeException e) {
+			// Nothing was written yet. Undo the reservation.
+			for (int p = firstPage; p < pageCount; p++)
+				pages[p] = null;
+			pageCount = firstPage;
+			position = firstPosition;
+			size = first;
+			recountByteSize(first);
+			throw e;
+		}
+
+		growLastPage();
+
+		return first;
+	}
+
+	/**
+	 * Writes strings {@code first ... first + count - 1} in parallel. Failures are recorded instead of thrown, so that the
+	 * stream only returns once every write is done; the batch is then rolled back and the first failure rethrown. Nothing
+	 * is written to the rolled-back space afterward.
+	 */
+	private void writeAll(final int first, final int count, final IntConsumer write) {
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		IntStream.range(0, count).parallel().forEach(k -> {
+			if (failure.get() == null)
+				try {
+					write.accept(k);
+				} catch (RuntimeException | Error e) {
+					failure.compareAndSet(null, e);
+				}
+		});
+
+		final Throwable t = failure.get();
+		if (t != null) {
+			rollback(first);
+			if (t instanceof Error error)
+				throw error;
+			throw (RuntimeException) t;
+		}
+	}
+
+	/**
+	 * Discards all strings from {@code first} on. Pages remain allocated.
+	 */
+	private void rollback(final int first) {
+		if (first == size)
+			return;
+
+		final int page = first == 0 ? 0 : pageOf(first - 1);
+		for (int p = page + 1; p < pageCount; p++)
+			pages[p] = null;
+
+		pageCount = first == 0 ? 0 : page + 1;
+		position = first == 0 ? 0 : ends[first - 1];
+		size = first;
+		recountByteSize(first);
+	}
+
+	private void recountByteSize(final int first) {
+		byteSize = 0;
+		maxLength = 0;
+
+		for (int i = 0, p = 0; i < first; i++) {
+			while (p + 1 < pageCount && pageFirst[p + 1] <= i)
+				p++;
+			final int len = ends[i] - start(i, p);
+			byteSize += len;
+			maxLength = Math.max(maxLength, len);
+		}
+	}
+
+	private void newPage() {
+		growLastPage();
+
+		if (pageCount == pages.length) {
+			pages = Arrays.copyOf(pages, pageCount << 1);
+			pageFirst = Arrays.copyOf(pageFirst, pageCount << 1);
+		}
+
+		pages[pageCount] = null;
+		pageFirst[pageCount++] = size;
+		position = 0;
+	}
+
+	/**
+	 * Makes sure the last page can hold {@link #position} bytes.
+	 */
+	private void growLastPage() {
+		if (pageCount == 0)
+			return;
+
+		final ByteBuffer page = pages[pageCount - 1];
+		final int capacity = page == null ? 0 : page.capacity();
+
+		if (page != null && position <= capacity)
+			return; // A new page is allocated even for empty strings, so every page can be read.
+
+		final int newCapacity = (int) Math.min(pageSize, Math.max(position, Math.max(INITIAL_PAGE_CAPACITY, capacity * 2L)));
+		final ByteBuffer newPage = offHeap ? ByteBuffer.allocateDirect(newCapacity) : ByteBuffer.allocate(newCapacity);
+
+		if (page != null)
+			newPage.put(0, page, 0, capacity);
+
+		pages[pageCount - 1] = newPage;
+	}
+
+	private void write(final int index, final AsciiCompressor compressor, final byte[] string) {
+		final int page = pageOf(index);
+		final ByteBuffer buffer = pages[page];
+		final int start = start(index, page);
+
+		// Strings with characters outside ISO-8859-1 may have fewer bytes than chars.
+		if (compressor.compressedLength(string.length) != ends[index] - start)
+			throw new IllegalArgumentException("String length changed after being reserved (non-ISO-8859-1 characters?).");
+
+		if (buffer.hasArray())
+			compressor.compress(string, 0, string.length, buffer.array(), buffer.arrayOffset() + start);
+		else
+			compressor.compress(ByteBuffer.wrap(string), buffer.slice(start, ends[index] - start));
+	}
+
+	private int pageOf(final int index) {
+		int low = 0;
+		int high = pageCount - 1;
+
+		while (low < high) {
+			final int mid = low + high + 1 >>> 1;
+
+			if (pageFirst[mid] <= index)
+				low = mid;
+			else
+				high = mid - 1;
+		}
+
+		return low;
+	}
+
+	private void check(final int index) {
+		ensureOpen();
+		checkIndex(index, size);
+	}
+
+	private int start(final int index, final int page) {
+		return index == pageFirst[page] ? 0 : end(index - 1);
+	}
+
+}
@@ -0,0 +1,510 @@
+package com.dannemann.stringcompressor.arena;
+
+import com.dannemann.stringcompressor.AsciiCompressor;
+import com.dannemann.stringcompressor.FiveBitAsciiCompressor;
+import com.dannemann.stringcompressor.FourBitAsciiCompressor;
+import com.dannemann.stringcompressor.SixBitAsciiCompressor;
+import com.dannemann.stringcompressor.search.BaseBinarySearch;
+import com.dannemann.stringcompressor.search.FiveBitBinarySearch;
+import com.dannemann.stringcompressor.search.FourBitBinarySearch;
+import com.dannemann.stringcompressor.search.SixBitBinarySearch;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * <p>Persists a collection of compressed strings and maps it back into memory, so it can be searched straight from the
+ * mapped pages. Opening a file reads its header and page table, and scans the end offsets (4 bytes per string) to
+ * validate them. The strings are neither read nor copied to the heap, so services start fast, and processes mapping the
+ * same file share its pages through the OS page cache.</p>
+ * <pre>{@code
+ * CompressedStringFile.write(arena, compressor, path);
+ * // Later, possibly in another process:
+ * try (CompressedStringFile file = CompressedStringFile.open(path)) {
+ *     int index = file.newBinarySearch(false).search(key);
+ *     byte[] string = file.getArena().decompress(index, file.newCompressor());
+ * }
+ * }</pre>
+ * <p>File format (all numbers big-endian):</p>
+ * <pre>
+ * Offset  Size          Content
+ * 0       4             Magic number: "JSCF" (0x4A534346).
+ * 4       4             Format version ({@value #VERSION}).
+ * 8       4             Bits per character (4, 5 or 6).
+ * 12      4             Charset length (16, 32 or 64).
+ * 16      4             Number of strings (n).
+ * 20      4             Number of pages (p).
+ * 24      4             Page size (maximum bytes per page).
+ * 28      4             Length of the longest compressed string.
+ * 32      8             Total length of the compressed strings.
+ * 40      64            Charset, zero padded.
+ * 104     24            Reserved (zeros).
+ * 128     16 * p        Page table. Per page: file offset of its data (8), index of its first string (4), length (4).
+ * ...     4 * n         End offset of each string within its page (8-byte aligned).
+ * ...                   Page data: compressed strings back to back, each page 8-byte aligned.
+ * </pre>
+ * <p>This is the layout of {@link CompressedStringArena}, so an arena is written page by page and mapped back as a
+ * read-only arena. The header, page table and end offsets are validated when opening, but not the strings themselves
+ * (there is no checksum).</p>
+ * <p>Files are written to a temporary file in the same directory, then moved into place atomically: readers (and
+ * processes that have it mapped) see either the old file or the new one, never a partial one.</p>
+ * <p>Closing a file invalidates its arena: reading strings from it then throws {@link IllegalStateException}. Java
+ * can't unmap memory explicitly, so the mappings are released once they are garbage collected; closing drops the
+ * arena's references to them. Close a file only when no thread is using its arena, and don't keep views returned by
+ * {@link CompressedStringArena#slice(int)} past closing it (they keep their page mapped).</p>
+ * @author Jean Dannemann Carone
+ * @see CompressedStringArena
+ */
+public final class CompressedStringFile implements Closeable {
+
+	// Fields:
+
+	/**
+	 * "JSCF"
+	 */
+	public static final int MAGIC = 0x4A534346;
+	public static final int VERSION = 1;
+
+	private static final int HEADER_SIZE = 128;
+	private static final int PAGE_ENTRY_SIZE = 16;
+	private static final int CHARSET_SIZE = 64;
+	private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+	private final Path path;
+	private final int bitsPerCharacter;
+	private final byte[] charset;
+	private final CompressedStringArena arena;
+
+	// Constructor:
+
+	private CompressedStringFile(Path path, int bitsPerCharacter, byte[] charset, CompressedStringArena arena) {
+		this.path = path;
+		this.bitsPerCharacter = bitsPerCharacter;
+		this.charset = charset;
+		this.arena = arena;
+	}
+
+	// Writing:
+
+	/**
+	 * Writes all strings of an arena to a file, replacing it if it exists.
+	 * @param arena The compressed strings.
+	 * @param compressor The compressor used to compress them (only its charset and bits per character are stored).
+	 * @param path Destination file.
+	 * @throws IOException If the file can't be written.
+	 * @throws IllegalStateException If the arena is mapped from a file that was closed.
+	 * @author Jean Dannemann Carone
+	 */
+	public static void write(final CompressedStringArena arena, final AsciiCompressor compressor, final Path path) throws IOException {
+		arena.ensureOpen();
+		final int pageCount = arena.pageCount();
+		final int[] pageFirst = new int[pageCount];
+		final int[] pageLength = new int[pageCount];
+
+		for (int p = 0; p < pageCount; p++) {
+			pageFirst[p] = arena.pageFirst(p);
+			pageLength[p] = arena.pageLength(p);
+		}
+
+		try (Output out = new Output(path)) {
+			writeIndex(out, compressor, arena.size(), pageCount, arena.getPageSize(), arena.maxLength(), arena.byteSize(), pageFirst, pageLength);
+
+			for (int i = 0, size = arena.size(); i < size; i++)
+				out.putInt(arena.end(i));
+
+			for (int p = 0; p < pageCount; p++) {
+				out.pad();
+				out.put(arena.page(p).duplicate().position(0).limit(pageLength[p]));
+			}
+
+			out.commit();
+		}
+	}
+
+	/**
+	 * <p>Writes compressed strings to a file, replacing it if it exists. The file is identical to the one of an arena
+	 * holding the same strings (with pages of {@link CompressedStringArena#DEFAULT_PAGE_SIZE} bytes).</p>
+	 * <p>As in the binary searches, the first null element marks the end of the data (unused slots).</p>
+	 * @param compressedData The compressed strings.
+	 * @param compressor The compressor used to compress them (only its charset and bits per character are stored).
+	 * @param path Destination file.
+	 * @throws IOException If the file can't be written.
+	 * @author Jean Dannemann Carone
+	 */
+	public static void write(final byte[][] compressedData, final AsciiCompressor compressor, final Path path) throws IOException {
+		final int pageSize = CompressedStringArena.DEFAULT_PAGE_SIZE;
+		int count = 0;
+		int pageCount = 0;
+		int[] pageFirst = new int[4];
+		int[] pageLength = new int[4];
+		int maxLength = 0;
+		long byteSize = 0;
+
+		// Same page assignment as CompressedStringArena.
+		for (final int len = compressedData.length; count < len && compressedData[count] != null; count++) {
+			final int strLen = compressedData[count].length;
+
+			if (strLen > pageSize)
+				throw new IllegalArgumentException("Compressed string is larger than the page size (" + strLen + " > " + pageSize + " bytes).");
+
+			if (pageCount == 0 || strLen > pageSize - pageLength[pageCount - 1]) {
+				if (pageCount == pageFirst.length) {
+					pageFirst = Arrays.copyOf(pageFirst, pageCount << 1);
+					pageLength = Arrays.copyOf(pageLength, pageCount << 1);
+				}
+				pageFirst[pageCount++] = count;
+			}
+
+			pageLength[pageCount - 1] += strLen;
+			maxLength = Math.max(maxLength, strLen);
+			byteSize += strLen;
+		}
+
+		try (Output out = new Output(path)) {
+			writeIndex(out, compressor, count, pageCount, pageSize, maxLength, byteSize, pageFirst, pageLength);
+
+			for (int i = 0, p = 0, end = 0; i < count; i++) {
+				if (p < pageCount && pageFirst[p] == i) {
+					p++;
+					end = 0;
+				}
+				out.putInt(end += compressedData[i].length);
+			}
+
+			for (int i = 0, p = 0; i < count; i++) {
+				if (p < pageCount && pageFirst[p] == i) {
+					p++;
+					out.pad();
+				}
+				out.put(compressedData[i]);
+			}
+
+			out.commit();
+		}
+	}
+
+	/**
+	 * Writes the header and page table. Page offsets are computed from the page lengths.
+	 */
+	private static void writeIndex(final Output out, final AsciiCompressor compressor, final int count, final int pageCount, final int pageSize,
+	                               final int maxLength, final long byteSize, final int[] pageFirst, final int[] pageLength) throws IOException {
+		final byte[] charset = compressor.getSupportedCharset();
+
+		out.putInt(MAGIC);
+		out.putInt(VERSION);
+		out.putInt(compressor.getBitsPerCharacter());
+		out.putInt(charset.length);
+		out.putInt(count);
+		out.putInt(pageCount);
+		out.putInt(pageSize);
+		out.putInt(maxLength);
+		out.putLong(byteSize);
+		out.put(Arrays.copyOf(charset, CHARSET_SIZE));
+		out.put(new byte[HEADER_SIZE - 40 - CHARSET_SIZE]);
+
+		long offset = align(align(HEADER_SIZE + (long) pageCount * PAGE_ENTRY_SIZE) + count * 4L);
+
+		for (int p = 0; p < pageCount; p++) {
+			out.putLong(offset);
+			out.putInt(pageFirst[p]);
+			out.putInt(pageLength[p]);
+			offset = align(offset + pageLength[p]);
+		}
+
+		out.pad();
+	}
+
+	// Reading:
+
+	/**
+	 * Maps a file written by {@code write} as a read-only arena.
+	 * @param path The file.
+	 * @return The mapped file.
+	 * @throws IOException If the file can't be read, or is not a valid compressed string file.
+	 * @author Jean Dannemann Carone
+	 */
+	public static CompressedStringFile open(final Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, READ)) {
+			final long fileSize = channel.size();
+			final ByteBuffer header = read(channel, 0, HEADER_SIZE, fileSize, path);
+
+			if (header.getInt(0) != MAGIC)
+				throw new IOException("Not a compressed string file: " + path);
+
+			if (header.getInt(4) != VERSION)
+				throw new IOException("Unsupported compressed string file version: " + header.getInt(4) + ".");
+
+			final int bits = header.getInt(8);
+			final int charsetLength = header.getInt(12);
+			final int count = header.getInt(16);
+			final int pageCount = header.getInt(20);
+			final int pageSize = header.getInt(24);
+			final int maxLength = header.getInt(28);
+			final long byteSize = header.getLong(32);
+
+			if (bits < 4 || bits > 6 || charsetLength != 1 << bits || count < 0 || pageCount < 0 || pageCount > count ||
+				count > 0 && pageCount == 0 || pageCount > Integer.MAX_VALUE / PAGE_ENTRY_SIZE || pageSize <= 0 || maxLength < 0 ||
+				byteSize < 0)
+				throw new IOException("Corrupted compressed string file (invalid header): " + path);
+
+			final byte[] charset = new byte[charsetLength];
+			header.get(40, charset);
+
+			final long pageTableSize = (long) pageCount * PAGE_ENTRY_SIZE;
+
+			if (HEADER_SIZE + pageTableSize > fileSize)
+				throw new IOException("Corrupted compressed string file (truncated): " + path);
+
+			final ByteBuffer pageTable = read(channel, HEADER_SIZE, (int) pageTableSize, fileSize, path);
+			final ByteBuffer[] pages = new ByteBuffer[pageCount];
+			final int[] pageFirst = new int[pageCount];
+
+			for (int p = 0; p < pageCount; p++) {
+				final long offset = pageTable.getLong(p * PAGE_ENTRY_SIZE);
+				final int length = pageTable.getInt(p * PAGE_ENTRY_SIZE + 12);
+				pageFirst[p] = pageTable.getInt(p * PAGE_ENTRY_SIZE + 8);
+
+				if (offset < 0 || length < 0 || length > pageSize || offset + length > fileSize ||
+					(p == 0 ? pageFirst[p] != 0 : pageFirst[p] <= pageFirst[p - 1] || pageFirst[p] >= count))
+					throw new IOException("Corrupted compressed string file (invalid page table): " + path);
+
+				pages[p] = channel.map(READ_ONLY, offset, length);
+			}
+
+			final long endsOffset = align(HEADER_SIZE + (long) pageCount * PAGE_ENTRY_SIZE);
+
+			if (endsOffset + count * 4L > fileSize)
+				throw new IOException("Corrupted compressed string file (truncated): " + path);
+
+			final int chunk = 1 << CompressedStringArena.ENDS_CHUNK_SHIFT;
+			final IntBuffer[] ends = new IntBuffer[(int) ((count + (long) chunk - 1) / chunk)];
+
+			for (int c = 0; c < ends.length; c++) {
+				final int n = Math.min(chunk, count - c * chunk);
+				ends[c] = channel.map(READ_ONLY, endsOffset + c * (long) chunk * 4, n * 4L).asIntBuffer();
+			}
+
+			validateEnds(ends, pages, pageFirst, count, maxLength, byteSize, path);
+
+			final CompressedStringArena arena = new CompressedStringArena(pageSize, pages, pageFirst, ends, count, byteSize, maxLength);
+			return new CompressedStringFile(path, bits, charset, arena);
+		}
+	}
+
+	/**
+	 * Checks that, within each page, the end offsets never decrease, the last one is the page length, and no string is
+	 * longer than {@code maxLength}; and that the lengths add up to {@code byteSize}. Reads are then always within the
+	 * mapped pages.
+	 */
+	private static void validateEnds(final IntBuffer[] ends, final ByteBuffer[] pages, final int[] pageFirst, final int count,
+	                                 final int maxLength, final long byteSize, final Path path) throws IOException {
+		final int mask = (1 << CompressedStringArena.ENDS_CHUNK_SHIFT) - 1;
+		long total = 0;
+
+		for (int p = 0; p < pages.length; p++) {
+			final int last = p == pages.length - 1 ? count : pageFirst[p + 1];
+			final int pageLength = pages[p].capacity();
+			int start = 0;
+
+			for (int i = pageFirst[p]; i < last; i++) {
+				final int end = ends[i >>> CompressedStringArena.ENDS_CHUNK_SHIFT].get(i & mask);
+
+				if (end < start || end > pageLength || end - start > maxLength)
+					throw new IOException("Corrupted compressed string file (invalid end offset of string " + i + "): " + path);
+
+				total += end - start;
+				start = end;
+			}
+
+			if (start != pageLength)
+				throw new IOException("Corrupted compressed string file (end offsets don't match the length of page " + p + "): " + path);
+		}
+
+		if (total != byteSize)
+			throw new IOException("Corrupted compressed string file (invalid total length): " + path);
+	}
+
+	/**
+	 * Invalidates the arena of this file (see the class documentation). Closing more than once has no effect.
+	 * @author Jean Dannemann Carone
+	 */
+	@Override
+	public void close() {
+		arena.close();
+	}
+
+	/**
+	 * @return A compressor with the charset of this file, to decompress its strings.
+	 * @author Jean Dannemann Carone
+	 */
+	public AsciiCompressor newCompressor() {
+		return switch (bitsPerCharacter) {
+			case 4 -> new FourBitAsciiCompressor(charset);
+			case 5 -> new FiveBitAsciiCompressor(charset);
+			default -> new SixBitAsciiCompressor(charset);
+		};
+	}
+
+	/**
+	 * @param prefixSearch If {@code true}, searches for elements starting with the provided key prefix (must be unique).
+	 * @return A binary search (for the bits per character of this file) running directly on the mapped data.
+	 * @author Jean Dannemann Carone
+	 */
+	public BaseBinarySearch newBinarySearch(final boolean prefixSearch) {
+		return switch (bitsPerCharacter) {
+			case 4 -> new FourBitBinarySearch(arena, prefixSearch, charset);
+			case 5 -> new FiveBitBinarySearch(arena, prefixSearch, charset);
+			default -> new SixBitBinarySearch(arena, prefixSearch, charset);
+		};
+	}
+
+	// Getters:
+
+	/**
+	 * @return The mapped strings (read-only).
+	 */
+	public CompressedStringArena getArena() {
+		return arena;
+	}
+
+	public int getBitsPerCharacter() {
+		return bitsPerCharacter;
+	}
+
+	public byte[] getCharset() {
+		return charset;
+	}
+
+	public Path getPath() {
+		return path;
+	}
+
+	// Utils:
+
+	private static long align(final long offset) {
+		return offset + 7 & ~7L;
+	}
+
+	private static ByteBuffer read(final FileChannel channel, final long offset, final int length, final long fileSize, final Path path) throws IOException {
+		if (offset + length > fileSize)
+			throw new IOException("Corrupted compressed string file (truncated): " + path);
+
+		final ByteBuffer buffer = ByteBuffer.allocate(length);
+
+		while (buffer.hasRemaining())
+			if (channel.read(buffer, offset + buffer.position()) < 0)
+				throw new IOException("Corrupted compressed string file (truncated): " + path);
+
+		return buffer;
+	}
+
+	/**
+	 * Buffered, big-endian output that keeps track of its position (for alignment). Writes to a temporary file in the
+	 * same directory, moved over the destination by {@link #commit()}; if it is closed without committing, the temporary
+	 * file is deleted.
+	 */
+	private static final class Output implements AutoCloseable {
+
+		private final Path path;
+		private final Path temp;
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+		private long position;
+		private boolean committed;
+
+		Output(Path path) throws IOException {
+			this.path = path;
+			// Same directory, so the move is a rename. Not Files.createTempFile, which restricts permissions.
+			this.temp = path.resolveSibling(path.getFileName() + "." + Long.toUnsignedString(ThreadLocalRandom.current().nextLong(), 36) + ".tmp");
+			this.channel = FileChannel.open(temp, CREATE_NEW, WRITE);
+		}
+
+		void putInt(final int value) throws IOException {
+			ensure(Integer.BYTES);
+			buffer.putInt(value);
+			position += Integer.BYTES;
+		}
+
+		void putLong(final long value) throws IOException {
+			ensure(Long.BYTES);
+			buffer.putLong(value);
+			position += Long.BYTES;
+		}
+
+		void put(final byte[] bytes) throws IOException {
+			put(ByteBuffer.wrap(bytes));
+		}
+
+		void put(final ByteBuffer bytes) throws IOException {
+			position += bytes.remaining();
+
+			if (bytes.remaining() <= buffer.remaining()) {
+				buffer.put(bytes);
+				return;
+			}
+
+			flush();
+
+			while (bytes.hasRemaining())
+				channel.write(bytes);
+		}
+
+		void pad() throws IOException {
+			final int padding = (int) (CompressedStringFile.align(position) - position);
+			ensure(padding);
+			buffer.put(new byte[padding]);
+			position += padding;
+		}
+
+		private void ensure(final int bytes) throws IOException {
+			if (buffer.remaining() < bytes)
+				flush();
+		}
+
+		private void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+			buffer.clear();
+		}
+
+		/**
+		 * Writes what is buffered to disk and moves the file into place.
+		 */
+		void commit() throws IOException {
+			flush();
+			channel.force(false);
+			channel.close();
+			Files.move(temp, path, ATOMIC_MOVE, REPLACE_EXISTING);
+			committed = true;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (committed)
+				return;
+
+			try {
+				channel.close();
+			} finally {
+				Files.deleteIfExists(temp);
+			}
+		}
+
+	}
+
+}
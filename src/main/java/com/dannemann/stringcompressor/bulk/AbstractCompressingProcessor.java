@@ -0,0 +1,183 @@
+package com.dannemann.stringcompressor.bulk;
+
+import com.dannemann.stringcompressor.AsciiCompressor;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Base of the {@link Flow.Processor}s that compress with a {@link BulkCompressor}. Compressed items are published by
+ * a {@link SubmissionPublisher}, which buffers them for each subscriber and only delivers what was requested.</p>
+ * <p>Upstream demand follows downstream demand: items are requested {@code requestSize} at a time, only once the
+ * previous ones are compressed and submitted, and only while every subscriber has asked for more than what is already
+ * buffered for it. Nothing is requested before the first subscriber asks for data, so the processor can be subscribed
+ * upstream before or after subscribers are added. Submitting blocks while a subscriber's buffer is full, so a slow
+ * subscriber stops the flow instead of piling up items.</p>
+ * <p>Subscribers are wrapped, to see their requests: {@link #getSubscribers()} and {@link #isSubscribed} do not find
+ * them.</p>
+ * <p>If compression fails, the upstream subscription is cancelled and subscribers receive the exception through
+ * {@code onError}.</p>
+ * @param <S> Items received.
+ * @param <T> Items published.
+ * @author Jean Dannemann Carone
+ */
+abstract class AbstractCompressingProcessor<S, T> extends SubmissionPublisher<T> implements Flow.Processor<S, T> {
+
+	// Fields:
+
+	private final BulkCompressor bulk; // Template for each batch.
+	private final int requestSize;
+	private volatile Flow.Subscription subscription;
+	private volatile boolean pending; // Ready for the next items, waiting for downstream demand.
+	private final AtomicInteger requesting = new AtomicInteger(); // Serializes the upstream requests.
+
+	// Constructor:
+
+	AbstractCompressingProcessor(AsciiCompressor compressor, int requestSize, Executor executor, int parallelism, int maxBufferCapacity) {
+		super(executor == null ? ForkJoinPool.commonPool() : executor, maxBufferCapacity);
+		this.bulk = new BulkCompressor(compressor, new byte[0][], BulkCompressor.DEFAULT_CHUNK_SIZE, executor, parallelism);
+		this.requestSize = requestSize;
+	}
+
+	// Publisher:
+
+	/**
+	 * Adds a subscriber. Its requests also ask upstream for more items, if the processor is waiting for them.
+	 */
+	@Override
+	public void subscribe(Flow.Subscriber<? super T> subscriber) {
+		Objects.requireNonNull(subscriber);
+		super.subscribe(new Flow.Subscriber<T>() {
+
+			@Override
+			public void onSubscribe(Flow.Subscription subscription) {
+				subscriber.onSubscribe(new Flow.Subscription() {
+
+					@Override
+					public void request(long n) {
+						subscription.request(n);
+						requestIfDemanded();
+					}
+
+					@Override
+					public void cancel() {
+						subscription.cancel();
+					}
+
+				});
+			}
+
+			@Override
+			public void onNext(T item) {
+				subscriber.onNext(item);
+			}
+
+			@Override
+			public void onError(Throwable throwable) {
+				subscriber.onError(throwable);
+			}
+
+			@Override
+			public void onComplete() {
+				subscriber.onComplete();
+			}
+
+		});
+	}
+
+	// Subscriber:
+
+	@Override
+	public void onSubscribe(Flow.Subscription subscription) {
+		Objects.requireNonNull(subscription);
+		if (this.subscription != null) {
+			subscription.cancel(); // Only one upstream.
+			return;
+		}
+
+		this.subscription = subscription;
+		requestMore();
+	}
+
+	@Override
+	public void onError(Throwable throwable) {
+		closeExceptionally(throwable);
+	}
+
+	@Override
+	public void onComplete() {
+		try {
+			flush();
+		} catch (RuntimeException e) {
+			closeExceptionally(e);
+			return;
+		}
+
+		close();
+	}
+
+	/**
+	 * Publishes whatever is still buffered, when upstream completes.
+	 */
+	void flush() {
+	}
+
+	// Helpers:
+
+	/**
+	 * Compresses {@code source[0 ... count - 1]} in parallel.
+	 * @return The compressed strings, in the same order.
+	 */
+	final byte[][] compress(byte[][] source, int count) {
+		final byte[][] compressed = new byte[count][];
+		bulk.withDestination(compressed).bulkCompress(source, 0, count, 0, null);
+		return compressed;
+	}
+
+	/**
+	 * Requests the next items from upstream, as soon as every subscriber asks for more than what is buffered for it.
+	 */
+	final void requestMore() {
+		pending = true;
+		requestIfDemanded();
+	}
+
+	/**
+	 * Requests from upstream if pending and demanded. Only one thread at a time gets in the loop, so upstream requests
+	 * are never concurrent; calls made meanwhile (including reentrant ones, from a synchronous upstream) make the loop
+	 * check again instead of waiting, as the looping thread may be blocked submitting.
+	 */
+	private void requestIfDemanded() {
+		if (requesting.getAndIncrement() != 0)
+			return;
+
+		do {
+			if (pending && subscription != null && !isClosed() && estimateMinimumDemand() > 0) {
+				pending = false;
+				subscription.request(requestSize);
+			}
+		} while (requesting.decrementAndGet() != 0);
+	}
+
+	/**
+	 * Stops the flow after a failure: cancels upstream and passes the exception to subscribers.
+	 */
+	final void fail(RuntimeException exception) {
+		subscription.cancel();
+		closeExceptionally(exception);
+	}
+
+	// Getters:
+
+	/**
+	 * @return The compressor.
+	 */
+	public AsciiCompressor getCompressor() {
+		return bulk.compressor();
+	}
+
+}
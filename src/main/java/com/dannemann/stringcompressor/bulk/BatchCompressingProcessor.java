@@ -0,0 +1,68 @@
+package com.dannemann.stringcompressor.bulk;
+
+import com.dannemann.stringcompressor.AsciiCompressor;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * <p>A {@link Flow.Processor} that compresses batches of strings ({@code byte[][]}): each batch received is compressed
+ * in parallel by a {@link BulkCompressor} and published as a new array, with the strings in the same order. Batches
+ * are published in the order they are received.</p>
+ * <p>Upstream is asked for one batch at a time, only after the previous one is submitted to the subscribers, and only
+ * while they ask for more than their buffers hold (at most {@code maxBufferCapacity} batches each): demand flows back
+ * upstream. Nothing is requested before a subscriber asks for data.</p>
+ * <p>Strings of the received batches are released after compression ({@code null}), unless
+ * {@link AsciiCompressor#isPreserveOriginal()}. If a string cannot be compressed (see
+ * {@link AsciiCompressor#isThrowException()}), upstream is cancelled and subscribers receive the exception.</p>
+ * @author Jean Dannemann Carone
+ * @see CompressingProcessor
+ */
+public class BatchCompressingProcessor extends AbstractCompressingProcessor<byte[][], byte[][]> {
+
+	// Constructors:
+
+	/**
+	 * Creates a processor running on the common {@link ForkJoinPool}.
+	 * @param compressor The {@link AsciiCompressor} used to compress each string.
+	 * @author Jean Dannemann Carone
+	 */
+	public BatchCompressingProcessor(AsciiCompressor compressor) {
+		this(compressor, null, ForkJoinPool.getCommonPoolParallelism(), Flow.defaultBufferSize());
+	}
+
+	/**
+	 * Creates a processor.
+	 * @param compressor The {@link AsciiCompressor} used to compress each string.
+	 * @param executor Where batches are compressed and delivered to subscribers, or {@code null} for the common
+	 * {@link ForkJoinPool}.
+	 * @param parallelism Maximum number of chunks compressed at once (ignored for {@link ForkJoinPool}s, see
+	 * {@link BulkCompressor}).
+	 * @param maxBufferCapacity Maximum number of batches buffered for each subscriber (rounded up to a power of two).
+	 * @author Jean Dannemann Carone
+	 */
+	public BatchCompressingProcessor(AsciiCompressor compressor, Executor executor, int parallelism, int maxBufferCapacity) {
+		super(compressor, 1, executor, parallelism, maxBufferCapacity);
+	}
+
+	// Subscriber:
+
+	@Override
+	public void onNext(byte[][] item) {
+		Objects.requireNonNull(item);
+		if (isClosed())
+			return; // Failed: upstream is cancelled.
+
+		try {
+			submit(compress(item, item.length));
+		} catch (RuntimeException e) {
+			fail(e);
+			return;
+		}
+
+		requestMore();
+	}
+
+}
@@ -1,10 +1,22 @@
 package com.dannemann.stringcompressor.bulk;
 
 import com.dannemann.stringcompressor.AsciiCompressor;
+import com.dannemann.stringcompressor.exception.BulkCompressionException;
 import com.dannemann.stringcompressor.util.TriConsumer;
 
+import java.util.Arrays;
 import java.util.List;
-import java.util.stream.IntStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntConsumer;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
 
 /**
  * <p>Utility for compressing batches of strings using a provided {@link AsciiCompressor} and storing the compressed
@@ -16,34 +28,230 @@ import java.util.stream.IntStream;
  * Compression is performed in parallel for better performance.</p>
  * <p>The destination array must be large enough to accommodate the compressed data starting from the specified index
  * provided in each method call.</p>
+ * <p>The {@code bulkDecompress} methods go the other way, decompressing a range of the destination array in parallel
+ * (for example, to export a compressed dataset).</p>
+ * <p>Work is split in chunks of up to {@code chunkSize} consecutive strings, each one a single parallel task. Chunks
+ * get smaller for small batches, so that every worker still gets a share.</p>
+ * <p>By default, chunks run on the common {@link ForkJoinPool}, shared with every parallel stream of the JVM. To
+ * isolate (and bound) compression, give an executor:</p>
+ * <ul>
+ * <li>A {@link ForkJoinPool}: chunks are forked on it, and its parallelism applies.</li>
+ * <li>Any other {@link Executor}: {@code parallelism} workers are submitted to it, each one taking chunks until none
+ * is left. A virtual-thread-per-task executor (Java 21+) with a high parallelism runs about one virtual thread per
+ * chunk, which suits sources that interleave I/O (such as {@link java.util.List} views over remote data).</li>
+ * </ul>
+ * <p>The calling thread waits for the workers. Do not use an executor whose threads may all be busy waiting for this
+ * same call (for example, a bounded pool calling {@code bulkCompress} from its own tasks).</p>
  * @param compressor The {@link AsciiCompressor} used to compress each string.
  * @param destination The destination array where compressed data will be stored.
+ * @param chunkSize Maximum number of strings handled by each parallel task (see {@link #DEFAULT_CHUNK_SIZE}).
+ * @param executor Where chunks run, or {@code null} for the common {@link ForkJoinPool}.
+ * @param parallelism Maximum number of chunks running at once on {@code executor}. Ignored for {@link ForkJoinPool}s,
+ * which have their own.
  * @author Jean Dannemann Carone
  * @see ManagedBulkCompressor
  */
-public record BulkCompressor(AsciiCompressor compressor, byte[][] destination) {
+public record BulkCompressor(AsciiCompressor compressor, byte[][] destination, int chunkSize, Executor executor, int parallelism) {
+
+	/**
+	 * Default maximum number of strings per parallel task. Large enough that short strings are not dominated by the cost
+	 * of splitting the work, small enough to balance long ones.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1024;
+
+	/**
+	 * Chunks per core aimed at for small batches, to balance the load.
+	 */
+	private static final int CHUNKS_PER_CORE = 4;
+
+	public BulkCompressor {
+		if (chunkSize < 1)
+			throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize + ".");
+		if (parallelism < 1)
+			throw new IllegalArgumentException("Parallelism must be positive: " + parallelism + ".");
+	}
+
+	/**
+	 * Creates a bulk compressor that runs on the common {@link ForkJoinPool}.
+	 * @param compressor The {@link AsciiCompressor} used to compress each string.
+	 * @param destination The destination array where compressed data will be stored.
+	 * @param chunkSize Maximum number of strings handled by each parallel task.
+	 * @author Jean Dannemann Carone
+	 */
+	public BulkCompressor(AsciiCompressor compressor, byte[][] destination, int chunkSize) {
+		this(compressor, destination, chunkSize, null, ForkJoinPool.getCommonPoolParallelism());
+	}
+
+	/**
+	 * Creates a bulk compressor with {@link #DEFAULT_CHUNK_SIZE}.
+	 * @param compressor The {@link AsciiCompressor} used to compress each string.
+	 * @param destination The destination array where compressed data will be stored.
+	 * @author Jean Dannemann Carone
+	 */
+	public BulkCompressor(AsciiCompressor compressor, byte[][] destination) {
+		this(compressor, destination, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * @param pool Where chunks will run.
+	 * @return A copy of this bulk compressor that runs on {@code pool}, with its parallelism.
+	 * @author Jean Dannemann Carone
+	 */
+	public BulkCompressor withExecutor(ForkJoinPool pool) {
+		return new BulkCompressor(compressor, destination, chunkSize, pool, pool.getParallelism());
+	}
+
+	/**
+	 * @param executor Where chunks will run, or {@code null} for the common {@link ForkJoinPool}.
+	 * @param parallelism Maximum number of chunks running at once.
+	 * @return A copy of this bulk compressor that runs on {@code executor}.
+	 * @author Jean Dannemann Carone
+	 */
+	public BulkCompressor withExecutor(Executor executor, int parallelism) {
+		return new BulkCompressor(compressor, destination, chunkSize, executor, parallelism);
+	}
+
+	/**
+	 * @param destination Another destination array.
+	 * @return A copy of this bulk compressor (same compressor, chunk size and executor) for {@code destination}.
+	 */
+	BulkCompressor withDestination(byte[][] destination) {
+		return new BulkCompressor(compressor, destination, chunkSize, executor, parallelism);
+	}
 
 	/**
 	 * <p>Compress a batch of strings and add them to the destination array starting at the specified index. A callback
-	 * function is executed after each compression iteration (useful for logging and debugging).</p>
-	 * <p>The arguments passed to the callback function are the index, the original string, and its compressed form. Note
-	 * that this is executed in parallel, so, don't expect a sequential index in the callback.</p>
+	 * function is executed once per chunk, after its strings are compressed (useful for logging, progress and
+	 * debugging).</p>
+	 * <p>The arguments passed to the callback function are the range of the chunk in {@code source}: {@code from}
+	 * (inclusive) and {@code to} (exclusive). The compressed form of {@code source[i]} is at
+	 * {@code destination[destinationStart + i]}. Note that chunks run in parallel, so don't expect them in order.</p>
+	 * @param source The batch of strings to be compressed.
+	 * @param destinationStart The index at which elements will start being added to the destination array.
+	 * @param callback A function that is called after each chunk is compressed and added to the destination array.
+	 * @author Jean Dannemann Carone
+	 */
+	public void bulkCompressChunks(final byte[][] source, final int destinationStart, final ChunkCallback callback) {
+		bulkCompress(source, 0, source.length, destinationStart, callback);
+	}
+
+	/**
+	 * Overloaded version of {@link #bulkCompressChunks(byte[][], int, ChunkCallback)}.
+	 * @author Jean Dannemann Carone
+	 */
+	public void bulkCompressChunks(final String[] source, final int destinationStart, final ChunkCallback callback) {
+		bulkCompress(source, 0, source.length, destinationStart, callback);
+	}
+
+	/**
+	 * Overloaded version of {@link #bulkCompressChunks(byte[][], int, ChunkCallback)}.
+	 * @author Jean Dannemann Carone
+	 */
+	public void bulkCompressChunks(final List<String> source, final int destinationStart, final ChunkCallback callback) {
+		bulkCompress(source, 0, source.size(), destinationStart, callback);
+	}
+
+	/**
+	 * Same as {@link #bulkCompressChunks(byte[][], int, ChunkCallback)} without a callback.
+	 * @author Jean Dannemann Carone
+	 */
+	public void bulkCompress(final byte[][] source, final int destinationStart) {
+		bulkCompressChunks(source, destinationStart, null);
+	}
+
+	/**
+	 * Same as {@link #bulkCompressChunks(String[], int, ChunkCallback)} without a callback.
+	 * @author Jean Dannemann Carone
+	 */
+	public void bulkCompress(final String[] source, final int destinationStart) {
+		bulkCompressChunks(source, destinationStart, null);
+	}
+
+	/**
+	 * Same as {@link #bulkCompressChunks(List, int, ChunkCallback)} without a callback.
+	 * @author Jean Dannemann Carone
+	 */
+	public void bulkCompress(final List<String> source, final int destinationStart) {
+		bulkCompressChunks(source, destinationStart, null);
+	}
+
+	/**
+	 * <p>Asynchronous version of {@link #bulkCompressChunks(byte[][], int, ChunkCallback)}: returns right away, so the caller
+	 * can go on (for example, reading the next batch) while this one is compressed.</p>
+	 * <p>Chunks run on the executor of this bulk compressor (see {@link BulkCompressor}), or the common
+	 * {@link ForkJoinPool}. Neither {@code source} nor its destination range should be touched until the future
+	 * completes. To bound how many batches are in flight, see
+	 * {@link ManagedBulkCompressor#compressAndAddAllAsync(byte[][], TriConsumer)}.</p>
+	 * @param source The batch of strings to be compressed.
+	 * @param destinationStart The index at which elements will start being added to the destination array.
+	 * @param callback A function that is called after each chunk is compressed and added to the destination array.
+	 * @return A future completed when the whole batch is compressed, or completed exceptionally with the first failure.
+	 * @throws IndexOutOfBoundsException If the batch does not fit in the destination array (thrown right away).
+	 * @author Jean Dannemann Carone
+	 */
+	public CompletableFuture<Void> bulkCompressChunksAsync(final byte[][] source, final int destinationStart, final ChunkCallback callback) {
+		return bulkCompressAsync(source, 0, source.length, destinationStart, callback);
+	}
+
+	/**
+	 * Overloaded version of {@link #bulkCompressChunksAsync(byte[][], int, ChunkCallback)}.
+	 * @author Jean Dannemann Carone
+	 */
+	public CompletableFuture<Void> bulkCompressChunksAsync(final String[] source, final int destinationStart, final ChunkCallback callback) {
+		return bulkCompressAsync(source, 0, source.length, destinationStart, callback);
+	}
+
+	/**
+	 * Overloaded version of {@link #bulkCompressChunksAsync(byte[][], int, ChunkCallback)}.
+	 * @author Jean Dannemann Carone
+	 */
+	public CompletableFuture<Void> bulkCompressChunksAsync(final List<String> source, final int destinationStart, final ChunkCallback callback) {
+		return bulkCompressAsync(source, 0, source.size(), destinationStart, callback);
+	}
+
+	/**
+	 * Same as {@link #bulkCompressChunksAsync(byte[][], int, ChunkCallback)} without a callback.
+	 * @author Jean Dannemann Carone
+	 */
+	public CompletableFuture<Void> bulkCompressAsync(final byte[][] source, final int destinationStart) {
+		return bulkCompressChunksAsync(source, destinationStart, null);
+	}
+
+	/**
+	 * Same as {@link #bulkCompressChunksAsync(String[], int, ChunkCallback)} without a callback.
+	 * @author Jean Dannemann Carone
+	 */
+	public CompletableFuture<Void> bulkCompressAsync(final String[] source, final int destinationStart) {
+		return bulkCompressChunksAsync(source, destinationStart, null);
+	}
+
+	/**
+	 * Same as {@link #bulkCompressChunksAsync(List, int, ChunkCallback)} without a callback.
+	 * @author Jean Dannemann Carone
+	 */
+	public CompletableFuture<Void> bulkCompressAsync(final List<String> source, final int destinationStart) {
+		return bulkCompressChunksAsync(source, destinationStart, null);
+	}
+
+	/**
+	 * <p>Compress a batch of strings and add them to the destination array starting at the specified index. A callback
+	 * function is executed for each string (useful for logging and debugging).</p>
+	 * <p>The arguments passed to the callback function are the index, the original string, and its compressed form. Work
+	 * is split in chunks of consecutive strings: the callback is called for each string of a chunk, in order, once the
+	 * whole chunk is compressed. Chunks run in parallel, so, don't expect a sequential index in the callback.</p>
+	 * <p>Each index is boxed: prefer {@link #bulkCompressChunks(byte[][], int, ChunkCallback)} for large batches of short
+	 * strings.</p>
 	 * @param source The batch of strings to be compressed.
 	 * @param destinationStart The index at which elements will start being added to the destination array.
 	 * @param callback A function that is called after each item is compressed and added to the destination array.
 	 * @author Jean Dannemann Carone
 	 */
 	public void bulkCompress(final byte[][] source, final int destinationStart, final TriConsumer<Integer, byte[], byte[]> callback) {
-		IntStream.range(destinationStart, source.length + destinationStart).parallel().forEach(i -> {
-			final int adjustedIndex = i - destinationStart;
-			final byte[] string = source[adjustedIndex];
-			final byte[] compressed = compressor.compress(string);
-			destination[i] = compressed;
-			if (callback != null)
-				callback.accept(adjustedIndex, string, compressed);
-			if (!compressor.isPreserveOriginal())
-				source[adjustedIndex] = null;
-		});
+		final ChunkCallback perString = callback == null ? null : (from, to) -> {
+			for (int i = from; i < to; i++)
+				callback.accept(i, source[i], destination[destinationStart + i]);
+		};
+		bulkCompressChunks(source, destinationStart, perString);
 	}
 
 	/**
@@ -51,16 +259,11 @@ public record BulkCompressor(AsciiCompressor compressor, byte[][] destination) {
 	 * @author Jean Dannemann Carone
 	 */
 	public void bulkCompress(final String[] source, final int destinationStart, final TriConsumer<Integer, String, byte[]> callback) {
-		IntStream.range(destinationStart, source.length + destinationStart).parallel().forEach(i -> {
-			final int adjustedIndex = i - destinationStart;
-			final String string = source[adjustedIndex];
-			final byte[] compressed = compressor.compress(string);
-			destination[i] = compressed;
-			if (callback != null)
-				callback.accept(adjustedIndex, string, compressed);
-			if (!compressor.isPreserveOriginal())
-				source[adjustedIndex] = null;
-		});
+		final ChunkCallback perString = callback == null ? null : (from, to) -> {
+			for (int i = from; i < to; i++)
+				callback.accept(i, source[i], destination[destinationStart + i]);
+		};
+		bulkCompressChunks(source, destinationStart, perString);
 	}
 
 	/**
@@ -68,16 +271,358 @@ public record BulkCompressor(AsciiCompressor compressor, byte[][] destination) {
 	 * @author Jean Dannemann Carone
 	 */
 	public void bulkCompress(final List<String> source, final int destinationStart, final TriConsumer<Integer, String, byte[]> callback) {
-		IntStream.range(destinationStart, source.size() + destinationStart).parallel().forEach(i -> {
-			final int adjustedIndex = i - destinationStart;
-			final String string = source.get(adjustedIndex);
-			final byte[] compressed = compressor.compress(string);
-			destination[i] = compressed;
+		final ChunkCallback perString = callback == null ? null : (from, to) -> {
+			for (int i = from; i < to; i++)
+				callback.accept(i, source.get(i), destination[destinationStart + i]);
+		};
+		bulkCompressChunks(source, destinationStart, perString);
+	}
+
+	/**
+	 * <p>Decompresses {@code target.length} strings of the destination array, starting at index {@code start}, into
+	 * {@code target}. Null entries (unused slots) stay null.</p>
+	 * <p>Decompression is performed in parallel, in chunks of consecutive strings.</p>
+	 * @param start Index of the destination array of the first string to be decompressed.
+	 * @param target Array receiving the decompressed strings.
+	 * @author Jean Dannemann Carone
+	 */
+	public void bulkDecompress(final int start, final byte[][] target) {
+		checkRange(start, target.length);
+		forEachChunk(target.length, (from, to) -> {
+			for (int i = from; i < to; i++) {
+				final byte[] compressed = destination[start + i];
+				target[i] = compressed != null ? compressor.decompress(compressed) : null;
+			}
+		});
+	}
+
+	/**
+	 * Overloaded version of {@link #bulkDecompress(int, byte[][])}. Each chunk decompresses into a reused buffer, so the
+	 * only allocations are the strings themselves.
+	 * @author Jean Dannemann Carone
+	 */
+	public void bulkDecompress(final int start, final String[] target) {
+		checkRange(start, target.length);
+		forEachChunk(target.length, (from, to) -> {
+			byte[] buffer = new byte[64];
+			for (int i = from; i < to; i++) {
+				final byte[] compressed = destination[start + i];
+				if (compressed == null) {
+					target[i] = null;
+					continue;
+				}
+				final int length = compressor.decompressedLength(compressed, 0, compressed.length);
+				if (length > buffer.length)
+					buffer = new byte[Math.max(length, buffer.length << 1)];
+				compressor.decompress(compressed, 0, compressed.length, buffer, 0);
+				target[i] = new String(buffer, 0, length, ISO_8859_1);
+			}
+		});
+	}
+
+	/**
+	 * <p>Decompresses {@code offsets.length - 1} strings of the destination array, starting at index {@code start},
+	 * into a single buffer. String {@code i} ends up at {@code buffer[offsets[i] ... offsets[i + 1] - 1]}, so
+	 * {@code offsets[0]} is {@code 0} and the last offset is the length of the buffer. Null entries (unused slots) are
+	 * decompressed as empty strings.</p>
+	 * <p>This runs in two parallel passes (lengths, then contents), and avoids one allocation per string.</p>
+	 * @param start Index of the destination array of the first string to be decompressed.
+	 * @param offsets Array receiving the offsets, one longer than the number of strings.
+	 * @return The buffer holding all decompressed strings, one after the other.
+	 * @throws BulkCompressionException If the decompressed strings do not fit in a single array.
+	 * @author Jean Dannemann Carone
+	 */
+	public byte[] bulkDecompress(final int start, final int[] offsets) {
+		final int count = offsets.length - 1;
+		checkRange(start, count);
+		offsets[0] = 0;
+		forEachChunk(count, (from, to) -> {
+			for (int i = from; i < to; i++) {
+				final byte[] compressed = destination[start + i];
+				offsets[i + 1] = compressed != null ? compressor.decompressedLength(compressed, 0, compressed.length) : 0;
+			}
+		});
+
+		long total = 0;
+		for (int i = 1; i <= count; i++)
+			offsets[i] = (int) (total += offsets[i]);
+		if (total > Integer.MAX_VALUE - 8)
+			throw new BulkCompressionException("Decompressed strings exceed the maximum array length: " + total + " bytes.");
+
+		final byte[] buffer = new byte[(int) total];
+		forEachChunk(count, (from, to) -> {
+			for (int i = from; i < to; i++) {
+				final byte[] compressed = destination[start + i];
+				if (compressed != null)
+					compressor.decompress(compressed, 0, compressed.length, buffer, offsets[i]);
+			}
+		});
+		return buffer;
+	}
+
+	/**
+	 * Compresses {@code source[sourceFrom ... sourceTo - 1]} into the destination array, starting at
+	 * {@code destinationStart}. Callbacks receive source indexes.
+	 */
+	void bulkCompress(final byte[][] source, final int sourceFrom, final int sourceTo, final int destinationStart, final ChunkCallback callback) {
+		checkRange(destinationStart, sourceTo - sourceFrom);
+		forEachChunk(sourceTo - sourceFrom, compressing(source, sourceFrom, destinationStart, callback));
+	}
+
+	/**
+	 * Asynchronous version of {@link #bulkCompress(byte[][], int, int, int, ChunkCallback)}.
+	 */
+	CompletableFuture<Void> bulkCompressAsync(final byte[][] source, final int sourceFrom, final int sourceTo, final int destinationStart, final ChunkCallback callback) {
+		checkRange(destinationStart, sourceTo - sourceFrom);
+		return forEachChunkAsync(sourceTo - sourceFrom, compressing(source, sourceFrom, destinationStart, callback));
+	}
+
+	private ChunkCallback compressing(final byte[][] source, final int sourceFrom, final int destinationStart, final ChunkCallback callback) {
+		return (chunkFrom, chunkTo) -> {
+			final int from = sourceFrom + chunkFrom;
+			final int to = sourceFrom + chunkTo;
+			for (int i = from; i < to; i++)
+				destination[destinationStart - sourceFrom + i] = compressor.compress(source[i]);
 			if (callback != null)
-				callback.accept(adjustedIndex, string, compressed);
+				callback.accept(from, to);
 			if (!compressor.isPreserveOriginal())
-				source.set(adjustedIndex, null);
-		});
+				Arrays.fill(source, from, to, null);
+		};
+	}
+
+	/**
+	 * Compresses {@code source[sourceFrom ... sourceTo - 1]} into the destination array, starting at
+	 * {@code destinationStart}. Callbacks receive source indexes.
+	 */
+	void bulkCompress(final String[] source, final int sourceFrom, final int sourceTo, final int destinationStart, final ChunkCallback callback) {
+		checkRange(destinationStart, sourceTo - sourceFrom);
+		forEachChunk(sourceTo - sourceFrom, compressing(source, sourceFrom, destinationStart, callback));
+	}
+
+	/**
+	 * Asynchronous version of {@link #bulkCompress(String[], int, int, int, ChunkCallback)}.
+	 */
+	CompletableFuture<Void> bulkCompressAsync(final String[] source, final int sourceFrom, final int sourceTo, final int destinationStart, final ChunkCallback callback) {
+		checkRange(destinationStart, sourceTo - sourceFrom);
+		return forEachChunkAsync(sourceTo - sourceFrom, compressing(source, sourceFrom, destinationStart, callback));
+	}
+
+	private ChunkCallback compressing(final String[] source, final int sourceFrom, final int destinationStart, final ChunkCallback callback) {
+		return (chunkFrom, chunkTo) -> {
+			final int from = sourceFrom + chunkFrom;
+			final int to = sourceFrom + chunkTo;
+			for (int i = from; i < to; i++)
+				destination[destinationStart - sourceFrom + i] = compressor.compress(source[i]);
+			if (callback != null)
+				callback.accept(from, to);
+			if (!compressor.isPreserveOriginal())
+				Arrays.fill(source, from, to, null);
+		};
+	}
+
+	/**
+	 * Compresses {@code source[sourceFrom ... sourceTo - 1]} into the destination array, starting at
+	 * {@code destinationStart}. Callbacks receive source indexes.
+	 */
+	void bulkCompress(final List<String> source, final int sourceFrom, final int sourceTo, final int destinationStart, final ChunkCallback callback) {
+		checkRange(destinationStart, sourceTo - sourceFrom);
+		forEachChunk(sourceTo - sourceFrom, compressing(source, sourceFrom, destinationStart, callback));
+	}
+
+	/**
+	 * Asynchronous version of {@link #bulkCompress(List, int, int, int, ChunkCallback)}.
+	 */
+	CompletableFuture<Void> bulkCompressAsync(final List<String> source, final int sourceFrom, final int sourceTo, final int destinationStart, final ChunkCallback callback) {
+		checkRange(destinationStart, sourceTo - sourceFrom);
+		return forEachChunkAsync(sourceTo - sourceFrom, compressing(source, sourceFrom, destinationStart, callback));
+	}
+
+	private ChunkCallback compressing(final List<String> source, final int sourceFrom, final int destinationStart, final ChunkCallback callback) {
+		return (chunkFrom, chunkTo) -> {
+			final int from = sourceFrom + chunkFrom;
+			final int to = sourceFrom + chunkTo;
+			for (int i = from; i < to; i++)
+				destination[destinationStart - sourceFrom + i] = compressor.compress(source.get(i));
+			if (callback != null)
+				callback.accept(from, to);
+			if (!compressor.isPreserveOriginal())
+				for (int i = from; i < to; i++)
+				source.set(i, null);
+		};
+	}
+
+	private void checkRange(final int start, final int count) {
+		if (start < 0 || count < 0 || start > destination.length - count)
+			throw new IndexOutOfBoundsException("Range [" + start + ", " + start + " + " + count + ") out of bounds for length " + destination.length + ".");
+	}
+
+	/**
+	 * Runs {@code chunk} in parallel over {@code 0 ... count - 1}, split in ranges of at most {@link #chunkSize()}
+	 * strings. Small batches get smaller ranges, down to one string, so that each worker gets about
+	 * {@link #CHUNKS_PER_CORE} of them.
+	 * <p>If a chunk fails, the chunks not started yet are skipped, and the first failure is rethrown only once every
+	 * chunk started is done: nothing is written to the destination after this method returns or throws.</p>
+	 */
+	private void forEachChunk(final int count, final ChunkCallback chunk) {
+		final int size = chunkLength(count);
+		final int chunks = (int) (((long) count + size - 1) / size);
+		final IntConsumer task = c -> chunk.accept(c * size, (int) Math.min(count, (long) (c + 1) * size));
+		if (chunks == 1)
+			task.accept(0);
+		else if (chunks > 1) {
+			if (executor instanceof ForkJoinPool || executor == null) {
+				final AtomicReference<Throwable> failure = new AtomicReference<>();
+				(executor == null ? ForkJoinPool.commonPool() : (ForkJoinPool) executor).invoke(new ChunkAction(task, 0, chunks, failure));
+				if (failure.get() != null)
+					rethrow(failure.get());
+			} else
+				await(runOnExecutor(task, chunks));
+		}
+	}
+
+	/**
+	 * Same as {@link #forEachChunk(int, ChunkCallback)}, without waiting. No thread waits for the chunks either: on an
+	 * {@link Executor}, the last worker completes the future.
+	 */
+	private CompletableFuture<Void> forEachChunkAsync(final int count, final ChunkCallback chunk) {
+		if (count == 0)
+			return CompletableFuture.completedFuture(null);
+		if (executor == null)
+			return CompletableFuture.runAsync(() -> forEachChunk(count, chunk));
+		if (executor instanceof ForkJoinPool)
+			return CompletableFuture.runAsync(() -> forEachChunk(count, chunk), executor);
+
+		final int size = chunkLength(count);
+		final int chunks = (int) (((long) count + size - 1) / size);
+		return runOnExecutor(c -> chunk.accept(c * size, (int) Math.min(count, (long) (c + 1) * size)), chunks);
+	}
+
+	/**
+	 * @return Number of strings per chunk: at most {@link #chunkSize()}, down to one string for small batches, so that
+	 * each worker gets about {@link #CHUNKS_PER_CORE} chunks.
+	 */
+	private int chunkLength(final int count) {
+		final int workers = executor instanceof ForkJoinPool pool ? pool.getParallelism() :
+			executor != null ? parallelism : ForkJoinPool.getCommonPoolParallelism();
+		final int perWorker = (int) (count / ((long) workers * CHUNKS_PER_CORE));
+		return Math.max(1, Math.min(chunkSize, perWorker));
+	}
+
+	/**
+	 * Submits up to {@link #parallelism()} workers to the executor, each one running chunks until none is left. The last
+	 * worker to finish completes the future. The first failure stops the other workers and completes the future
+	 * exceptionally. If the executor rejects a worker, the calling thread runs it.
+	 */
+	private CompletableFuture<Void> runOnExecutor(final IntConsumer task, final int chunks) {
+		final int workers = Math.min(parallelism, chunks);
+		final AtomicInteger next = new AtomicInteger();
+		final AtomicInteger running = new AtomicInteger(workers);
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		final CompletableFuture<Void> done = new CompletableFuture<>();
+		final Runnable worker = () -> {
+			try {
+				for (int c; failure.get() == null && (c = next.getAndIncrement()) < chunks; )
+					task.accept(c);
+			} catch (Throwable t) {
+				failure.compareAndSet(null, t);
+			} finally {
+				if (running.decrementAndGet() == 0) {
+					final Throwable t = failure.get();
+					if (t == null)
+						done.complete(null);
+					else
+						done.completeExceptionally(t);
+				}
+			}
+		};
+
+		for (int w = 0; w < workers; w++)
+			try {
+				executor.execute(worker);
+			} catch (RejectedExecutionException e) {
+				worker.run();
+			}
+
+		return done;
+	}
+
+	/**
+	 * Waits for a future, rethrowing its failure as is.
+	 */
+	private static void await(final CompletableFuture<Void> future) {
+		try {
+			future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new BulkCompressionException("Bulk operation interrupted.");
+		} catch (ExecutionException e) {
+			rethrow(e.getCause());
+		}
+	}
+
+	/**
+	 * Rethrows the failure of a chunk as is (or wrapped, if checked).
+	 */
+	private static void rethrow(final Throwable failure) {
+		if (failure instanceof RuntimeException exception)
+			throw exception;
+		if (failure instanceof Error error)
+			throw error;
+		throw new BulkCompressionException("Bulk operation failed: " + failure);
+	}
+
+	/**
+	 * Forks chunks {@code from ... to - 1} on a {@link ForkJoinPool}, halving the range until one chunk is left. Failures
+	 * are recorded instead of thrown, so that every fork is joined; chunks starting after a failure are skipped.
+	 */
+	private static final class ChunkAction extends RecursiveAction {
+
+		private final IntConsumer task;
+		private final int from;
+		private final int to;
+		private final AtomicReference<Throwable> failure;
+
+		private ChunkAction(IntConsumer task, int from, int to, AtomicReference<Throwable> failure) {
+			this.task = task;
+			this.from = from;
+			this.to = to;
+			this.failure = failure;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from == 1) {
+				if (failure.get() == null)
+					try {
+						task.accept(from);
+					} catch (Throwable t) {
+						failure.compareAndSet(null, t);
+					}
+				return;
+			}
+
+			final int middle = from + to >>> 1;
+			final ChunkAction right = new ChunkAction(task, middle, to, failure);
+			right.fork();
+			new ChunkAction(task, from, middle, failure).compute();
+			right.join();
+		}
+
+	}
+
+	/**
+	 * Receives the range of a chunk of strings, once the chunk is done. Indexes are primitive, so there is no boxing.
+	 * @author Jean Dannemann Carone
+	 */
+	@FunctionalInterface
+	public interface ChunkCallback {
+
+		/**
+		 * @param from Index of the first string of the chunk (inclusive).
+		 * @param to Index after the last string of the chunk (exclusive).
+		 */
+		void accept(int from, int to);
+
 	}
 
 }
@@ -0,0 +1,117 @@
+package com.dannemann.stringcompressor.bulk;
+
+import com.dannemann.stringcompressor.AsciiCompressor;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * <p>A {@link Flow.Processor} that compresses each string received ({@code byte[]}) and publishes it, compressed, in
+ * the same order. It plugs {@link AsciiCompressor} into a {@link java.util.concurrent.Flow} pipeline.</p>
+ * <p>Strings are buffered in batches of {@code batchSize}, then each batch is compressed in parallel by a
+ * {@link BulkCompressor}. Upstream is asked for one batch at a time, only after the previous one is submitted to the
+ * subscribers, and only while they ask for more than their buffers hold (at most {@code maxBufferCapacity} items each):
+ * demand flows back upstream. Nothing is requested before a subscriber asks for data, so the processor and its
+ * subscribers can be wired in any order.</p>
+ * <p>A batch is published only when full, or when upstream completes. For sources that may pause for long, prefer a
+ * smaller batch size, or {@link BatchCompressingProcessor} to control batches yourself.</p>
+ * <p>Received strings are released after compression, unless {@link AsciiCompressor#isPreserveOriginal()}. If a
+ * string cannot be compressed (see {@link AsciiCompressor#isThrowException()}), upstream is cancelled and subscribers
+ * receive the exception.</p>
+ * <pre>{@code
+ * CompressingProcessor processor = new CompressingProcessor(compressor);
+ * publisher.subscribe(processor);
+ * processor.subscribe(subscriber); // Receives the compressed strings.
+ * }</pre>
+ * @author Jean Dannemann Carone
+ * @see BatchCompressingProcessor
+ */
+public class CompressingProcessor extends AbstractCompressingProcessor<byte[], byte[]> {
+
+	/**
+	 * Default number of strings compressed together.
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 8192;
+
+	// Fields:
+
+	private final byte[][] batch;
+	private int count;
+
+	// Constructors:
+
+	/**
+	 * Creates a processor with {@link #DEFAULT_BATCH_SIZE}, running on the common {@link ForkJoinPool}.
+	 * @param compressor The {@link AsciiCompressor} used to compress each string.
+	 * @author Jean Dannemann Carone
+	 */
+	public CompressingProcessor(AsciiCompressor compressor) {
+		this(compressor, DEFAULT_BATCH_SIZE, null, ForkJoinPool.getCommonPoolParallelism(), Flow.defaultBufferSize());
+	}
+
+	/**
+	 * Creates a processor.
+	 * @param compressor The {@link AsciiCompressor} used to compress each string.
+	 * @param batchSize Number of strings compressed together.
+	 * @param executor Where batches are compressed and items delivered to subscribers, or {@code null} for the common
+	 * {@link ForkJoinPool}.
+	 * @param parallelism Maximum number of chunks compressed at once (ignored for {@link ForkJoinPool}s, see
+	 * {@link BulkCompressor}).
+	 * @param maxBufferCapacity Maximum number of items buffered for each subscriber (rounded up to a power of two).
+	 * @author Jean Dannemann Carone
+	 */
+	public CompressingProcessor(AsciiCompressor compressor, int batchSize, Executor executor, int parallelism, int maxBufferCapacity) {
+		super(compressor, batchSize, executor, parallelism, maxBufferCapacity);
+		if (batchSize < 1)
+			throw new IllegalArgumentException("Batch size must be positive: " + batchSize + ".");
+		this.batch = new byte[batchSize][];
+	}
+
+	// Subscriber:
+
+	@Override
+	public void onNext(byte[] item) {
+		Objects.requireNonNull(item);
+		if (isClosed())
+			return; // Failed: upstream is cancelled.
+
+		batch[count++] = item;
+		if (count < batch.length)
+			return;
+
+		try {
+			publishBatch();
+		} catch (RuntimeException e) {
+			fail(e);
+			return;
+		}
+
+		requestMore();
+	}
+
+	@Override
+	void flush() {
+		publishBatch();
+	}
+
+	private void publishBatch() {
+		final byte[][] compressed = compress(batch, count);
+		Arrays.fill(batch, 0, count, null);
+		count = 0;
+		for (final byte[] item : compressed)
+			submit(item);
+	}
+
+	// Getters:
+
+	/**
+	 * @return Number of strings compressed together.
+	 */
+	public int getBatchSize() {
+		return batch.length;
+	}
+
+}
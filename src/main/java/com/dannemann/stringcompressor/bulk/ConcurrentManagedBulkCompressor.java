@@ -0,0 +1,281 @@
+package com.dannemann.stringcompressor.bulk;
+
+import com.dannemann.stringcompressor.AsciiCompressor;
+import com.dannemann.stringcompressor.bulk.ManagedBulkCompressor.RangeTask;
+import com.dannemann.stringcompressor.bulk.ManagedBulkCompressor.WatermarkListener;
+import com.dannemann.stringcompressor.exception.BulkCompressionException;
+import com.dannemann.stringcompressor.util.TriConsumer;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Thread-safe version of {@link ManagedBulkCompressor}, for many producer threads adding batches at the same time
+ * (for example, one per remote source).</p>
+ * <p>Each batch reserves its range of the destination with an atomic compare-and-set, then is compressed without any
+ * lock, in parallel with the other batches. Batches may finish out of order, so two indexes are tracked:</p>
+ * <ul>
+ * <li>{@link #getReservedIndex()}: strings reserved so far, some of which may still be compressing.</li>
+ * <li>{@link #getPublishedIndex()}: all strings before this index are compressed and visible to any thread. Readers
+ * should not go past it.</li>
+ * </ul>
+ * <p>If a batch fails (for example, with a character not supported), its range is cleared to {@code null} once all its
+ * chunks have stopped, and published anyway, so that later batches are not held back; the exception is rethrown to its
+ * producer. The binary searches take the first {@code null} for the end of the data, so they do not support a
+ * destination where a batch failed: check strings beforehand, or use a compressor that does not throw
+ * ({@link AsciiCompressor#isThrowException()}), if the destination is to be searched.</p>
+ * <p>Arenas are not supported, as {@link com.dannemann.stringcompressor.arena.CompressedStringArena} is not
+ * thread-safe.</p>
+ * @author Jean Dannemann Carone
+ */
+public class ConcurrentManagedBulkCompressor {
+
+	// Fields:
+
+	private final BulkCompressor bulk; // For the array, or for each segment.
+	private final byte[][] array;
+	private final GrowableDestination growable;
+	private final int destinationLength;
+	private final AtomicInteger reserved = new AtomicInteger();
+	private volatile int published;
+
+	// Guarded by "this":
+	private final TreeMap<Integer, Integer> finished = new TreeMap<>(); // Ranges done ahead of the published index.
+	private final Watermarks watermarks;
+
+	// Constructors:
+
+	/**
+	 * Creates a concurrent bulk compressor that fills an array, from its first position.
+	 * @param compressor The {@link AsciiCompressor} used to compress each string.
+	 * @param destination The destination array where compressed data will be stored.
+	 * @author Jean Dannemann Carone
+	 */
+	public ConcurrentManagedBulkCompressor(AsciiCompressor compressor, byte[][] destination) {
+		this(compressor, destination, null, ForkJoinPool.getCommonPoolParallelism());
+	}
+
+	/**
+	 * Same as {@link #ConcurrentManagedBulkCompressor(AsciiCompressor, byte[][])}, running on an executor instead of the
+	 * common {@link ForkJoinPool} (see {@link BulkCompressor}).
+	 * @param compressor The {@link AsciiCompressor} used to compress each string.
+	 * @param destination The destination array where compressed data will be stored.
+	 * @param executor Where compression runs, or {@code null} for the common {@link ForkJoinPool}.
+	 * @param parallelism Maximum number of chunks compressed at once per batch (ignored for {@link ForkJoinPool}s).
+	 * @author Jean Dannemann Carone
+	 */
+	public ConcurrentManagedBulkCompressor(AsciiCompressor compressor, byte[][] destination, Executor executor, int parallelism) {
+		this.bulk = new BulkCompressor(compressor, destination, BulkCompressor.DEFAULT_CHUNK_SIZE, executor, parallelism);
+		this.array = destination;
+		this.growable = null;
+		this.destinationLength = destination.length;
+		this.watermarks = new Watermarks(destinationLength);
+	}
+
+	/**
+	 * Creates a concurrent bulk compressor that adds to a {@link GrowableDestination}, after the strings it already has.
+	 * Growing is synchronized; compressing is not.
+	 * @param compressor The {@link AsciiCompressor} used to compress each string.
+	 * @param destination The growable destination where compressed data will be stored.
+	 * @author Jean Dannemann Carone
+	 */
+	public ConcurrentManagedBulkCompressor(AsciiCompressor compressor, GrowableDestination destination) {
+		this(compressor, destination, null, ForkJoinPool.getCommonPoolParallelism());
+	}
+
+	/**
+	 * Same as {@link #ConcurrentManagedBulkCompressor(AsciiCompressor, GrowableDestination)}, running on an executor
+	 * instead of the common {@link ForkJoinPool} (see {@link BulkCompressor}).
+	 * @param compressor The {@link AsciiCompressor} used to compress each string.
+	 * @param destination The growable destination where compressed data will be stored.
+	 * @param executor Where compression runs, or {@code null} for the common {@link ForkJoinPool}.
+	 * @param parallelism Maximum number of chunks compressed at once per batch (ignored for {@link ForkJoinPool}s).
+	 * @author Jean Dannemann Carone
+	 */
+	public ConcurrentManagedBulkCompressor(AsciiCompressor compressor, GrowableDestination destination, Executor executor, int parallelism) {
+		this.bulk = new BulkCompressor(compressor, new byte[0][], BulkCompressor.DEFAULT_CHUNK_SIZE, executor, parallelism);
+		this.array = null;
+		this.growable = destination;
+		this.destinationLength = destination.getMaxCapacity();
+		this.watermarks = new Watermarks(destinationLength);
+		this.reserved.set(destination.size());
+		this.published = destination.size();
+	}
+
+	// Compression:
+
+	/**
+	 * <p>Compresses a batch and adds it to the destination, in a range reserved for it. Can be called by many threads at
+	 * the same time.</p>
+	 * <p>The callback receives the index in the batch, the original string, and its compressed form.</p>
+	 * @param source The batch of strings to be compressed.
+	 * @param callback A function called after each string is compressed, or {@code null}.
+	 * @return Index of the destination where the batch starts.
+	 * @throws BulkCompressionException If the batch does not fit in the destination (nothing is reserved).
+	 * @author Jean Dannemann Carone
+	 */
+	public int compressAndAddAll(byte[][] source, TriConsumer<Integer, byte[], byte[]> callback) {
+		return add(source.length, (bulk, from, to, start) -> bulk.bulkCompress(source, from, to, start, callback == null ? null :
+			(f, t) -> {
+				for (int k = f; k < t; k++)
+					callback.accept(k, source[k], bulk.destination()[start - from + k]);
+			}));
+	}
+
+	public int compressAndAddAll(byte[][] source) {
+		return compressAndAddAll(source, null);
+	}
+
+	/**
+	 * Overloaded version of {@link #compressAndAddAll(byte[][], TriConsumer)}.
+	 * @author Jean Dannemann Carone
+	 */
+	public int compressAndAddAll(String[] source, TriConsumer<Integer, String, byte[]> callback) {
+		return add(source.length, (bulk, from, to, start) -> bulk.bulkCompress(source, from, to, start, callback == null ? null :
+			(f, t) -> {
+				for (int k = f; k < t; k++)
+					callback.accept(k, source[k], bulk.destination()[start - from + k]);
+			}));
+	}
+
+	public int compressAndAddAll(String[] source) {
+		return compressAndAddAll(source, null);
+	}
+
+	/**
+	 * Overloaded version of {@link #compressAndAddAll(byte[][], TriConsumer)}.
+	 * @author Jean Dannemann Carone
+	 */
+	public int compressAndAddAll(List<String> source, TriConsumer<Integer, String, byte[]> callback) {
+		return add(source.size(), (bulk, from, to, start) -> bulk.bulkCompress(source, from, to, start, callback == null ? null :
+			(f, t) -> {
+				for (int k = f; k < t; k++)
+					callback.accept(k, source.get(k), bulk.destination()[start - from + k]);
+			}));
+	}
+
+	public int compressAndAddAll(List<String> source) {
+		return compressAndAddAll(source, null);
+	}
+
+	/**
+	 * <p>Registers a listener called once, when the published strings reach {@code percentage} of the destination
+	 * length (see {@link ManagedBulkCompressor#addWatermarkListener(int, WatermarkListener)}).</p>
+	 * <p>Listeners are called by the producer thread whose batch publishes the strings, while holding the publication
+	 * lock: keep them short.</p>
+	 * @param percentage From 1 to 100.
+	 * @param listener The listener.
+	 * @author Jean Dannemann Carone
+	 */
+	public synchronized void addWatermarkListener(int percentage, WatermarkListener listener) {
+		watermarks.add(percentage, listener, published);
+	}
+
+	/**
+	 * Reserves a range, compresses the batch into it (segment by segment, for a growable destination), and publishes it.
+	 */
+	private int add(int count, RangeTask task) {
+		final int first = reserve(count);
+		final int end = first + count;
+
+		if (count == 0)
+			return first;
+
+		try {
+			if (array != null)
+				task.run(bulk, 0, count, first);
+			else
+				addToSegments(first, count, task);
+		} catch (RuntimeException | Error e) {
+			clear(first, end);
+			publish(first, end);
+			throw e;
+		}
+
+		publish(first, end);
+		return first;
+	}
+
+	private int reserve(int count) {
+		while (true) {
+			final int first = reserved.get();
+			if ((long) first + count > destinationLength)
+				throw new BulkCompressionException("Source array length exceeds destination array length.");
+			if (reserved.compareAndSet(first, first + count))
+				return first;
+		}
+	}
+
+	private void addToSegments(int first, int count, RangeTask task) {
+		synchronized (growable) {
+			growable.ensureCapacity((long) first + count);
+		}
+
+		for (int s = growable.segmentOf(first), done = 0; done < count; s++) {
+			final byte[][] segment = growable.segment(s);
+			final int start = first + done - growable.segmentStart(s);
+			final int length = Math.min(count - done, segment.length - start);
+			task.run(bulk.withDestination(segment), done, done + length, start);
+			done += length;
+		}
+	}
+
+	/**
+	 * Clears a failed batch, so that its range holds no partial data.
+	 */
+	private void clear(int first, int end) {
+		if (array != null) {
+			Arrays.fill(array, first, end, null);
+			return;
+		}
+
+		for (int i = first, last = Math.min(end, growable.capacity()); i < last; ) {
+			final int s = growable.segmentOf(i);
+			final int start = i - growable.segmentStart(s);
+			final int length = Math.min(last - i, growable.segment(s).length - start);
+			Arrays.fill(growable.segment(s), start, start + length, null);
+			i += length;
+		}
+	}
+
+	/**
+	 * Marks {@code first ... end - 1} as done and advances the published index over all contiguous ranges done.
+	 */
+	private synchronized void publish(int first, int end) {
+		if (first != published) {
+			finished.put(first, end);
+			return;
+		}
+
+		int index = end;
+		for (Integer next; (next = finished.remove(index)) != null; )
+			index = next;
+
+		if (growable != null)
+			growable.setSize(index);
+
+		published = index;
+		watermarks.reach(index);
+	}
+
+	// Getters:
+
+	/**
+	 * @return Number of strings reserved by the batches added so far, including those still being compressed.
+	 */
+	public int getReservedIndex() {
+		return reserved.get();
+	}
+
+	/**
+	 * @return Number of strings compressed and published: every index before it can be read by any thread.
+	 */
+	public int getPublishedIndex() {
+		return published;
+	}
+
+}
@@ -0,0 +1,184 @@
+package com.dannemann.stringcompressor.bulk;
+
+import com.dannemann.stringcompressor.exception.BulkCompressionException;
+
+import java.util.Arrays;
+
+/**
+ * <p>Destination of compressed strings that grows as data arrives, for use with
+ * {@link ManagedBulkCompressor#ManagedBulkCompressor(com.dannemann.stringcompressor.AsciiCompressor, GrowableDestination)}.
+ * There is no need to allocate a huge {@code byte[][]} up front: memory tracks the volume of data.</p>
+ * <p>Strings are stored in segments (plain {@code byte[][]} arrays). Growing adds a segment, as decided by a
+ * {@link GrowthPolicy}, so existing strings are never copied.</p>
+ * <p>Reading is thread-safe, including while the destination grows. Growing is not: use a single
+ * {@link ManagedBulkCompressor}, or a {@link ConcurrentManagedBulkCompressor} for many producer threads.</p>
+ * @author Jean Dannemann Carone
+ */
+public final class GrowableDestination {
+
+	/**
+	 * Length of the first segment of the default {@link GrowthPolicy#doubling(int)} policy.
+	 */
+	public static final int DEFAULT_FIRST_SEGMENT_LENGTH = 1 << 16;
+
+	/**
+	 * Largest capacity allowed (the largest safe array length).
+	 */
+	public static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+	// Fields:
+
+	private final GrowthPolicy growthPolicy;
+	private final int maxCapacity;
+	private volatile Segments segments = new Segments(new byte[0][][], new int[]{0}); // Replaced as a whole when growing.
+	private volatile int size;
+
+	// Constructors:
+
+	/**
+	 * Creates an empty destination that doubles its capacity each time, up to {@link #MAX_CAPACITY}.
+	 * @author Jean Dannemann Carone
+	 */
+	public GrowableDestination() {
+		this(GrowthPolicy.doubling(DEFAULT_FIRST_SEGMENT_LENGTH), MAX_CAPACITY);
+	}
+
+	/**
+	 * Creates an empty destination.
+	 * @param growthPolicy Decides the length of each new segment.
+	 * @param maxCapacity Maximum number of strings. Adding more throws a {@link BulkCompressionException}.
+	 * @author Jean Dannemann Carone
+	 */
+	public GrowableDestination(GrowthPolicy growthPolicy, int maxCapacity) {
+		if (maxCapacity < 0 || maxCapacity > MAX_CAPACITY)
+			throw new IllegalArgumentException("Max capacity must be between 0 and " + MAX_CAPACITY + ": " + maxCapacity + ".");
+		this.growthPolicy = growthPolicy;
+		this.maxCapacity = maxCapacity;
+	}
+
+	// Access:
+
+	/**
+	 * @param index Index of the string, from {@code 0} to {@code size() - 1}.
+	 * @return The compressed string.
+	 * @throws IndexOutOfBoundsException If {@code index} is out of range.
+	 */
+	public byte[] get(final int index) {
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size + ".");
+		final Segments segments = this.segments;
+		final int segment = segments.of(index);
+		return segments.arrays[segment][index - segments.starts[segment]];
+	}
+
+	/**
+	 * Copies the strings into a single array (for example, to build a binary search). Only the references are copied.
+	 * @return A new array with {@link #size()} strings.
+	 */
+	public byte[][] toArray() {
+		final int size = this.size;
+		final Segments segments = this.segments;
+		final byte[][] array = new byte[size][];
+		for (int s = 0; s < segments.arrays.length && segments.starts[s] < size; s++)
+			System.arraycopy(segments.arrays[s], 0, array, segments.starts[s], Math.min(segments.arrays[s].length, size - segments.starts[s]));
+		return array;
+	}
+
+	// Growth:
+
+	/**
+	 * Adds segments, as decided by the {@link GrowthPolicy}, until there is room for {@code capacity} strings. The last
+	 * segment is trimmed so as not to exceed the max capacity.
+	 * @param capacity Number of strings that must fit.
+	 * @throws BulkCompressionException If {@code capacity} exceeds the max capacity.
+	 */
+	public void ensureCapacity(final long capacity) {
+		if (capacity > maxCapacity)
+			throw new BulkCompressionException("Growable destination would exceed its max capacity (" + maxCapacity + ").");
+
+		while (capacity() < capacity) {
+			final int current = capacity();
+			final int length = growthPolicy.nextSegmentLength(current);
+			if (length < 1)
+				throw new IllegalStateException("Growth policy returned a non-positive segment length: " + length + ".");
+
+			final int count = segments.arrays.length;
+			final byte[][][] arrays = Arrays.copyOf(segments.arrays, count + 1);
+			arrays[count] = new byte[(int) Math.min(length, (long) maxCapacity - current)][];
+			final int[] starts = Arrays.copyOf(segments.starts, count + 2);
+			starts[count + 1] = current + arrays[count].length;
+			segments = new Segments(arrays, starts);
+		}
+	}
+
+	/**
+	 * @return Index of the segment holding {@code index}.
+	 */
+	int segmentOf(final int index) {
+		return segments.of(index);
+	}
+
+	void setSize(final int size) {
+		this.size = size;
+	}
+
+	// Getters:
+
+	/**
+	 * @return Number of strings added.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return Number of strings that fit without growing.
+	 */
+	public int capacity() {
+		final Segments segments = this.segments;
+		return segments.starts[segments.arrays.length];
+	}
+
+	/**
+	 * @return Maximum number of strings.
+	 */
+	public int getMaxCapacity() {
+		return maxCapacity;
+	}
+
+	/**
+	 * @return Number of segments.
+	 */
+	public int segmentCount() {
+		return segments.arrays.length;
+	}
+
+	/**
+	 * @param segment Index of the segment.
+	 * @return The segment itself (not a copy). Its unused slots are {@code null}.
+	 */
+	public byte[][] segment(final int segment) {
+		return segments.arrays[segment];
+	}
+
+	/**
+	 * @param segment Index of the segment.
+	 * @return Index of the first string of the segment.
+	 */
+	public int segmentStart(final int segment) {
+		return segments.starts[segment];
+	}
+
+	/**
+	 * Segments and the index of the first string of each one, plus the capacity at the end.
+	 */
+	private record Segments(byte[][][] arrays, int[] starts) {
+
+		int of(final int index) {
+			final int position = Arrays.binarySearch(starts, 0, arrays.length, index);
+			return position >= 0 ? position : -position - 2;
+		}
+
+	}
+
+}
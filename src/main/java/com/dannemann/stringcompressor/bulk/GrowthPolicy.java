@@ -0,0 +1,43 @@
+package com.dannemann.stringcompressor.bulk;
+
+/**
+ * <p>Decides how much a {@link GrowableDestination} grows each time it runs out of space. Growing adds a segment, so the
+ * strings already stored are never copied.</p>
+ * @author Jean Dannemann Carone
+ * @see GrowableDestination
+ */
+@FunctionalInterface
+public interface GrowthPolicy {
+
+	/**
+	 * @param capacity Current capacity of the destination (the sum of its segments).
+	 * @return The length of the next segment (positive).
+	 */
+	int nextSegmentLength(int capacity);
+
+	/**
+	 * Grows by segments of the same length. Memory tracks the data closely, at the cost of more segments.
+	 * @param segmentLength Length of every segment.
+	 * @return The policy.
+	 * @author Jean Dannemann Carone
+	 */
+	static GrowthPolicy fixed(final int segmentLength) {
+		if (segmentLength < 1)
+			throw new IllegalArgumentException("Segment length must be positive: " + segmentLength + ".");
+		return capacity -> segmentLength;
+	}
+
+	/**
+	 * Doubles the capacity each time (the first segment has {@code firstSegmentLength}), so there are few segments even
+	 * for huge datasets. At most half of the capacity is unused.
+	 * @param firstSegmentLength Length of the first segment.
+	 * @return The policy.
+	 * @author Jean Dannemann Carone
+	 */
+	static GrowthPolicy doubling(final int firstSegmentLength) {
+		if (firstSegmentLength < 1)
+			throw new IllegalArgumentException("Segment length must be positive: " + firstSegmentLength + ".");
+		return capacity -> capacity == 0 ? firstSegmentLength : capacity;
+	}
+
+}
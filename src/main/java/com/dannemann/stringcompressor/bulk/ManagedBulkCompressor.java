@@ -1,31 +1,137 @@
 package com.dannemann.stringcompressor.bulk;
 
 import com.dannemann.stringcompressor.AsciiCompressor;
+import com.dannemann.stringcompressor.arena.CompressedStringArena;
 import com.dannemann.stringcompressor.exception.BulkCompressionException;
 import com.dannemann.stringcompressor.util.TriConsumer;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 /**
  * @author Jean Dannemann Carone
  */
 public class ManagedBulkCompressor {
 
+	/**
+	 * Default maximum number of batches added with {@code compressAndAddAllAsync} and not completed yet.
+	 */
+	public static final int DEFAULT_MAX_IN_FLIGHT_BATCHES = 2;
+
+	private final AsciiCompressor compressor;
 	private final BulkCompressor bulk;
+	private final CompressedStringArena arena;
+	private final GrowableDestination growable;
 	private final int destinationLength;
+	private final Watermarks watermarks;
 
 	private int currentIndex;
+	private int maxInFlightBatches = DEFAULT_MAX_IN_FLIGHT_BATCHES;
+	private Semaphore inFlight = new Semaphore(maxInFlightBatches);
 
 	public ManagedBulkCompressor(AsciiCompressor compressor, byte[][] destination) {
-		this.bulk = new BulkCompressor(compressor, destination);
+		this(compressor, destination, null, ForkJoinPool.getCommonPoolParallelism());
+	}
+
+	/**
+	 * Creates a bulk compressor that fills an array, running on an executor instead of the common {@link ForkJoinPool}
+	 * (see {@link BulkCompressor}).
+	 * @param compressor The {@link AsciiCompressor} used to compress each string.
+	 * @param destination The destination array where compressed data will be stored.
+	 * @param executor Where compression runs, or {@code null} for the common {@link ForkJoinPool}.
+	 * @param parallelism Maximum number of chunks compressed at once (ignored for {@link ForkJoinPool}s).
+	 * @author Jean Dannemann Carone
+	 */
+	public ManagedBulkCompressor(AsciiCompressor compressor, byte[][] destination, Executor executor, int parallelism) {
+		this.compressor = compressor;
+		this.bulk = new BulkCompressor(compressor, destination, BulkCompressor.DEFAULT_CHUNK_SIZE, executor, parallelism);
+		this.arena = null;
+		this.growable = null;
 		this.destinationLength = destination.length;
+		this.watermarks = new Watermarks(destinationLength);
+	}
+
+	/**
+	 * <p>Creates a bulk compressor that appends each batch to an arena, instead of an array. The arena grows as needed,
+	 * so there is no destination length to validate.</p>
+	 * <p>Callbacks receive a copy of each compressed string (taken from the arena), as they are meant for logging and
+	 * debugging.</p>
+	 * @param compressor The {@link AsciiCompressor} used to compress each string.
+	 * @param destination The arena where compressed data will be stored.
+	 * @author Jean Dannemann Carone
+	 */
+	public ManagedBulkCompressor(AsciiCompressor compressor, CompressedStringArena destination) {
+		this.compressor = compressor;
+		this.bulk = null;
+		this.arena = destination;
+		this.growable = null;
+		this.destinationLength = Integer.MAX_VALUE;
+		this.watermarks = new Watermarks(destinationLength);
+		this.currentIndex = destination.size();
+	}
+
+	/**
+	 * <p>Creates a bulk compressor that adds each batch to a {@link GrowableDestination}, which grows by segments as
+	 * needed (see {@link GrowthPolicy}). Nothing has to be allocated up front, and growing never copies the strings
+	 * already compressed.</p>
+	 * <p>The destination's max capacity plays the role of the array length: exceeding it throws a
+	 * {@link BulkCompressionException}, and watermarks are percentages of it.</p>
+	 * @param compressor The {@link AsciiCompressor} used to compress each string.
+	 * @param destination The growable destination where compressed data will be stored.
+	 * @author Jean Dannemann Carone
+	 */
+	public ManagedBulkCompressor(AsciiCompressor compressor, GrowableDestination destination) {
+		this(compressor, destination, null, ForkJoinPool.getCommonPoolParallelism());
+	}
+
+	/**
+	 * Same as {@link #ManagedBulkCompressor(AsciiCompressor, GrowableDestination)}, running on an executor instead of the
+	 * common {@link ForkJoinPool} (see {@link BulkCompressor}).
+	 * @param compressor The {@link AsciiCompressor} used to compress each string.
+	 * @param destination The growable destination where compressed data will be stored.
+	 * @param executor Where compression runs, or {@code null} for the common {@link ForkJoinPool}.
+	 * @param parallelism Maximum number of chunks compressed at once (ignored for {@link ForkJoinPool}s).
+	 * @author Jean Dannemann Carone
+	 */
+	public ManagedBulkCompressor(AsciiCompressor compressor, GrowableDestination destination, Executor executor, int parallelism) {
+		this.compressor = compressor;
+		this.bulk = new BulkCompressor(compressor, new byte[0][], BulkCompressor.DEFAULT_CHUNK_SIZE, executor, parallelism); // Per segment.
+		this.arena = null;
+		this.growable = destination;
+		this.destinationLength = destination.getMaxCapacity();
+		this.watermarks = new Watermarks(destinationLength);
+		this.currentIndex = destination.size();
 	}
 
 	public void compressAndAddAll(byte[][] source, TriConsumer<Integer, byte[], byte[]> callback) {
+		if (growable != null) {
+			addToSegments(source.length, (segment, from, to, start) -> segment.bulkCompress(source, from, to, start, callback == null ? null :
+				(f, t) -> {
+					for (int k = f; k < t; k++)
+						callback.accept(k, source[k], segment.destination()[start - from + k]);
+				}));
+			return;
+		}
+
+		if (arena != null) {
+			final int first = arena.addAll(compressor, source);
+			afterArenaBatch(first, source.length,
+				callback == null ? null : k -> callback.accept(k, source[k], arena.get(first + k)), k -> source[k] = null);
+			return;
+		}
+
 		int willEndAt = currentIndex + source.length;
 		validate(willEndAt);
 		bulk.bulkCompress(source, currentIndex, callback);
 		currentIndex = willEndAt;
+		reachWatermarks();
 	}
 
 	public void compressAndAddAll(byte[][] source) {
@@ -33,10 +139,27 @@ public class ManagedBulkCompressor {
 	}
 
 	public void compressAndAddAll(String[] source, TriConsumer<Integer, String, byte[]> callback) {
+		if (growable != null) {
+			addToSegments(source.length, (segment, from, to, start) -> segment.bulkCompress(source, from, to, start, callback == null ? null :
+				(f, t) -> {
+					for (int k = f; k < t; k++)
+						callback.accept(k, source[k], segment.destination()[start - from + k]);
+				}));
+			return;
+		}
+
+		if (arena != null) {
+			final int first = arena.addAll(compressor, source);
+			afterArenaBatch(first, source.length,
+				callback == null ? null : k -> callback.accept(k, source[k], arena.get(first + k)), k -> source[k] = null);
+			return;
+		}
+
 		int willEndAt = currentIndex + source.length;
 		validate(willEndAt);
 		bulk.bulkCompress(source, currentIndex, callback);
 		currentIndex = willEndAt;
+		reachWatermarks();
 	}
 
 	public void compressAndAddAll(String[] source) {
@@ -44,23 +167,282 @@ public class ManagedBulkCompressor {
 	}
 
 	public void compressAndAddAll(List<String> source, TriConsumer<Integer, String, byte[]> callback) {
+		if (growable != null) {
+			addToSegments(source.size(), (segment, from, to, start) -> segment.bulkCompress(source, from, to, start, callback == null ? null :
+				(f, t) -> {
+					for (int k = f; k < t; k++)
+						callback.accept(k, source.get(k), segment.destination()[start - from + k]);
+				}));
+			return;
+		}
+
+		if (arena != null) {
+			final int first = arena.addAll(compressor, source);
+			afterArenaBatch(first, source.size(),
+				callback == null ? null : k -> callback.accept(k, source.get(k), arena.get(first + k)), k -> source.set(k, null));
+			return;
+		}
+
 		int willEndAt = currentIndex + source.size();
 		validate(willEndAt);
 		bulk.bulkCompress(source, currentIndex, callback);
 		currentIndex = willEndAt;
+		reachWatermarks();
 	}
 
 	public void compressAndAddAll(List<String> source) {
 		compressAndAddAll(source, null);
 	}
 
-	private void validate(int willEndAt) {
-		if (willEndAt > destinationLength) // TODO: Also warn by percentages.
+	/**
+	 * <p>Asynchronous version of {@link #compressAndAddAll(byte[][], TriConsumer)}: reserves the next range of the
+	 * destination and returns right away, while the batch is compressed (see
+	 * {@link BulkCompressor#bulkCompressChunksAsync(byte[][], int, BulkCompressor.ChunkCallback)}). The producer can then read its next
+	 * batch while this one is compressed.</p>
+	 * <p>At most {@link #setMaxInFlightBatches(int) maxInFlightBatches} batches are compressed at once: beyond that, this
+	 * method blocks until one completes. This keeps a fast producer from piling up batches (and their memory) ahead of
+	 * compression.</p>
+	 * <p>{@link #getCurrentIndex()}, the size of a {@link GrowableDestination} and the watermarks count the batch as soon
+	 * as it is accepted. Wait for the future (or {@link #awaitInFlight()}) before reading its range. If the batch fails,
+	 * its range stays reserved and may hold part of the batch.</p>
+	 * <p>Actions chained to the future without {@code Async} run before its slot is freed, so they must not add batches
+	 * themselves. Arenas are not supported, as {@link CompressedStringArena} is not thread-safe.</p>
+	 * @param source The batch of strings to be compressed. Should not be touched until the future completes.
+	 * @param callback A function called after each string is compressed, or {@code null}.
+	 * @return A future completed when the batch is compressed, or completed exceptionally with the first failure.
+	 * @throws BulkCompressionException If the batch does not fit in the destination, or if interrupted while waiting.
+	 * @throws UnsupportedOperationException For an arena destination.
+	 * @author Jean Dannemann Carone
+	 */
+	public CompletableFuture<Void> compressAndAddAllAsync(byte[][] source, TriConsumer<Integer, byte[], byte[]> callback) {
+		return addAsync(source.length, (bulk, from, to, start) -> bulk.bulkCompressAsync(source, from, to, start, callback == null ? null :
+			(f, t) -> {
+				for (int k = f; k < t; k++)
+					callback.accept(k, source[k], bulk.destination()[start - from + k]);
+			}));
+	}
+
+	public CompletableFuture<Void> compressAndAddAllAsync(byte[][] source) {
+		return compressAndAddAllAsync(source, null);
+	}
+
+	/**
+	 * Overloaded version of {@link #compressAndAddAllAsync(byte[][], TriConsumer)}.
+	 * @author Jean Dannemann Carone
+	 */
+	public CompletableFuture<Void> compressAndAddAllAsync(String[] source, TriConsumer<Integer, String, byte[]> callback) {
+		return addAsync(source.length, (bulk, from, to, start) -> bulk.bulkCompressAsync(source, from, to, start, callback == null ? null :
+			(f, t) -> {
+				for (int k = f; k < t; k++)
+					callback.accept(k, source[k], bulk.destination()[start - from + k]);
+			}));
+	}
+
+	public CompletableFuture<Void> compressAndAddAllAsync(String[] source) {
+		return compressAndAddAllAsync(source, null);
+	}
+
+	/**
+	 * Overloaded version of {@link #compressAndAddAllAsync(byte[][], TriConsumer)}.
+	 * @author Jean Dannemann Carone
+	 */
+	public CompletableFuture<Void> compressAndAddAllAsync(List<String> source, TriConsumer<Integer, String, byte[]> callback) {
+		return addAsync(source.size(), (bulk, from, to, start) -> bulk.bulkCompressAsync(source, from, to, start, callback == null ? null :
+			(f, t) -> {
+				for (int k = f; k < t; k++)
+					callback.accept(k, source.get(k), bulk.destination()[start - from + k]);
+			}));
+	}
+
+	public CompletableFuture<Void> compressAndAddAllAsync(List<String> source) {
+		return compressAndAddAllAsync(source, null);
+	}
+
+	/**
+	 * Blocks until every batch added with {@code compressAndAddAllAsync} so far is completed (successfully or not).
+	 * @throws BulkCompressionException If interrupted while waiting.
+	 * @author Jean Dannemann Carone
+	 */
+	public void awaitInFlight() {
+		acquire(maxInFlightBatches);
+		inFlight.release(maxInFlightBatches);
+	}
+
+	/**
+	 * Sets how many batches added with {@code compressAndAddAllAsync} may be compressing at once (default
+	 * {@link #DEFAULT_MAX_IN_FLIGHT_BATCHES}). Can only be changed when none is in flight.
+	 * @param maxInFlightBatches At least 1.
+	 * @throws IllegalStateException If batches are in flight.
+	 * @author Jean Dannemann Carone
+	 */
+	public void setMaxInFlightBatches(int maxInFlightBatches) {
+		if (maxInFlightBatches < 1)
+			throw new IllegalArgumentException("Max in-flight batches must be positive: " + maxInFlightBatches + ".");
+		if (inFlight.availablePermits() != this.maxInFlightBatches)
+			throw new IllegalStateException("Max in-flight batches cannot change while batches are in flight.");
+		this.maxInFlightBatches = maxInFlightBatches;
+		this.inFlight = new Semaphore(maxInFlightBatches);
+	}
+
+	/**
+	 * <p>Registers a listener called once, when the strings added reach {@code percentage} of the destination length
+	 * (the array length, or the max capacity of a {@link GrowableDestination}). Useful to warn before a
+	 * {@link BulkCompressionException}.</p>
+	 * <p>Listeners are called by the thread adding the batch, after the batch is done. If several watermarks are
+	 * reached by the same batch, they are called in ascending order.</p>
+	 * @param percentage From 1 to 100.
+	 * @param listener The listener.
+	 * @author Jean Dannemann Carone
+	 */
+	public void addWatermarkListener(int percentage, WatermarkListener listener) {
+		watermarks.add(percentage, listener, currentIndex);
+	}
+
+	private void validate(long willEndAt) {
+		if (willEndAt > destinationLength)
 			throw new BulkCompressionException("Source array length exceeds destination array length.");
 	}
 
+	/**
+	 * Compresses a batch into the segments of the growable destination, growing it first.
+	 */
+	private void addToSegments(int count, RangeTask task) {
+		final long willEndAt = (long) currentIndex + count;
+		validate(willEndAt);
+		growable.ensureCapacity(willEndAt);
+
+		for (int s = growable.segmentOf(currentIndex), done = 0; done < count; s++) {
+			final byte[][] segment = growable.segment(s);
+			final int start = currentIndex + done - growable.segmentStart(s);
+			final int length = Math.min(count - done, segment.length - start);
+			task.run(bulk.withDestination(segment), done, done + length, start);
+			done += length;
+		}
+
+		currentIndex = (int) willEndAt;
+		growable.setSize(currentIndex);
+		reachWatermarks();
+	}
+
+	/**
+	 * Waits for an in-flight slot, reserves the next range (growing the destination as needed) and starts compressing
+	 * into it, segment by segment for a growable destination. The slot is freed when the batch completes.
+	 */
+	private CompletableFuture<Void> addAsync(int count, AsyncRangeTask task) {
+		if (arena != null)
+			throw new UnsupportedOperationException("Asynchronous compression is not supported for arenas.");
+
+		final long willEndAt = (long) currentIndex + count;
+		validate(willEndAt);
+		acquire(1);
+
+		final CompletableFuture<Void> future;
+		try {
+			if (growable == null)
+				future = task.run(bulk, 0, count, currentIndex);
+			else {
+				growable.ensureCapacity(willEndAt);
+				final List<CompletableFuture<Void>> futures = new ArrayList<>();
+				for (int s = growable.segmentOf(currentIndex), done = 0; done < count; s++) {
+					final byte[][] segment = growable.segment(s);
+					final int start = currentIndex + done - growable.segmentStart(s);
+					final int length = Math.min(count - done, segment.length - start);
+					futures.add(task.run(bulk.withDestination(segment), done, done + length, start));
+					done += length;
+				}
+				future = CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+			}
+		} catch (RuntimeException | Error e) {
+			inFlight.release();
+			throw e;
+		}
+
+		final Semaphore permits = inFlight;
+		final CompletableFuture<Void> done = new CompletableFuture<>();
+		future.whenComplete((result, failure) -> { // Completes first, so that awaitInFlight() sees it done.
+			if (failure == null)
+				done.complete(null);
+			else
+				done.completeExceptionally(failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure);
+			permits.release();
+		});
+
+		currentIndex = (int) willEndAt;
+		if (growable != null)
+			growable.setSize(currentIndex);
+		reachWatermarks();
+		return done;
+	}
+
+	private void acquire(int permits) {
+		try {
+			inFlight.acquire(permits);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new BulkCompressionException("Interrupted while waiting for in-flight batches.");
+		}
+	}
+
+	/**
+	 * Runs the callbacks and releases the source entries (unless {@link AsciiCompressor#isPreserveOriginal()}), as
+	 * {@link BulkCompressor} does.
+	 */
+	private void afterArenaBatch(int first, int count, IntConsumer callback, IntConsumer release) {
+		if (callback != null || !compressor.isPreserveOriginal())
+			IntStream.range(0, count).parallel().forEach(k -> {
+				if (callback != null)
+					callback.accept(k);
+				if (!compressor.isPreserveOriginal())
+					release.accept(k);
+			});
+
+		currentIndex = first + count;
+		reachWatermarks();
+	}
+
+	private void reachWatermarks() {
+		watermarks.reach(currentIndex);
+	}
+
 	public int getCurrentIndex() {
 		return currentIndex;
 	}
 
+	/**
+	 * Called when the strings added reach a percentage of the destination length.
+	 * @see #addWatermarkListener(int, WatermarkListener)
+	 * @author Jean Dannemann Carone
+	 */
+	@FunctionalInterface
+	public interface WatermarkListener {
+
+		/**
+		 * @param percentage The percentage reached.
+		 * @param size Number of strings added so far.
+		 * @param destinationLength Array length or max capacity.
+		 */
+		void reached(int percentage, int size, int destinationLength);
+
+	}
+
+	/**
+	 * Compresses {@code source[from ... to - 1]} with {@code bulk}, starting at {@code start} of its destination.
+	 */
+	@FunctionalInterface
+	interface RangeTask {
+
+		void run(BulkCompressor bulk, int from, int to, int start);
+
+	}
+
+	/**
+	 * Same as {@link RangeTask}, without waiting for the range to be compressed.
+	 */
+	@FunctionalInterface
+	interface AsyncRangeTask {
+
+		CompletableFuture<Void> run(BulkCompressor bulk, int from, int to, int start);
+
+	}
+
 }
@@ -0,0 +1,77 @@
+package com.dannemann.stringcompressor.bulk;
+
+import com.dannemann.stringcompressor.bulk.ManagedBulkCompressor.WatermarkListener;
+
+import java.util.Arrays;
+
+/**
+ * Watermark listeners of a managed bulk compressor, each one called once when the strings added reach its percentage
+ * of the destination length. Not thread-safe.
+ * @author Jean Dannemann Carone
+ */
+final class Watermarks {
+
+	// Fields:
+
+	private final int destinationLength;
+	private int[] percentages = {}; // Ascending, not reached yet.
+	private WatermarkListener[] listeners = {};
+
+	// Constructor:
+
+	Watermarks(int destinationLength) {
+		this.destinationLength = destinationLength;
+	}
+
+	/**
+	 * Adds a listener, calling it right away if {@code size} already reaches its percentage.
+	 */
+	void add(int percentage, WatermarkListener listener, int size) {
+		if (percentage < 1 || percentage > 100)
+			throw new IllegalArgumentException("Percentage must be between 1 and 100: " + percentage + ".");
+
+		int position = 0;
+		while (position < percentages.length && percentages[position] <= percentage)
+			position++;
+
+		percentages = insert(percentages, position, percentage);
+		listeners = insert(listeners, position, listener);
+		reach(size);
+	}
+
+	/**
+	 * Calls, in ascending order, the listeners whose percentage {@code size} reaches for the first time.
+	 */
+	void reach(int size) {
+		int reached = 0;
+		while (reached < percentages.length && size * 100L >= (long) percentages[reached] * destinationLength)
+			reached++;
+
+		if (reached == 0)
+			return;
+
+		final int[] reachedPercentages = percentages;
+		final WatermarkListener[] reachedListeners = listeners;
+		percentages = Arrays.copyOfRange(percentages, reached, percentages.length);
+		listeners = Arrays.copyOfRange(listeners, reached, listeners.length);
+
+		for (int i = 0; i < reached; i++)
+			reachedListeners[i].reached(reachedPercentages[i], size, destinationLength);
+	}
+
+	private static int[] insert(int[] array, int position, int value) {
+		final int[] result = new int[array.length + 1];
+		System.arraycopy(array, 0, result, 0, position);
+		result[position] = value;
+		System.arraycopy(array, position, result, position + 1, array.length - position);
+		return result;
+	}
+
+	private static <T> T[] insert(T[] array, int position, T value) {
+		final T[] result = Arrays.copyOf(array, array.length + 1);
+		System.arraycopy(array, position, result, position + 1, array.length - position);
+		result[position] = value;
+		return result;
+	}
+
+}
@@ -1,5 +1,18 @@
 package com.dannemann.stringcompressor.search;
 
+import com.dannemann.stringcompressor.arena.CompressedStringArena;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import static java.nio.ByteOrder.BIG_ENDIAN;
+
 /**
  * @see FourBitBinarySearch
  * @see FiveBitBinarySearch
@@ -7,22 +20,700 @@ package com.dannemann.stringcompressor.search;
  */
 public abstract class BaseBinarySearch {
 
+	private static final VarHandle LONG_VIEW = MethodHandles.byteArrayViewVarHandle(long[].class, BIG_ENDIAN);
+
+	/**
+	 * Scratch array of each thread for arena strings (see {@link #scratch()}). Shared by all searches, which only use it
+	 * for one comparison at a time.
+	 */
+	private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[64]);
+
 	protected final byte[][] compressedData;
+	protected final CompressedStringArena arena;
 	protected final boolean prefixSearch;
 	protected final byte[] charset;
+	protected final CharsetOrder charsetOrder;
+
+	/**
+	 * Ranks of codes and of key characters (see {@link CharsetOrder}), compared when strings are decoded: subtracting
+	 * them compares like subtracting characters, whatever the charset order.
+	 */
+	protected final int[] codeRanks;
+	protected final int[] keyRanks;
+
+	/**
+	 * Character to code table, or {@code null} if the charset is not in ascending order (see
+	 * {@link #isPackedComparison()}).
+	 */
+	private final byte[] codes;
+
+	/**
+	 * First 8 packed bytes of each string (see {@link #buildPrefixKeys()}).
+	 */
+	private volatile long[] prefixKeys;
 
 	protected BaseBinarySearch(byte[][] compressedData, boolean prefixSearch, byte[] charset) {
 		this.compressedData = compressedData;
+		this.arena = null;
 		this.prefixSearch = prefixSearch;
 		this.charset = charset;
+		this.charsetOrder = new CharsetOrder(charset);
+		this.codeRanks = charsetOrder.codeRanks();
+		this.keyRanks = charsetOrder.keyRanks();
+		this.codes = charsetOrder.isAscending() ? charsetOrder.codes() : null;
 	}
 
-	public abstract int search(final byte[] key);
+	protected BaseBinarySearch(CompressedStringArena arena, boolean prefixSearch, byte[] charset) {
+		this.compressedData = null;
+		this.arena = arena;
+		this.prefixSearch = prefixSearch;
+		this.charset = charset;
+		this.charsetOrder = new CharsetOrder(charset);
+		this.codeRanks = charsetOrder.codeRanks();
+		this.keyRanks = charsetOrder.keyRanks();
+		this.codes = charsetOrder.isAscending() ? charsetOrder.codes() : null;
+	}
+
+	/**
+	 * <p>Performs a binary search on the compressed data to locate the specified key.</p>
+	 * <p>The data must be sorted before compression (or afterwards, with {@link CompressedStringSorter}) for this search
+	 * to work correctly. The search is performed directly on the compressed form without decompressing the entire
+	 * dataset, enabling fast lookups in large in-memory compressed collections.</p>
+	 * <p>The method returns the index of the matching element if found; otherwise, it returns
+	 * {@code -(insertion point) - 1}, following the contract of {@link java.util.Arrays#binarySearch}.</p>
+	 * <p>If the charset is in ascending order, the key is compressed once and each probe compares packed bytes (see
+	 * {@link #isPackedComparison()}).</p>
+	 * @param key The uncompressed key to search for, as a byte array.
+	 * @return The index of the search key if it is found; otherwise, {@code -(insertion point) - 1}.
+	 * @author Jean Dannemann Carone
+	 */
+	public int search(final byte[] key) {
+		final byte[] packed = pack(key);
+		final long[] prefixKeys = this.prefixKeys;
+
+		if (packed != null && prefixKeys != null)
+			return searchPrefixKeys(key, packed, prefixKeys);
+
+		if (arena != null)
+			return searchArena(key, packed);
+
+		int low = 0;
+		int high = compressedData.length - 1;
+
+		while (low <= high) {
+			final int mid = low + high >>> 1;
+			final byte[] compStr = compressedData[mid];
+			final int cmp = compStr == null ? 1 : compare(compStr, 0, compStr.length, key, packed);
+
+			if (cmp < 0)
+				low = mid + 1;
+			else if (cmp > 0)
+				high = mid - 1;
+			else
+				return mid;
+		}
+
+		return -(low + 1);
+	}
+
+	/**
+	 * Compares one compressed string with an uncompressed key, decoding it into ranks (see {@link #codeRanks}).
+	 * @param compressed Array holding the compressed string.
+	 * @param off Index of the first byte of the compressed string.
+	 * @param len Length of the compressed string.
+	 * @param key The uncompressed key.
+	 * @return Zero if they are equal (or if the key is a prefix of the string, for prefix searches), a negative value if
+	 * the string comes before the key, or a positive value if it comes after.
+	 */
+	protected abstract int compare(final byte[] compressed, final int off, final int len, final byte[] key);
+
+	/**
+	 * Same as {@link #compare(byte[], int, int, byte[])}, but with the key already compressed by {@link #pack(byte[])}.
+	 * Implementations locate the packed bits of the compressed string and call
+	 * {@link #compareBits(byte[], int, int, int, int, byte[], int)}.
+	 * @param compressed Array holding the compressed string.
+	 * @param off Index of the first byte of the compressed string.
+	 * @param len Length of the compressed string.
+	 * @param packed The packed key.
+	 * @param keyLen Number of characters in the key.
+	 * @return Same as {@link #compare(byte[], int, int, byte[])}.
+	 */
+	protected abstract int comparePacked(final byte[] compressed, final int off, final int len, final byte[] packed, final int keyLen);
+
+	/**
+	 * @return The number of bits used to store each character.
+	 */
+	public abstract int getBitsPerCharacter();
+
+	/**
+	 * <p>Compares a compressed string with a packed key, byte by byte (unsigned), as {@code memcmp} would.</p>
+	 * <p>Both sides are big-endian bit strings padded with zeros up to the byte boundary. Since codes follow the charset
+	 * order, the first differing bit decides the order, unless it falls into the padding of one side. In that case the
+	 * padded side (zero) is a prefix of the other side, so it still comes first. If no bit differs, the decoded lengths
+	 * decide.</p>
+	 * @param compressed Array holding the compressed string.
+	 * @param off Index of the first packed byte.
+	 * @param bytes Number of packed bytes that can be compared as they are.
+	 * @param tail One more packed byte that is not stored as is (the odd character of 4-bit strings), or {@code -1}.
+	 * @param dLen Number of characters in the compressed string.
+	 * @param packed The packed key.
+	 * @param keyLen Number of characters in the key.
+	 * @return Same as {@link #compare(byte[], int, int, byte[])}.
+	 */
+	protected final int compareBits(final byte[] compressed, final int off, final int bytes, final int tail,
+		final int dLen, final byte[] packed, final int keyLen) {
+
+		final int keyBits = keyLen * getBitsPerCharacter();
+		// Prefix searches ignore the padding of the key's last byte.
+		final int full = prefixSearch ? keyBits >>> 3 : packed.length;
+		final int n = Math.min(bytes, full);
+		int i = 0;
+
+		for (; i <= n - 8; i += 8) {
+			final long a = (long) LONG_VIEW.get(compressed, off + i);
+			final long b = (long) LONG_VIEW.get(packed, i);
+
+			if (a != b)
+				return Long.compareUnsigned(a, b);
+		}
+
+		for (; i < n; i++)
+			if (compressed[off + i] != packed[i])
+				return (compressed[off + i] & 0xFF) - (packed[i] & 0xFF);
+
+		final int next; // Next byte of the compressed string, or -1 if there is none.
+
+		if (n < full) {
+			if (tail < 0)
+				return dLen - keyLen;
+
+			final int cmp = tail - (packed[n] & 0xFF);
+
+			if (cmp != 0)
+				return cmp;
+
+			next = -1;
+			if (n + 1 < full)
+				return dLen - keyLen;
+		} else
+			next = full < bytes ? compressed[off + full] & 0xFF : tail;
+
+		if (full < packed.length) {
+			if (next < 0)
+				return dLen - keyLen;
+
+			final int mask = 0xFF00 >>> (keyBits & 7) & 0xFF;
+			final int cmp = (next & mask) - (packed[full] & mask);
+
+			if (cmp != 0)
+				return cmp;
+		}
+
+		if (prefixSearch && keyLen <= dLen)
+			return 0;
+
+		return dLen - keyLen;
+	}
+
+	/**
+	 * <p>Finds the first string that does not come before the key (the insertion point of
+	 * {@link #search(byte[])}).</p>
+	 * <p>On prefix searches, strings starting with the key count as equal to it, which gives the same result.</p>
+	 * @param key The uncompressed key.
+	 * @return The index of the first string greater than or equal to the key, or the number of strings if there is
+	 * none (unused slots are not counted).
+	 * @author Jean Dannemann Carone
+	 */
+	public int lowerBound(final byte[] key) {
+		return bound(key, false);
+	}
+
+	/**
+	 * Finds the first string that comes after the key. Strings starting with the key (other than the key itself) come
+	 * after it, on prefix searches too (see {@link #prefixRange(byte[])} for the end of those).
+	 * @param key The uncompressed key.
+	 * @return The index of the first string greater than the key, or the number of strings if there is none.
+	 * @author Jean Dannemann Carone
+	 */
+	public int upperBound(final byte[] key) {
+		if (!prefixSearch)
+			return bound(key, true);
+
+		// Prefix comparisons can't tell the key from longer strings, so this looks for the smallest of those instead.
+		byte first = Byte.MAX_VALUE;
+		for (final byte c : charset)
+			first = (byte) Math.min(first, c);
+
+		final byte[] after = Arrays.copyOf(key, key.length + 1);
+		after[key.length] = first;
+		return bound(after, false);
+	}
+
+	/**
+	 * <p>Finds all strings starting with a prefix (all strings, for an empty prefix). Unlike {@link #search(byte[])}
+	 * on prefix searches, the prefix does not have to be unique.</p>
+	 * <p>Use {@link #entries(IndexRange)} to read the compressed strings of the range.</p>
+	 * @param prefix The uncompressed prefix.
+	 * @return The range of strings starting with the prefix (empty, at the insertion point, if there is none).
+	 * @author Jean Dannemann Carone
+	 */
+	public IndexRange prefixRange(final byte[] prefix) {
+		final int from = lowerBound(prefix);
+		// The strings starting with the prefix end where the strings starting with its successor would begin.
+		int last = prefix.length - 1;
+
+		while (last >= 0 && prefix[last] == Byte.MAX_VALUE)
+			last--;
+
+		if (last < 0)
+			return new IndexRange(from, bound(null, false));
+
+		final byte[] successor = Arrays.copyOf(prefix, last + 1);
+		successor[last]++;
+		return new IndexRange(from, Math.max(from, lowerBound(successor)));
+	}
+
+	/**
+	 * <p>Iterates over the compressed strings of a range without copying them: array entries are wrapped, and arena
+	 * entries are views of the arena (see {@link CompressedStringArena#slice(int)}).</p>
+	 * @param range Range of strings, usually from {@link #prefixRange(byte[])}.
+	 * @return Read-only buffers, one per compressed string, in order.
+	 * @author Jean Dannemann Carone
+	 */
+	public Iterator<ByteBuffer> entries(final IndexRange range) {
+		return new Iterator<>() {
+			private int next = range.from();
+
+			@Override
+			public boolean hasNext() {
+				return next < range.to();
+			}
+
+			@Override
+			public ByteBuffer next() {
+				if (next >= range.to())
+					throw new NoSuchElementException();
+
+				final int index = next++;
+				return arena != null ? arena.slice(index) : ByteBuffer.wrap(compressedData[index]).asReadOnlyBuffer();
+			}
+		};
+	}
+
+	/**
+	 * Finds the first string whose comparison with the key is not negative ({@code upper == false}) or positive
+	 * ({@code upper == true}). A {@code null} key finds the end of the data (the first unused slot).
+	 */
+	private int bound(final byte[] key, final boolean upper) {
+		final byte[] packed = pack(key);
+		final byte[] scratch = scratch();
+		int low = 0;
+		int high = arena != null ? arena.size() : compressedData.length;
+
+		while (low < high) {
+			final int mid = low + high >>> 1;
+			final int cmp = key == null ? (arena != null || compressedData[mid] != null ? -1 : 1) :
+				compareAt(mid, key, packed, scratch);
+
+			if (upper ? cmp <= 0 : cmp < 0)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+
+		return low;
+	}
+
+	/**
+	 * Sequential version of {@link #searchAll(byte[][], int[], ForkJoinPool)}.
+	 * @author Jean Dannemann Carone
+	 */
+	public void searchAll(final byte[][] keys, final int[] results) {
+		searchAll(keys, results, null);
+	}
+
+	/**
+	 * <p>Searches many keys at once. {@code results[i]} receives the result for {@code keys[i]}, following the contract
+	 * of {@link #search(byte[])}.</p>
+	 * <p>Keys are visited in sorted order, middle key first: once its position is known, the keys before it are only
+	 * searched in the strings before that position, and the keys after it in the strings after. Each search then covers
+	 * a smaller range, and the upper levels are not repeated for every key.</p>
+	 * <p>If several strings match a key, the first one is returned (which {@link #search(byte[])} does not guarantee).</p>
+	 * @param keys The uncompressed keys. Not modified.
+	 * @param results Receives one result per key. Must be at least as long as {@code keys}.
+	 * @param pool If not {@code null}, the keys are sorted and searched in parallel in this pool.
+	 * @author Jean Dannemann Carone
+	 */
+	public void searchAll(final byte[][] keys, final int[] results, final ForkJoinPool pool) {
+		if (results.length < keys.length)
+			throw new IllegalArgumentException("Results array is shorter than keys array.");
+
+		final int size = arena != null ? arena.size() : compressedData.length;
+
+		if (pool == null)
+			searchAll(keys, sortedOrder(keys, false), results, 0, keys.length, 0, size, scratch());
+		else
+			pool.invoke(new RecursiveAction() {
+				@Override
+				protected void compute() {
+					new SearchAllTask(keys, sortedOrder(keys, true), results, 0, keys.length, 0, size).invoke();
+				}
+			});
+	}
+
+	/**
+	 * <p>Sorts key indexes by key, as {@link Arrays#compare(byte[], byte[])} does (signed bytes, as
+	 * {@link #compare(byte[], int, int, byte[])}).</p>
+	 * <p>Each key is tagged with its first bytes and index in a {@code long}, so most of the work is a primitive sort.
+	 * Only keys sharing those first bytes are compared in full.</p>
+	 * @param parallel If {@code true}, sorts in parallel in the current pool.
+	 */
+	private static int[] sortedOrder(final byte[][] keys, final boolean parallel) {
+		final int n = keys.length;
+		final int[] order = new int[n];
+		boolean sorted = true; // Already sorted keys are common, and skip sorting.
+
+		for (int i = 0; i < n; i++) {
+			order[i] = i;
+			sorted &= i == 0 || Arrays.compare(keys[i - 1], keys[i]) <= 0;
+		}
+
+		if (sorted)
+			return order;
+
+		final int indexBits = 32 - Integer.numberOfLeadingZeros(n - 1);
+		final int prefixBytes = 63 - indexBits >>> 3;
+		final long[] tagged = new long[n];
+
+		for (int i = 0; i < n; i++) {
+			final byte[] key = keys[i];
+			long prefix = 0;
+			for (int j = 0; j < prefixBytes; j++)
+				prefix = prefix << 8 | (j < key.length ? (key[j] ^ 0x80) & 0xFF : 0); // Signed order, unsigned shifts.
+			tagged[i] = prefix << indexBits | i;
+		}
+
+		if (parallel)
+			Arrays.parallelSort(tagged); // Runs in the current pool.
+		else
+			Arrays.sort(tagged);
+
+		final int indexMask = (1 << indexBits) - 1;
+
+		for (int i = 0; i < n; i++)
+			order[i] = (int) tagged[i] & indexMask;
 
+		// Same first bytes: sorted by the whole key.
+		for (int i = 0, j; i < n; i = j) {
+			final long prefix = tagged[i] >>> indexBits;
+			j = i + 1;
+			while (j < n && tagged[j] >>> indexBits == prefix)
+				j++;
+
+			if (j - i > 1) {
+				final Integer[] run = new Integer[j - i];
+				for (int k = i; k < j; k++)
+					run[k - i] = order[k];
+				Arrays.sort(run, (a, b) -> Arrays.compare(keys[a], keys[b]));
+				for (int k = i; k < j; k++)
+					order[k] = run[k - i];
+			}
+		}
+
+		return order;
+	}
+
+	/**
+	 * Searches {@code keys[order[from]] ... keys[order[to - 1]]} within the strings {@code low ... high - 1}.
+	 */
+	private void searchAll(final byte[][] keys, final int[] order, final int[] results, int from, final int to,
+		int low, final int high, final byte[] scratch) {
+
+		while (from < to) {
+			final int mid = from + to >>> 1;
+			final int position = searchPosition(keys[order[mid]], low, high, scratch, results, order[mid]);
+			searchAll(keys, order, results, from, mid, low, position, scratch);
+			from = mid + 1; // Loops on the right half.
+			low = position;
+		}
+	}
+
+	/**
+	 * Splits the keys in halves, as {@link #searchAll(byte[][], int[], int[], int, int, int, int, byte[])} does,
+	 * until there are few enough for one thread.
+	 */
+	private final class SearchAllTask extends RecursiveAction {
+
+		private static final int THRESHOLD = 1024;
+
+		private final byte[][] keys;
+		private final int[] order;
+		private final int[] results;
+		private final int from, to, low, high;
+
+		private SearchAllTask(byte[][] keys, int[] order, int[] results, int from, int to, int low, int high) {
+			this.keys = keys;
+			this.order = order;
+			this.results = results;
+			this.from = from;
+			this.to = to;
+			this.low = low;
+			this.high = high;
+		}
+
+		@Override
+		protected void compute() {
+			final byte[] scratch = scratch();
+
+			if (to - from <= THRESHOLD) {
+				searchAll(keys, order, results, from, to, low, high, scratch);
+				return;
+			}
+
+			final int mid = from + to >>> 1;
+			final int position = searchPosition(keys[order[mid]], low, high, scratch, results, order[mid]);
+			invokeAll(new SearchAllTask(keys, order, results, from, mid, low, position),
+				new SearchAllTask(keys, order, results, mid + 1, to, position, high));
+		}
+
+	}
+
+	/**
+	 * Finds the first string in {@code low ... high - 1} that does not come before the key, and stores the search
+	 * result in {@code results[resultIndex]}.
+	 * @return The position found, which bounds the searches of the other keys.
+	 */
+	private int searchPosition(final byte[] key, int low, int high, final byte[] scratch, final int[] results,
+		final int resultIndex) {
+
+		final byte[] packed = pack(key);
+		// The other keys only narrow the range: the position may still be high (the first string of the next range).
+		final int size = arena != null ? arena.size() : compressedData.length;
+
+		while (low < high) {
+			final int mid = low + high >>> 1;
+
+			if (compareAt(mid, key, packed, scratch) < 0)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+
+		results[resultIndex] = low < size && compareAt(low, key, packed, scratch) == 0 ? low : -(low + 1);
+		return low;
+	}
+
+	/**
+	 * Compares the string at {@code index} (array or arena) with the key. Null entries come after any key.
+	 */
+	int compareAt(final int index, final byte[] key, final byte[] packed, final byte[] scratch) {
+		if (arena != null)
+			return compare(scratch, 0, arena.get(index, scratch, 0), key, packed);
+
+		final byte[] compStr = compressedData[index];
+		return compStr == null ? 1 : compare(compStr, 0, compStr.length, key, packed);
+	}
+
+	/**
+	 * @return The scratch array of the current thread for arena strings (grown to {@link CompressedStringArena#maxLength()}
+	 * if needed), or {@code null} for arrays.
+	 */
+	byte[] scratch() {
+		if (arena == null)
+			return null;
+
+		final byte[] scratch = SCRATCH.get();
+		final int maxLength = arena.maxLength();
+
+		if (scratch.length >= maxLength)
+			return scratch;
+
+		final byte[] grown = new byte[Math.max(maxLength, scratch.length << 1)];
+		SCRATCH.set(grown);
+		return grown;
+	}
+
+	/**
+	 * Compares with {@link #comparePacked(byte[], int, int, byte[], int)} if the key could be packed, or with
+	 * {@link #compare(byte[], int, int, byte[])} otherwise.
+	 */
+	final int compare(final byte[] compressed, final int off, final int len, final byte[] key, final byte[] packed) {
+		return packed != null ? comparePacked(compressed, off, len, packed, key.length) : compare(compressed, off, len, key);
+	}
+
+	/**
+	 * <p>Builds a {@code long[]} holding the first 8 packed bytes of each string (16 characters in 4-bit, 12 in 5-bit,
+	 * and 10 in 6-bit), so that most of each search runs over one contiguous primitive array. The strings themselves are
+	 * only read when their first 8 bytes match the key's.</p>
+	 * <p>This pays off when the first characters tell most strings apart (IDs, names), and costs 8 bytes per string.
+	 * Strings sharing a long common prefix (dates, URLs) all get the same key, so searching them gets slightly slower.</p>
+	 * <p>The keys are a snapshot: strings added afterwards (in unused slots or to the arena) are still found, but
+	 * without keys. Call this method again after replacing existing strings, or to cover the new ones.</p>
+	 * @throws IllegalStateException If the charset is not in ascending order (see {@link #isPackedComparison()}).
+	 * @author Jean Dannemann Carone
+	 */
+	public void buildPrefixKeys() {
+		if (codes == null)
+			throw new IllegalStateException("Prefix keys require a charset in ascending order.");
+
+		final long[] keys;
+
+		if (arena != null) {
+			final byte[] scratch = scratch();
+			keys = new long[arena.size()];
+			for (int i = 0; i < keys.length; i++)
+				keys[i] = packedPrefix(scratch, 0, arena.get(i, scratch, 0));
+		} else {
+			int count = 0;
+			while (count < compressedData.length && compressedData[count] != null)
+				count++;
+			keys = new long[count];
+			for (int i = 0; i < count; i++)
+				keys[i] = packedPrefix(compressedData[i], 0, compressedData[i].length);
+		}
+
+		prefixKeys = keys;
+	}
+
+	/**
+	 * Returns the first 8 packed bytes of a compressed string (see {@link #buildPrefixKeys()}). Implementations locate
+	 * the packed bits and call {@link #prefixOf(byte[], int, int, int)}.
+	 * @param compressed Array holding the compressed string.
+	 * @param off Index of the first byte of the compressed string.
+	 * @param len Length of the compressed string.
+	 * @return The first 8 packed bytes as a big-endian {@code long}, padded with zeros.
+	 */
+	protected abstract long packedPrefix(final byte[] compressed, final int off, final int len);
+
+	/**
+	 * @param compressed Array holding the packed bytes.
+	 * @param off Index of the first packed byte.
+	 * @param bytes Number of packed bytes stored as they are.
+	 * @param tail One more packed byte that is not stored as is (the odd character of 4-bit strings), or {@code -1}.
+	 * @return Same as {@link #packedPrefix(byte[], int, int)}.
+	 */
+	protected static long prefixOf(final byte[] compressed, final int off, final int bytes, final int tail) {
+		if (bytes >= 8)
+			return (long) LONG_VIEW.get(compressed, off);
+
+		long prefix = 0;
+
+		for (int i = 0; i < bytes; i++)
+			prefix = prefix << 8 | compressed[off + i] & 0xFF;
+
+		if (tail >= 0)
+			return (prefix << 8 | tail) << (7 - bytes << 3);
+
+		return bytes == 0 ? 0 : prefix << (8 - bytes << 3);
+	}
+
+	/**
+	 * {@link #search(byte[])} using the prefix keys. Strings without a key (added after
+	 * {@link #buildPrefixKeys()}) are compared in full.
+	 */
+	private int searchPrefixKeys(final byte[] key, final byte[] packed, final long[] prefixKeys) {
+		final int keyBits = key.length * getBitsPerCharacter();
+		// Prefix searches only look at the key's bits: longer strings starting with the key must compare as equal.
+		final long mask = !prefixSearch || keyBits >= 64 ? -1L : ~(-1L >>> keyBits);
+		final long keyPrefix = prefixOf(packed, 0, packed.length, -1);
+		final byte[] scratch = scratch();
+		int low = 0;
+		int high = (arena != null ? arena.size() : compressedData.length) - 1;
+
+		while (low <= high) {
+			final int mid = low + high >>> 1;
+			int cmp = mid < prefixKeys.length ? Long.compareUnsigned(prefixKeys[mid] & mask, keyPrefix) : 0;
+
+			if (cmp == 0)
+				if (arena != null)
+					cmp = compare(scratch, 0, arena.get(mid, scratch, 0), key, packed);
+				else {
+					final byte[] compStr = compressedData[mid];
+					cmp = compStr == null ? 1 : compare(compStr, 0, compStr.length, key, packed);
+				}
+
+			if (cmp < 0)
+				low = mid + 1;
+			else if (cmp > 0)
+				high = mid - 1;
+			else
+				return mid;
+		}
+
+		return -(low + 1);
+	}
+
+	/**
+	 * Compresses the key into big-endian codes, padded with zeros.
+	 * @return The packed key, or {@code null} if the key is {@code null}, the charset is not in ascending order or the
+	 * key has characters outside the charset.
+	 */
+	byte[] pack(final byte[] key) {
+		if (key == null || codes == null)
+			return null;
+
+		final int bits = getBitsPerCharacter();
+		final byte[] packed = new byte[key.length * bits + 7 >>> 3];
+		int buffer = 0;
+		int bitsInBuffer = 0;
+
+		for (int i = 0, j = 0; i < key.length; i++) {
+			final byte code = codes[key[i] & 0xFF];
+
+			if (code < 0)
+				return null;
+
+			buffer = buffer << bits | code;
+			bitsInBuffer += bits;
+
+			if (bitsInBuffer >= 8)
+				packed[j++] = (byte) (buffer >>> (bitsInBuffer -= 8));
+		}
+
+		if (bitsInBuffer > 0)
+			packed[packed.length - 1] = (byte) (buffer << 8 - bitsInBuffer);
+
+		return packed;
+	}
+
+	/**
+	 * Arena version of {@link #search(byte[])}. Probed strings are copied into the scratch array of the thread (a few
+	 * bytes each, see {@link #scratch()}), so heap and off-heap arenas share the comparison code.
+	 */
+	private int searchArena(final byte[] key, final byte[] packed) {
+		final byte[] scratch = scratch();
+		int low = 0;
+		int high = arena.size() - 1;
+
+		while (low <= high) {
+			final int mid = low + high >>> 1;
+			final int cmp = compare(scratch, 0, arena.get(mid, scratch, 0), key, packed);
+
+			if (cmp < 0)
+				low = mid + 1;
+			else if (cmp > 0)
+				high = mid - 1;
+			else
+				return mid;
+		}
+
+		return -(low + 1);
+	}
+
+	/**
+	 * @return The searched array, or {@code null} if this search runs on a {@link CompressedStringArena}.
+	 */
 	public byte[][] getCompressedData() {
 		return compressedData;
 	}
 
+	/**
+	 * @return The searched arena, or {@code null} if this search runs on a {@code byte[][]}.
+	 */
+	public CompressedStringArena getArena() {
+		return arena;
+	}
+
 	public boolean isPrefixSearch() {
 		return prefixSearch;
 	}
@@ -31,4 +722,28 @@ public abstract class BaseBinarySearch {
 		return charset;
 	}
 
+	/**
+	 * @return The order analysis of the charset (see {@link #isPackedComparison()}).
+	 */
+	public CharsetOrder getCharsetOrder() {
+		return charsetOrder;
+	}
+
+	/**
+	 * <p>Whether searches compare compressed bytes directly, instead of decoding each probed string.</p>
+	 * <p>This requires the charset to be in ascending order (as the default charsets are), so that codes sort like the
+	 * characters they represent. Keys with characters outside the charset fall back to decoding.</p>
+	 * @return {@code true} if the charset is in ascending order.
+	 */
+	public boolean isPackedComparison() {
+		return codes != null;
+	}
+
+	/**
+	 * @return {@code true} if {@link #buildPrefixKeys()} was called.
+	 */
+	public boolean hasPrefixKeys() {
+		return prefixKeys != null;
+	}
+
 }
@@ -0,0 +1,115 @@
+package com.dannemann.stringcompressor.search;
+
+import java.util.Arrays;
+
+/**
+ * <p>Relates the codes of a charset to the order of the characters they stand for.</p>
+ * <p>Binary searches and {@link CompressedStringSorter} follow the order of the original strings (ASCII). If the
+ * charset is in ascending order, codes sort like their characters, so compressed bytes can be compared without decoding
+ * (see {@link #isAscending()}). Otherwise, each code is compared by its rank: the position of its character in ASCII
+ * order.</p>
+ * @author Jean Dannemann Carone
+ */
+public final class CharsetOrder {
+
+	// Fields:
+
+	private final byte[] charset;
+	private final boolean ascending;
+	private final byte[] codes = new byte[256]; // Code of each character (-1 if not supported).
+	private final int[] codeRanks; // 2 * rank + 1 of each code.
+	private final int[] keyRanks = new int[256]; // Same scale for any character: in between if not supported.
+
+	// Constructor:
+
+	/**
+	 * Analyzes a charset.
+	 * @param charset Character set of a compressor (see {@link com.dannemann.stringcompressor.AsciiCompressor#getSupportedCharset()}).
+	 * @author Jean Dannemann Carone
+	 */
+	public CharsetOrder(byte[] charset) {
+		final byte[] sorted = charset.clone();
+		Arrays.sort(sorted); // Signed, as the comparisons.
+		Arrays.fill(codes, (byte) -1);
+		boolean ascending = true;
+
+		for (int i = 0; i < charset.length; i++) {
+			codes[charset[i] & 0xFF] = (byte) i; // Last one wins, as in the compressors.
+			ascending &= i == 0 || charset[i] > charset[i - 1];
+		}
+
+		this.charset = charset;
+		this.ascending = ascending;
+		this.codeRanks = new int[charset.length];
+
+		for (int code = 0; code < charset.length; code++)
+			codeRanks[code] = (Arrays.binarySearch(sorted, charset[code]) << 1) + 1;
+
+		// Characters outside the charset fall between the ranks of their neighbors.
+		for (int c = Byte.MIN_VALUE; c <= Byte.MAX_VALUE; c++) {
+			final int position = Arrays.binarySearch(sorted, (byte) c);
+			keyRanks[c & 0xFF] = position >= 0 ? (position << 1) + 1 : -(position + 1) << 1;
+		}
+	}
+
+	// Analysis:
+
+	/**
+	 * @return {@code true} if the characters are in ascending ASCII order, so codes (and the bytes packing them) sort
+	 * like the characters themselves.
+	 */
+	public boolean isAscending() {
+		return ascending;
+	}
+
+	/**
+	 * @param code A code of this charset.
+	 * @return Position of the character of {@code code} in ASCII order, from {@code 0} to {@code charset.length - 1}.
+	 */
+	public int rankOf(final int code) {
+		return codeRanks[code] >>> 1;
+	}
+
+	/**
+	 * @param character Any character.
+	 * @return The code of {@code character}, or {@code -1} if the charset does not define it.
+	 */
+	public int codeOf(final byte character) {
+		return codes[character & 0xFF];
+	}
+
+	// Package-private tables:
+
+	/**
+	 * @return Code of each character, indexed by {@code character & 0xFF} ({@code -1} if not supported).
+	 */
+	byte[] codes() {
+		return codes;
+	}
+
+	/**
+	 * @return Rank of each code, on the scale of {@link #keyRanks()}.
+	 */
+	int[] codeRanks() {
+		return codeRanks;
+	}
+
+	/**
+	 * @return Rank of each character, indexed by {@code character & 0xFF}: odd for characters of the charset (matching
+	 * {@link #codeRanks()}), even for the others, which fall between their neighbors. Subtracting ranks compares like
+	 * subtracting characters.
+	 */
+	int[] keyRanks() {
+		return keyRanks;
+	}
+
+	// Getters:
+
+	/**
+	 * @return The charset analyzed.
+	 */
+	public byte[] getCharset() {
+		return charset;
+	}
+
+}
@@ -0,0 +1,417 @@
+package com.dannemann.stringcompressor.search;
+
+import com.dannemann.stringcompressor.AsciiCompressor;
+import com.dannemann.stringcompressor.arena.CompressedStringArena;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * <p>Sorts strings that are already compressed, in the order the binary searches expect (the order of the original
+ * strings). Data can then be compressed as it arrives and sorted afterwards, without keeping the uncompressed strings in
+ * memory.</p>
+ * <p>This is an MSD radix sort on the packed bytes, which sort like the characters they hold when the charset is in
+ * ascending order (as all default charsets are, see {@link CharsetOrder#isAscending()}). Otherwise, it sorts on the
+ * rank of each character instead, one byte per character (slower, as strings take more levels). The next 8 bytes of
+ * each string are cached in a {@code long}, so strings are only read once every 8 levels. Buckets are sorted in parallel
+ * when a {@link ForkJoinPool} is given.</p>
+ * <p>Besides the result, sorting takes about 32 bytes per string.</p>
+ * @author Jean Dannemann Carone
+ */
+public final class CompressedStringSorter {
+
+	private static final int INSERTION_SORT_THRESHOLD = 32;
+	private static final int PARALLEL_THRESHOLD = 1 << 13;
+	private static final int BUCKETS = 257; // One per byte value, plus one for strings that ended.
+
+	// Fields:
+
+	private final byte[][] compressedData;
+	private final CompressedStringArena arena;
+	private final int bits;
+	private final byte[] ranks; // Rank of each code if the charset is not in ascending order, or null.
+	private final int[] order; // Index of the string at each position.
+	private final long[] words; // Next 8 packed bytes of the string at each position.
+	private final int[] keyLengths; // Packed bytes of the string at each position.
+	private final int[] orderAux;
+	private final long[] wordsAux;
+	private final int[] keyLengthsAux;
+
+	// Constructor:
+
+	private CompressedStringSorter(byte[][] compressedData, CompressedStringArena arena, int count,
+		AsciiCompressor compressor) {
+
+		final CharsetOrder charsetOrder = new CharsetOrder(compressor.getSupportedCharset());
+
+		if (charsetOrder.isAscending())
+			this.ranks = null;
+		else {
+			this.ranks = new byte[charsetOrder.getCharset().length];
+			for (int code = 0; code < ranks.length; code++)
+				ranks[code] = (byte) charsetOrder.rankOf(code);
+		}
+
+		this.compressedData = compressedData;
+		this.arena = arena;
+		this.bits = compressor.getBitsPerCharacter();
+		this.order = new int[count];
+		this.words = new long[count];
+		this.keyLengths = new int[count];
+		this.orderAux = new int[count];
+		this.wordsAux = new long[count];
+		this.keyLengthsAux = new int[count];
+
+		final byte[] scratch = scratch();
+
+		for (int i = 0; i < count; i++) {
+			final byte[] compressed = compressed(i, scratch);
+			final int len = length(i, compressed);
+			order[i] = i;
+			final int raw = rawBytes(compressed, len);
+			final int tail = tail(compressed, len);
+			keyLengths[i] = ranks == null ? raw + (tail >= 0 ? 1 : 0) : decodedLength(len, raw, tail, compressed);
+		}
+	}
+
+	// Sorting:
+
+	/**
+	 * Sequential version of {@link #sort(byte[][], AsciiCompressor, ForkJoinPool)}.
+	 * @author Jean Dannemann Carone
+	 */
+	public static void sort(final byte[][] compressedData, final AsciiCompressor compressor) {
+		sort(compressedData, compressor, null);
+	}
+
+	/**
+	 * <p>Sorts compressed strings in place. Only the entries before the first {@code null} are sorted (unused slots are
+	 * at the end).</p>
+	 * @param compressedData Strings compressed by {@code compressor}, in any order.
+	 * @param compressor The compressor used.
+	 * @param pool If not {@code null}, buckets are sorted in parallel in this pool.
+	 * @author Jean Dannemann Carone
+	 */
+	public static void sort(final byte[][] compressedData, final AsciiCompressor compressor, final ForkJoinPool pool) {
+		int count = 0;
+		while (count < compressedData.length && compressedData[count] != null)
+			count++;
+
+		final int[] order = new CompressedStringSorter(compressedData, null, count, compressor).sort(pool);
+		final byte[][] sorted = new byte[count][];
+
+		for (int i = 0; i < count; i++)
+			sorted[i] = compressedData[order[i]];
+
+		System.arraycopy(sorted, 0, compressedData, 0, count);
+	}
+
+	/**
+	 * Sequential version of {@link #sort(CompressedStringArena, AsciiCompressor, ForkJoinPool)}.
+	 * @author Jean Dannemann Carone
+	 */
+	public static CompressedStringArena sort(final CompressedStringArena arena, final AsciiCompressor compressor) {
+		return sort(arena, compressor, null);
+	}
+
+	/**
+	 * Sorts the strings of an arena into a new arena (same page size, on or off the heap as the original).
+	 * @param arena Strings compressed by {@code compressor}, in any order. Not modified.
+	 * @param compressor The compressor used.
+	 * @param pool If not {@code null}, buckets are sorted in parallel in this pool.
+	 * @return A new arena holding the same strings, sorted.
+	 * @author Jean Dannemann Carone
+	 */
+	public static CompressedStringArena sort(final CompressedStringArena arena, final AsciiCompressor compressor,
+		final ForkJoinPool pool) {
+
+		final int[] order = new CompressedStringSorter(null, arena, arena.size(), compressor).sort(pool);
+		final CompressedStringArena sorted = new CompressedStringArena(arena.isOffHeap(), arena.getPageSize());
+
+		for (final int index : order)
+			sorted.add(arena.get(index));
+
+		return sorted;
+	}
+
+	/**
+	 * @return The index of the string at each sorted position.
+	 */
+	private int[] sort(final ForkJoinPool pool) {
+		if (pool == null)
+			sort(0, order.length, 0, scratch(), false);
+		else
+			pool.invoke(new SortTask(0, order.length, 0));
+
+		return order;
+	}
+
+	/**
+	 * Sorts the strings at positions {@code from ... to - 1}, which share their first {@code depth} packed bytes.
+	 */
+	private void sort(final int from, final int to, int depth, final byte[] scratch, final boolean parallel) {
+		final int[] counts = new int[BUCKETS];
+
+		while (to - from > INSERTION_SORT_THRESHOLD) {
+			if ((depth & 7) == 0)
+				load(from, to, depth, scratch);
+
+			for (int i = from; i < to; i++)
+				counts[digit(i, depth)]++;
+
+			// All in one bucket: moves on to the next byte without recursion.
+			final int first = digit(from, depth);
+			if (counts[first] == to - from) {
+				if (first == 0) {
+					sortEnded(from, to, scratch);
+					return;
+				}
+				counts[first] = 0;
+				depth++;
+				continue;
+			}
+
+			// Distributes into the auxiliary arrays and copies back.
+			final int[] starts = new int[BUCKETS];
+			for (int b = 1; b < BUCKETS; b++)
+				starts[b] = starts[b - 1] + counts[b - 1];
+
+			for (int i = from; i < to; i++) {
+				final int position = from + starts[digit(i, depth)]++;
+				orderAux[position] = order[i];
+				wordsAux[position] = words[i];
+				keyLengthsAux[position] = keyLengths[i];
+			}
+
+			System.arraycopy(orderAux, from, order, from, to - from);
+			System.arraycopy(wordsAux, from, words, from, to - from);
+			System.arraycopy(keyLengthsAux, from, keyLengths, from, to - from);
+
+			sortEnded(from, from + counts[0], scratch);
+
+			final List<SortTask> tasks = parallel ? new ArrayList<>() : null;
+
+			for (int b = 1, start = from + counts[0]; b < BUCKETS; start += counts[b++])
+				if (counts[b] > 1)
+					if (parallel && counts[b] >= PARALLEL_THRESHOLD)
+						tasks.add((SortTask) new SortTask(start, start + counts[b], depth + 1).fork());
+					else
+						sort(start, start + counts[b], depth + 1, scratch, parallel);
+
+			if (parallel)
+				for (final SortTask task : tasks)
+					task.join();
+
+			return;
+		}
+
+		if ((depth & 7) == 0)
+			load(from, to, depth, scratch);
+
+		insertionSort(from, to, depth, scratch);
+	}
+
+	/**
+	 * Sorts strings whose packed bytes are all equal (they only differ in length when the last characters have code
+	 * {@code 0}, which looks like padding). Shorter strings come first. These positions are final, so only their
+	 * indexes are moved.
+	 */
+	private void sortEnded(final int from, final int to, final byte[] scratch) {
+		if (to - from < 2)
+			return;
+
+		int shortest = Integer.MAX_VALUE;
+		for (int i = from; i < to; i++)
+			shortest = Math.min(shortest, decodedLength(i, scratch));
+
+		// At most two lengths share the same packed bytes: stable partition.
+		int shorter = from;
+		int longer = from;
+		for (int i = from; i < to; i++)
+			if (decodedLength(i, scratch) == shortest)
+				order[shorter++] = order[i];
+			else
+				orderAux[longer++] = order[i];
+
+		System.arraycopy(orderAux, from, order, shorter, longer - from);
+	}
+
+	private void insertionSort(final int from, final int to, final int depth, final byte[] scratch) {
+		for (int i = from + 1; i < to; i++) {
+			final int index = order[i];
+			final long word = words[i];
+			final int keyLength = keyLengths[i];
+			int j = i - 1;
+
+			while (j >= from && compare(order[j], words[j], keyLengths[j], index, word, keyLength, depth, scratch) > 0) {
+				order[j + 1] = order[j];
+				words[j + 1] = words[j];
+				keyLengths[j + 1] = keyLengths[j];
+				j--;
+			}
+
+			order[j + 1] = index;
+			words[j + 1] = word;
+			keyLengths[j + 1] = keyLength;
+		}
+	}
+
+	/**
+	 * Compares two strings sharing their first {@code depth} packed bytes, with the cached words first.
+	 */
+	private int compare(final int a, final long wordA, final int keyLengthA, final int b,
+		final long wordB, final int keyLengthB, final int depth, final byte[] scratch) {
+
+		if (wordA != wordB)
+			return Long.compareUnsigned(wordA, wordB);
+
+		final int blockEnd = (depth & ~7) + 8;
+
+		if (keyLengthA < blockEnd || keyLengthB < blockEnd) // One of them ends within the cached bytes (zero padded).
+			return keyLengthA != keyLengthB ? keyLengthA - keyLengthB :
+				decodedLengthOf(a, scratch) - decodedLengthOf(b, scratch);
+
+		// Both go on: compares the rest of the strings (rare, so the second one is simply copied for arenas).
+		final byte[] compressedA = compressed(a, scratch);
+		final int lenA = length(a, compressedA);
+		final int rawA = rawBytes(compressedA, lenA);
+		final int tailA = tail(compressedA, lenA);
+		final byte[] compressedB = compressedData != null ? compressedData[b] : arena.get(b);
+		final int lenB = compressedB.length;
+		final int rawB = rawBytes(compressedB, lenB);
+		final int tailB = tail(compressedB, lenB);
+
+		for (int p = blockEnd; ; p++) {
+			if (p >= keyLengthA || p >= keyLengthB)
+				return keyLengthA != keyLengthB ? keyLengthA - keyLengthB :
+					decodedLength(lenA, rawA, tailA, compressedA) - decodedLength(lenB, rawB, tailB, compressedB);
+
+			final int cmp = keyByte(compressedA, rawA, tailA, p) - keyByte(compressedB, rawB, tailB, p);
+			if (cmp != 0)
+				return cmp;
+		}
+	}
+
+	/**
+	 * Caches packed bytes {@code depth ... depth + 7} of the strings at positions {@code from ... to - 1}.
+	 */
+	private void load(final int from, final int to, final int depth, final byte[] scratch) {
+		for (int i = from; i < to; i++) {
+			final byte[] compressed = compressed(order[i], scratch);
+			final int len = length(order[i], compressed);
+			final int raw = rawBytes(compressed, len);
+			final int tail = tail(compressed, len);
+			long word = 0;
+
+			for (int p = depth; p < depth + 8; p++)
+				word = word << 8 | (p < keyLengths[i] ? keyByte(compressed, raw, tail, p) : 0);
+
+			words[i] = word;
+		}
+	}
+
+	/**
+	 * @return Bucket of the string at {@code position}: {@code 0} if it has no byte at {@code depth}, or the byte + 1.
+	 */
+	private int digit(final int position, final int depth) {
+		return depth < keyLengths[position] ? (int) (words[position] >>> (56 - ((depth & 7) << 3)) & 0xFF) + 1 : 0;
+	}
+
+	// Compressed formats:
+
+	private byte[] compressed(final int index, final byte[] scratch) {
+		if (compressedData != null)
+			return compressedData[index];
+		arena.get(index, scratch, 0);
+		return scratch;
+	}
+
+	private int length(final int index, final byte[] compressed) {
+		return compressedData != null ? compressed.length : arena.length(index);
+	}
+
+	/**
+	 * @return Number of packed bytes stored as they are (all but the flag byte, and the odd 4-bit character).
+	 */
+	private int rawBytes(final byte[] compressed, final int len) {
+		if (len == 0)
+			return 0;
+		return bits == 4 && compressed[len - 1] == 1 ? len - 2 : len - 1;
+	}
+
+	/**
+	 * @return The odd character of a 4-bit string, shifted into the high nibble of its packed byte, or {@code -1}.
+	 */
+	private int tail(final byte[] compressed, final int len) {
+		return bits == 4 && len > 0 && compressed[len - 1] == 1 ? compressed[len - 2] << 4 & 0xFF : -1;
+	}
+
+	/**
+	 * @return Byte {@code p} of the sort key: the packed byte, or the rank of character {@code p} if the charset is not
+	 * in ascending order.
+	 */
+	private int keyByte(final byte[] compressed, final int raw, final int tail, final int p) {
+		if (ranks == null)
+			return p < raw ? compressed[p] & 0xFF : tail;
+
+		if (bits == 4) {
+			if (p >>> 1 == raw) // The odd character.
+				return ranks[tail >>> 4];
+			final byte bite = compressed[p >>> 1];
+			return ranks[(p & 1) == 0 ? (bite & 0xF0) >> 4 : bite & 0x0F];
+		}
+
+		final int bit = p * bits;
+		final int i = bit >>> 3;
+		final int pair = (compressed[i] & 0xFF) << 8 | (i + 1 < raw ? compressed[i + 1] & 0xFF : 0);
+		return ranks[pair >>> 16 - bits - (bit & 7) & (1 << bits) - 1];
+	}
+
+	private int decodedLength(final int position, final byte[] scratch) {
+		return decodedLengthOf(order[position], scratch);
+	}
+
+	private int decodedLengthOf(final int index, final byte[] scratch) {
+		final byte[] compressed = compressed(index, scratch);
+		final int len = length(index, compressed);
+		return decodedLength(len, rawBytes(compressed, len), tail(compressed, len), compressed);
+	}
+
+	private int decodedLength(final int len, final int raw, final int tail, final byte[] compressed) {
+		if (len == 0)
+			return 0;
+		if (bits == 4)
+			return (raw << 1) + (tail >= 0 ? 1 : 0);
+		return (len - 1) * 8 / bits - (compressed[len - 1] & 1);
+	}
+
+	/**
+	 * @return A scratch array for arena strings, or {@code null} for arrays.
+	 */
+	private byte[] scratch() {
+		return arena != null ? new byte[arena.maxLength()] : null;
+	}
+
+	/**
+	 * Sorts a range, forking one task per large bucket.
+	 */
+	private final class SortTask extends RecursiveAction {
+
+		private final int from, to, depth;
+
+		private SortTask(int from, int to, int depth) {
+			this.from = from;
+			this.to = to;
+			this.depth = depth;
+		}
+
+		@Override
+		protected void compute() {
+			sort(from, to, depth, scratch(), true);
+		}
+
+	}
+
+}
@@ -0,0 +1,180 @@
+package com.dannemann.stringcompressor.search;
+
+import com.dannemann.stringcompressor.arena.CompressedStringArena;
+
+import java.util.Arrays;
+
+/**
+ * <p>Copies the data of a binary search into Eytzinger (breadth-first) order and searches it there.</p>
+ * <p>A classic binary search touches a distant element at each level, so on large arrays almost every probe is a cache
+ * miss (two on a {@code byte[][]}: the reference and the array it points to). In Eytzinger order, node {@code k} has
+ * its children at {@code 2k} and {@code 2k + 1}, stored back to back in large pages: the first levels of every search
+ * share the first few kilobytes, which stay in cache, and the descent has no unpredictable branch (the next node
+ * depends on the comparison result arithmetically).</p>
+ * <p>Results follow the contract of {@link BaseBinarySearch#search(byte[])}, with indexes in the original sorted order.
+ * Comparisons (exact or prefix, packed or decoding) are the ones of the wrapped binary search. If several elements
+ * match, the first one in sorted order is returned.</p>
+ * <p>The layout is a copy, built once. Later changes to the original data are not seen. Node indexes are {@code int}s,
+ * so it holds at most 2<sup>30</sup> - 1 strings.</p>
+ * @author Jean Dannemann Carone
+ */
+public final class EytzingerSearch {
+
+	// Fields:
+
+	/**
+	 * Largest number of strings whose node indexes, children included ({@code 2k + 1}), still fit in an {@code int}.
+	 */
+	static final int MAX_SIZE = (1 << 30) - 1;
+
+	private final BaseBinarySearch sorted;
+	private final int size;
+	private final int[] ranks; // Sorted index of each node (1-based).
+	private final int[] ends; // End offset of each node within its page (1-based).
+	private final int[] pageFirst; // First node of each page.
+	private final byte[][] pages;
+
+	// Constructor:
+
+	/**
+	 * <p>Builds the Eytzinger layout of the data searched by {@code sorted}.</p>
+	 * <p>On a {@code byte[][]}, only the entries before the first {@code null} are copied (unused slots are at the
+	 * end).</p>
+	 * @param sorted Binary search over the sorted data. Its comparison (exact or prefix) is used by this search.
+	 * @throws IllegalArgumentException If there are more than 2<sup>30</sup> - 1 strings.
+	 * @author Jean Dannemann Carone
+	 */
+	public EytzingerSearch(BaseBinarySearch sorted) {
+		this(sorted, CompressedStringArena.DEFAULT_PAGE_SIZE);
+	}
+
+	EytzingerSearch(BaseBinarySearch sorted, int pageSize) {
+		final byte[][] data = sorted.getCompressedData();
+		final CompressedStringArena arena = sorted.getArena();
+		int count;
+
+		if (data != null) {
+			count = 0;
+			while (count < data.length && data[count] != null)
+				count++;
+		} else
+			count = arena.size();
+
+		if (count > MAX_SIZE)
+			throw new IllegalArgumentException("Too many strings for an Eytzinger layout (at most " + MAX_SIZE + "): " + count + ".");
+
+		this.sorted = sorted;
+		this.size = count;
+		this.ranks = new int[count + 1];
+		this.ends = new int[count + 1];
+
+		fill(1, 0);
+
+		// First pass: assigns nodes to pages (a string never spans two pages).
+		int pageCount = 1;
+		int[] firsts = new int[]{1, 0};
+		int[] lengths = new int[2];
+
+		for (int k = 1, position = 0; k <= count; k++) {
+			final int len = data != null ? data[ranks[k]].length : arena.length(ranks[k]);
+
+			if (len > pageSize)
+				throw new IllegalArgumentException("Compressed string longer than the page size: " + len);
+
+			if (position + len > pageSize) {
+				lengths[pageCount - 1] = position;
+				if (pageCount == firsts.length) {
+					firsts = Arrays.copyOf(firsts, pageCount << 1);
+					lengths = Arrays.copyOf(lengths, pageCount << 1);
+				}
+				firsts[pageCount++] = k;
+				position = 0;
+			}
+
+			ends[k] = position += len;
+			lengths[pageCount - 1] = position;
+		}
+
+		// Second pass: copies the strings.
+		this.pageFirst = Arrays.copyOf(firsts, pageCount);
+		this.pages = new byte[pageCount][];
+
+		for (int p = 0; p < pageCount; p++) {
+			final byte[] page = pages[p] = new byte[lengths[p]];
+			final int last = p + 1 < pageCount ? pageFirst[p + 1] : count + 1;
+
+			for (int k = pageFirst[p], start = 0; k < last; start = ends[k++])
+				if (data != null)
+					System.arraycopy(data[ranks[k]], 0, page, start, ends[k] - start);
+				else
+					arena.get(ranks[k], page, start);
+		}
+	}
+
+	// Search:
+
+	/**
+	 * Same as {@link BaseBinarySearch#search(byte[])}, on the Eytzinger layout.
+	 * @param key The uncompressed key to search for, as a byte array.
+	 * @return The index (in sorted order) of the search key if it is found; otherwise, {@code -(insertion point) - 1}.
+	 * @author Jean Dannemann Carone
+	 */
+	public int search(final byte[] key) {
+		final byte[] packed = sorted.pack(key);
+		int k = 1;
+
+		// Always descends to a leaf: right if the node comes before the key, left otherwise.
+		while (k <= size)
+			k = k << 1 | compare(k, key, packed) >>> 31;
+
+		// Drops the right turns taken since the last left turn, landing on the first node not before the key.
+		k >>>= Integer.numberOfTrailingZeros(~k) + 1;
+
+		if (k == 0)
+			return -(size + 1);
+
+		final int rank = ranks[k];
+		return compare(k, key, packed) == 0 ? rank : -(rank + 1);
+	}
+
+	private int compare(final int k, final byte[] key, final byte[] packed) {
+		int p = pageFirst.length - 1;
+
+		while (pageFirst[p] > k)
+			p--;
+
+		final int start = k == pageFirst[p] ? 0 : ends[k - 1];
+		return sorted.compare(pages[p], start, ends[k] - start, key, packed);
+	}
+
+	/**
+	 * Assigns sorted indexes to nodes by in-order traversal.
+	 * @return The next sorted index.
+	 */
+	private int fill(final int k, int rank) {
+		if (k <= size) {
+			rank = fill(k << 1, rank);
+			ranks[k] = rank++;
+			rank = fill(k << 1 | 1, rank);
+		}
+
+		return rank;
+	}
+
+	// Getters:
+
+	/**
+	 * @return The binary search this layout was built from.
+	 */
+	public BaseBinarySearch getSorted() {
+		return sorted;
+	}
+
+	/**
+	 * @return Number of strings in the layout.
+	 */
+	public int size() {
+		return size;
+	}
+
+}
@@ -1,6 +1,7 @@
 package com.dannemann.stringcompressor.search;
 
 import com.dannemann.stringcompressor.FourBitAsciiCompressor;
+import com.dannemann.stringcompressor.arena.CompressedStringArena;
 
 import static com.dannemann.stringcompressor.FourBitAsciiCompressor.DEFAULT_4BIT_CHARSET;
 
@@ -13,10 +14,10 @@ import static com.dannemann.stringcompressor.FourBitAsciiCompressor.DEFAULT_4BIT
  * <p>Null elements are considered to come after any character, in the same way that Z comes after A. This is because
  * the {@code compressedData} array typically has extra space to accommodate new entries, so unused slots (nulls) are
  * placed at the end.</p>
- * <p>Note that character ordering depends on the sequence defined in your custom charset (via
+ * <p>Note that strings are ordered by their characters (ASCII), whatever their sequence in your custom charset (via
  * {@code supportedCharset}), which is passed to the compressor constructor (see
- * {@link FourBitAsciiCompressor#FourBitAsciiCompressor(byte[])}). If no custom charset is provided, compressors use a
- * default charset ordered by ASCII.</p>
+ * {@link FourBitAsciiCompressor#FourBitAsciiCompressor(byte[])}). A charset in ASCII order is faster, though (see
+ * {@link CharsetOrder}). If no custom charset is provided, compressors use a default charset ordered by ASCII.</p>
  * @author Jean Dannemann Carone
  * @see FourBitAsciiCompressor#DEFAULT_4BIT_CHARSET
  */
@@ -45,78 +46,88 @@ public final class FourBitBinarySearch extends BaseBinarySearch {
 	}
 
 	/**
-	 * <p>Performs a binary search on the provided compressed data array to locate the specified key.</p>
-	 * <p>The compressed data is expected to be produced by {@link FourBitAsciiCompressor} and must be sorted before
-	 * compression for this search to work correctly. The search is performed directly on the compressed form without
-	 * decompressing the entire dataset, enabling fast lookups in large in-memory compressed collections.</p>
-	 * <p>The method returns the index of the matching element if found; otherwise, it returns
-	 * {@code -(insertion point) - 1}, following the contract of {@link java.util.Arrays#binarySearch}.</p>
-	 * @param key The uncompressed key to search for, as a byte array.
-	 * @return The index of the search key if it is found; otherwise, {@code -(insertion point) - 1}.
+	 * Creates a binary search object for an arena of strings compressed with the default character set {@link FourBitAsciiCompressor#DEFAULT_4BIT_CHARSET}.
+	 * @param arena The compressed strings to search through, sorted before compression.
+	 * @param prefixSearch If {@code true}, searches for elements starting with the provided key prefix (must be unique).
 	 * @author Jean Dannemann Carone
+	 * @see FourBitBinarySearch#FourBitBinarySearch(CompressedStringArena, boolean, byte[])
 	 */
-	@Override
-	public int search(final byte[] key) {
-		final int dataLength = compressedData.length;
+	public FourBitBinarySearch(CompressedStringArena arena, boolean prefixSearch) {
+		super(arena, prefixSearch, DEFAULT_4BIT_CHARSET);
+	}
 
-		if (dataLength == 0)
-			return -1;
+	/**
+	 * Creates a binary search object for an arena of compressed strings.
+	 * @param arena The compressed strings to search through, sorted before compression.
+	 * @param prefixSearch If {@code true}, searches for elements starting with the provided key prefix (must be unique).
+	 * @param charset Character set used to compress the strings in {@code arena}.
+	 * @author Jean Dannemann Carone
+	 */
+	public FourBitBinarySearch(CompressedStringArena arena, boolean prefixSearch, byte[] charset) {
+		super(arena, prefixSearch, charset);
+	}
 
+	@Override
+	protected int compare(final byte[] compressed, final int off, final int len, final byte[] key) {
 		final int keyLen = key.length;
-		int low = 0;
-		int high = dataLength - 1;
-
-		while (low <= high) {
-			final int mid = low + high >>> 1;
-			final byte[] compStr = compressedData[mid];
-			int cmp = 0;
-
-			if (compStr == null)
-				cmp = 1;
-			else {
-				final int odd;
-				final int dLen;
-				int cLenMinus = compStr.length - 1;
-
-				if (cLenMinus >= 0) {
-					odd = compStr[cLenMinus];
-					dLen = odd == 1 ? (--cLenMinus << 1) + 1 : cLenMinus << 1;
-				} else {
-					odd = 0;
-					dLen = 0;
-				}
-
-				int j = 0;
-
-				for (int i = 0; i < cLenMinus && j < keyLen; i++) {
-					final byte bite = compStr[i];
-
-					if ((cmp = charset[(bite & 0xF0) >> 4] - key[j++]) != 0 ||
-						j < keyLen &&
-						(cmp = charset[bite & 0x0F] - key[j++]) != 0)
-						break;
-				}
-
-				if (cmp == 0 && odd == 1 && j < keyLen)
-					cmp = charset[compStr[cLenMinus]] - key[j];
-
-				if (cmp == 0) {
-					if (prefixSearch && keyLen <= dLen)
-						return mid;
-
-					cmp = dLen - keyLen;
-				}
-			}
-
-			if (cmp < 0)
-				low = mid + 1;
-			else if (cmp > 0)
-				high = mid - 1;
-			else
-				return mid;
+		final int odd;
+		final int dLen;
+		int last = off + len - 1;
+
+		if (len > 0) {
+			odd = compressed[last];
+			dLen = odd == 1 ? (--last - off << 1) + 1 : last - off << 1;
+		} else {
+			odd = 0;
+			dLen = 0;
+		}
+
+		int cmp;
+		int j = 0;
+
+		for (int i = off; i < last && j < keyLen; i++) {
+			final byte bite = compressed[i];
+
+			if ((cmp = codeRanks[(bite & 0xF0) >> 4] - keyRanks[key[j++] & 0xFF]) != 0 ||
+				j < keyLen &&
+				(cmp = codeRanks[bite & 0x0F] - keyRanks[key[j++] & 0xFF]) != 0)
+				return cmp;
 		}
 
-		return -(low + 1);
+		if (odd == 1 && j < keyLen && (cmp = codeRanks[compressed[last]] - keyRanks[key[j] & 0xFF]) != 0)
+			return cmp;
+
+		if (prefixSearch && keyLen <= dLen)
+			return 0;
+
+		return dLen - keyLen;
+	}
+
+	@Override
+	protected int comparePacked(final byte[] compressed, final int off, final int len, final byte[] packed, final int keyLen) {
+		if (len == 0)
+			return compareBits(compressed, off, 0, -1, 0, packed, keyLen);
+
+		// The odd character sits alone in the low nibble of its own byte, so it is shifted into place as the tail.
+		final int last = off + len - 1;
+		return compressed[last] == 1 ?
+			compareBits(compressed, off, len - 2, compressed[last - 1] << 4 & 0xFF, (len - 2 << 1) + 1, packed, keyLen) :
+			compareBits(compressed, off, len - 1, -1, len - 1 << 1, packed, keyLen);
+	}
+
+	@Override
+	protected long packedPrefix(final byte[] compressed, final int off, final int len) {
+		if (len == 0)
+			return 0;
+
+		final int last = off + len - 1;
+		return compressed[last] == 1 ?
+			prefixOf(compressed, off, len - 2, compressed[last - 1] << 4 & 0xFF) : prefixOf(compressed, off, len - 1, -1);
+	}
+
+	@Override
+	public int getBitsPerCharacter() {
+		return 4;
 	}
 
 }
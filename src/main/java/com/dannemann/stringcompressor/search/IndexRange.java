@@ -0,0 +1,22 @@
+package com.dannemann.stringcompressor.search;
+
+/**
+ * Range of indexes {@code [from, to)} in sorted compressed data, as returned by {@link BaseBinarySearch#prefixRange}.
+ * @param from Index of the first string in the range.
+ * @param to Index after the last string in the range ({@code from} if the range is empty).
+ * @author Jean Dannemann Carone
+ */
+public record IndexRange(int from, int to) {
+
+	/**
+	 * @return Number of strings in the range.
+	 */
+	public int size() {
+		return to - from;
+	}
+
+	public boolean isEmpty() {
+		return to == from;
+	}
+
+}
@@ -0,0 +1,287 @@
+package com.dannemann.stringcompressor.search;
+
+import com.dannemann.stringcompressor.arena.CompressedStringArena;
+
+/**
+ * <p>Interpolation search over the data of a binary search, for keys spread evenly over their range (numeric IDs,
+ * hashes, timestamps).</p>
+ * <p>Instead of probing the middle of the range, each step guesses where the key should be from the first 8 packed
+ * bytes of the key and of the range ends (16 characters in 4-bit, 12 in 5-bit, and 10 in 6-bit), then probes a guard
+ * element a square root of the range away to bracket it. On uniform data, this takes a few probes where a binary
+ * search takes {@code log2(n)}. When the data is skewed and guesses keep missing their guard, the search falls back
+ * to a binary search for the rest of the range, so it is never much slower than one.</p>
+ * <p>Results follow the contract of {@link BaseBinarySearch#search(byte[])}. Comparisons (exact or prefix) are the
+ * ones of the wrapped binary search, which must use packed comparison (see
+ * {@link BaseBinarySearch#isPackedComparison()}).</p>
+ * <p>The first 8 packed bytes of every string are copied once (8 bytes per string). Later changes to the original
+ * data are not seen.</p>
+ * @author Jean Dannemann Carone
+ */
+public final class InterpolationSearch {
+
+	private static final int DEFAULT_MAX_BAD_GUESSES = 3;
+	private static final int MIN_INTERPOLATION_RANGE = 16; // Below this, bisecting is cheaper than guessing.
+
+	// Fields:
+
+	private final BaseBinarySearch sorted;
+	private final int size;
+	private final long[] prefixes;
+	private final int maxBadGuesses;
+	private final int bits;
+	private final int chars; // Whole characters in a prefix.
+	private final int base; // Number of codes found in the data.
+	private final double digitsPerBit; // Base-{@code base} digits needed per bit of a range width.
+	private final int maxDigits; // Base-{@code base} digits that fit in a long.
+	private final long used; // Codes found in the data (bit set).
+	private final byte[] digits = new byte[64]; // Rank of each code among the codes found (its digit in base).
+
+	// Constructor:
+
+	/**
+	 * <p>Copies the first 8 packed bytes of the strings searched by {@code sorted}.</p>
+	 * <p>On a {@code byte[][]}, only the entries before the first {@code null} are copied (unused slots are at the
+	 * end).</p>
+	 * @param sorted Binary search over the sorted data. Its comparison (exact or prefix) is used by this search.
+	 * @throws IllegalArgumentException If the charset of {@code sorted} is not in ascending order.
+	 * @author Jean Dannemann Carone
+	 */
+	public InterpolationSearch(BaseBinarySearch sorted) {
+		this(sorted, DEFAULT_MAX_BAD_GUESSES);
+	}
+
+	/**
+	 * @param maxBadGuesses Guesses that may miss their guard before falling back to bisection ({@code 0} bisects
+	 * right away).
+	 */
+	InterpolationSearch(BaseBinarySearch sorted, int maxBadGuesses) {
+		if (!sorted.isPackedComparison())
+			throw new IllegalArgumentException("Interpolation search requires a charset in ascending order.");
+
+		final byte[][] data = sorted.getCompressedData();
+		final CompressedStringArena arena = sorted.getArena();
+
+		if (data != null) {
+			int count = 0;
+			while (count < data.length && data[count] != null)
+				count++;
+			prefixes = new long[count];
+			for (int i = 0; i < count; i++)
+				prefixes[i] = sorted.packedPrefix(data[i], 0, data[i].length);
+		} else {
+			final byte[] scratch = sorted.scratch();
+			prefixes = new long[arena.size()];
+			for (int i = 0; i < prefixes.length; i++)
+				prefixes[i] = sorted.packedPrefix(scratch, 0, arena.get(i, scratch, 0));
+		}
+
+		this.sorted = sorted;
+		this.size = prefixes.length;
+		this.maxBadGuesses = maxBadGuesses;
+		this.bits = sorted.getBitsPerCharacter();
+
+		// Codes the data uses. Trailing zero codes are skipped: they may be padding.
+		this.chars = 64 / bits;
+		final long wholeChars = -1L << 64 - chars * bits;
+		long used = 0;
+
+		for (final long prefix : prefixes)
+			for (long rest = prefix & wholeChars; rest != 0; rest <<= bits)
+				used |= 1L << (rest >>> 64 - bits);
+
+		for (int code = 0; code < digits.length; code++)
+			digits[code] = (byte) Long.bitCount(used & (1L << code) - 1);
+
+		this.used = used;
+		this.base = Math.max(Long.bitCount(used), 2);
+		final double bitsPerDigit = Math.log(base) / Math.log(2);
+		this.digitsPerBit = 1 / bitsPerDigit;
+		this.maxDigits = (int) (62 / bitsPerDigit);
+	}
+
+	// Search:
+
+	/**
+	 * Same as {@link BaseBinarySearch#search(byte[])}, guessing positions by interpolation.
+	 * @param key The uncompressed key to search for, as a byte array.
+	 * @return The index of the search key if it is found; otherwise, {@code -(insertion point) - 1}.
+	 * @author Jean Dannemann Carone
+	 */
+	public int search(final byte[] key) {
+		return (int) (find(key) >> 32);
+	}
+
+	/**
+	 * @return Number of elements compared with the key by {@link #search(byte[])}.
+	 */
+	int probes(final byte[] key) {
+		return (int) find(key);
+	}
+
+	/**
+	 * @return The search result in the high 32 bits, and the number of probes in the low 32 bits.
+	 */
+	private long find(final byte[] key) {
+		final byte[] packed = sorted.pack(key);
+		final byte[] scratch = sorted.scratch();
+		final long keyPrefix;
+		final long mask;
+		int bad;
+
+		if (packed != null) {
+			final int keyBits = key.length * bits;
+			keyPrefix = BaseBinarySearch.prefixOf(packed, 0, packed.length, -1);
+			// Prefix searches only look at the key's bits: longer strings starting with the key must compare as equal.
+			mask = !sorted.isPrefixSearch() || keyBits >= 64 ? -1L : ~(-1L >>> keyBits);
+			bad = 0;
+		} else { // Characters outside the charset: nothing to interpolate on, strings are decoded.
+			keyPrefix = 0;
+			mask = 0;
+			bad = maxBadGuesses;
+		}
+
+		int low = 0;
+		int high = size - 1;
+		int probes = 0;
+
+		while (low <= high) {
+			if (bad >= maxBadGuesses || high - low < MIN_INTERPOLATION_RANGE) {
+				final int mid = low + high >>> 1;
+				final int cmp = compare(mid, key, packed, keyPrefix, mask, scratch);
+				probes++;
+
+				if (cmp < 0)
+					low = mid + 1;
+				else if (cmp > 0)
+					high = mid - 1;
+				else
+					return (long) mid << 32 | probes;
+
+				continue;
+			}
+
+			// The guard sits where a good guess on uniform data is expected to be off by at most.
+			final int gap = (int) Math.sqrt(high - low) + 1;
+			final int mid = guess(low, high, keyPrefix);
+			int cmp = compare(mid, key, packed, keyPrefix, mask, scratch);
+			probes++;
+
+			if (cmp < 0) {
+				low = mid + 1;
+				final int guard = mid + gap;
+
+				if (guard < high) {
+					cmp = compare(guard, key, packed, keyPrefix, mask, scratch);
+					probes++;
+
+					if (cmp > 0)
+						high = guard - 1;
+					else if (cmp < 0) {
+						low = guard + 1;
+						bad++;
+					} else
+						return (long) guard << 32 | probes;
+				}
+			} else if (cmp > 0) {
+				high = mid - 1;
+				final int guard = mid - gap;
+
+				if (guard > low) {
+					cmp = compare(guard, key, packed, keyPrefix, mask, scratch);
+					probes++;
+
+					if (cmp < 0)
+						low = guard + 1;
+					else if (cmp > 0) {
+						high = guard - 1;
+						bad++;
+					} else
+						return (long) guard << 32 | probes;
+				}
+			} else
+				return (long) mid << 32 | probes;
+		}
+
+		return (long) -(low + 1) << 32 | probes;
+	}
+
+	/**
+	 * <p>Returns the position in {@code low ... high} where the key prefix would be if prefixes grew linearly in
+	 * between.</p>
+	 * <p>Prefixes are read as numbers whose digits are the codes the data uses, not the raw packed bits: decimal IDs
+	 * only use 10 of the 16 4-bit codes, and interpolating on raw bits would leave gaps in every digit.</p>
+	 */
+	private int guess(final int low, final int high, final long keyPrefix) {
+		final long lowPrefix = prefixes[low];
+		final long highPrefix = prefixes[high];
+
+		if (Long.compareUnsigned(keyPrefix, lowPrefix) <= 0)
+			return low;
+		if (Long.compareUnsigned(keyPrefix, highPrefix) >= 0)
+			return high;
+
+		// Shared characters are skipped, and only enough digits to tell the positions of the range apart are read.
+		final int shared = Long.numberOfLeadingZeros(lowPrefix ^ highPrefix) / bits;
+		final int width = high - low;
+		final int needed = (int) ((32 - Integer.numberOfLeadingZeros(width)) * digitsPerBit) + 2;
+		final int count = Math.min(Math.min(chars - shared, maxDigits), needed);
+		final int mask = (1 << bits) - 1;
+		long lowValue = 0;
+		long keyValue = 0;
+		long highValue = 0;
+
+		int fill = -1; // Digit of the rest of the key, once it has a code the data doesn't use.
+
+		for (int i = 0, shift = 64 - bits * (shared + 1); i < count; i++, shift -= bits) {
+			final int code = (int) (keyPrefix >>> shift) & mask;
+			lowValue = lowValue * base + digits[(int) (lowPrefix >>> shift) & mask];
+			highValue = highValue * base + digits[(int) (highPrefix >>> shift) & mask];
+
+			if (fill >= 0)
+				keyValue = keyValue * base + fill;
+			else if ((used >>> code & 1) != 0)
+				keyValue = keyValue * base + digits[code];
+			else if (used >>> code != 0) { // Just before the next code found: its digit, then zeros.
+				keyValue = keyValue * base + digits[code];
+				fill = 0;
+			} else { // After the last code found: the largest value with the same digits so far.
+				keyValue = keyValue * base + base - 1;
+				fill = base - 1;
+			}
+		}
+
+		if (highValue <= lowValue)
+			return low + high >>> 1;
+
+		// Only the first digits are read, so the key may still land outside the range.
+		final double position = (double) (keyValue - lowValue) / (highValue - lowValue) * width;
+		return low + (int) Math.max(0, Math.min(width, position));
+	}
+
+	/**
+	 * Compares the prefixes first, and the strings only if the prefixes are equal.
+	 */
+	private int compare(final int index, final byte[] key, final byte[] packed, final long keyPrefix, final long mask,
+		final byte[] scratch) {
+
+		final int cmp = packed != null ? Long.compareUnsigned(prefixes[index] & mask, keyPrefix) : 0;
+		return cmp != 0 ? cmp : sorted.compareAt(index, key, packed, scratch);
+	}
+
+	// Getters:
+
+	/**
+	 * @return The binary search this search was built from.
+	 */
+	public BaseBinarySearch getSorted() {
+		return sorted;
+	}
+
+	/**
+	 * @return Number of strings searched.
+	 */
+	public int size() {
+		return size;
+	}
+
+}
@@ -1,6 +1,7 @@
 package com.dannemann.stringcompressor.search;
 
 import com.dannemann.stringcompressor.SixBitAsciiCompressor;
+import com.dannemann.stringcompressor.arena.CompressedStringArena;
 
 import static com.dannemann.stringcompressor.SixBitAsciiCompressor.DEFAULT_6BIT_CHARSET;
 
@@ -13,10 +14,10 @@ import static com.dannemann.stringcompressor.SixBitAsciiCompressor.DEFAULT_6BIT_
  * <p>Null elements are considered to come after any character, in the same way that Z comes after A. This is because
  * the {@code compressedData} array typically has extra space to accommodate new entries, so unused slots (nulls) are
  * placed at the end.</p>
- * <p>Note that character ordering depends on the sequence defined in your custom charset (via
+ * <p>Note that strings are ordered by their characters (ASCII), whatever their sequence in your custom charset (via
  * {@code supportedCharset}), which is passed to the compressor constructor (see
- * {@link SixBitAsciiCompressor#SixBitAsciiCompressor(byte[])}). If no custom charset is provided, compressors use a
- * default charset ordered by ASCII.</p>
+ * {@link SixBitAsciiCompressor#SixBitAsciiCompressor(byte[])}). A charset in ASCII order is faster, though (see
+ * {@link CharsetOrder}). If no custom charset is provided, compressors use a default charset ordered by ASCII.</p>
  * @author Jean Dannemann Carone
  * @see SixBitAsciiCompressor#DEFAULT_6BIT_CHARSET
  */
@@ -45,69 +46,71 @@ public final class SixBitBinarySearch extends BaseBinarySearch {
 	}
 
 	/**
-	 * <p>Performs a binary search on the provided compressed data array to locate the specified key.</p>
-	 * <p>The compressed data is expected to be produced by {@link SixBitAsciiCompressor} and must be sorted before
-	 * compression for this search to work correctly. The search is performed directly on the compressed form without
-	 * decompressing the entire dataset, enabling fast lookups in large in-memory compressed collections.</p>
-	 * <p>The method returns the index of the matching element if found; otherwise, it returns
-	 * {@code -(insertion point) - 1}, following the contract of {@link java.util.Arrays#binarySearch}.</p>
-	 * @param key The uncompressed key to search for, as a byte array.
-	 * @return The index of the search key if it is found; otherwise, {@code -(insertion point) - 1}.
+	 * Creates a binary search object for an arena of strings compressed with the default character set {@link SixBitAsciiCompressor#DEFAULT_6BIT_CHARSET}.
+	 * @param arena The compressed strings to search through, sorted before compression.
+	 * @param prefixSearch If {@code true}, searches for elements starting with the provided key prefix (must be unique).
 	 * @author Jean Dannemann Carone
+	 * @see SixBitBinarySearch#SixBitBinarySearch(CompressedStringArena, boolean, byte[])
 	 */
-	@Override
-	public int search(final byte[] key) {
-		final int dataLength = compressedData.length;
+	public SixBitBinarySearch(CompressedStringArena arena, boolean prefixSearch) {
+		super(arena, prefixSearch, DEFAULT_6BIT_CHARSET);
+	}
 
-		if (dataLength == 0)
-			return -1;
+	/**
+	 * Creates a binary search object for an arena of compressed strings.
+	 * @param arena The compressed strings to search through, sorted before compression.
+	 * @param prefixSearch If {@code true}, searches for elements starting with the provided key prefix (must be unique).
+	 * @param charset Character set used to compress the strings in {@code arena}.
+	 * @author Jean Dannemann Carone
+	 */
+	public SixBitBinarySearch(CompressedStringArena arena, boolean prefixSearch, byte[] charset) {
+		super(arena, prefixSearch, charset);
+	}
 
+	@Override
+	protected int compare(final byte[] compressed, final int off, final int len, final byte[] key) {
 		final int keyLen = key.length;
-		int low = 0;
-		int high = dataLength - 1;
-
-		while (low <= high) {
-			final int mid = low + high >>> 1;
-			final byte[] compStr = compressedData[mid];
-			int cmp = 0;
-
-			if (compStr == null)
-				cmp = 1;
-			else {
-				final int cLenMinus = compStr.length - 1;
-				int buffer = 0;
-				int bits = 0;
-
-				for (int i = 0, j = 0; i < cLenMinus && j < keyLen; i++) {
-					buffer = buffer << 8 | compStr[i] & 0xFF;
-					bits += 8;
-
-					if (bits >= 6 &&
-						(cmp = charset[buffer >>> (bits -= 6) & 0x3F] - key[j++]) != 0 ||
-						bits >= 6 && j < keyLen &&
-						(cmp = charset[buffer >>> (bits -= 6) & 0x3F] - key[j++]) != 0)
-						break;
-				}
-
-				if (cmp == 0) {
-					final int dLen = cLenMinus >= 0 ? cLenMinus * 8 / 6 - (compStr[cLenMinus] & 1) : 0;
-
-					if (prefixSearch && keyLen <= dLen)
-						return mid;
-
-					cmp = dLen - keyLen;
-				}
-			}
-
-			if (cmp < 0)
-				low = mid + 1;
-			else if (cmp > 0)
-				high = mid - 1;
-			else
-				return mid;
+		final int last = off + len - 1;
+		final int dLen = len > 0 ? (len - 1) * 8 / 6 - (compressed[last] & 1) : 0;
+		final int limit = Math.min(keyLen, dLen); // Padding bits must not be decoded as a character.
+		int cmp = 0;
+		int buffer = 0;
+		int bits = 0;
+
+		for (int i = off, j = 0; i < last && j < limit; i++) {
+			buffer = buffer << 8 | compressed[i] & 0xFF;
+			bits += 8;
+
+			if (bits >= 6 &&
+				(cmp = codeRanks[buffer >>> (bits -= 6) & 0x3F] - keyRanks[key[j++] & 0xFF]) != 0 ||
+				bits >= 6 && j < limit &&
+				(cmp = codeRanks[buffer >>> (bits -= 6) & 0x3F] - keyRanks[key[j++] & 0xFF]) != 0)
+				return cmp;
 		}
 
-		return -(low + 1);
+		if (prefixSearch && keyLen <= dLen)
+			return 0;
+
+		return dLen - keyLen;
+	}
+
+	@Override
+	protected int comparePacked(final byte[] compressed, final int off, final int len, final byte[] packed, final int keyLen) {
+		if (len == 0)
+			return compareBits(compressed, off, 0, -1, 0, packed, keyLen);
+
+		final int bytes = len - 1;
+		return compareBits(compressed, off, bytes, -1, bytes * 8 / 6 - (compressed[off + bytes] & 1), packed, keyLen);
+	}
+
+	@Override
+	protected long packedPrefix(final byte[] compressed, final int off, final int len) {
+		return prefixOf(compressed, off, len > 0 ? len - 1 : 0, -1);
+	}
+
+	@Override
+	public int getBitsPerCharacter() {
+		return 6;
 	}
 
 }
@@ -0,0 +1,171 @@
+package com.dannemann.stringcompressor.stream;
+
+import com.dannemann.stringcompressor.AsciiCompressor;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static java.util.Objects.checkFromIndexSize;
+
+/**
+ * <p>Compresses everything written to it with the given {@link AsciiCompressor} (4, 5 or 6 bits per character) and
+ * writes the result to the underlying stream, so inputs of any size can be compressed with constant memory.</p>
+ * <p>Stream format:</p>
+ * <ol>
+ *   <li>Body: characters packed in groups of 8, each group taking exactly {@link AsciiCompressor#getBitsPerCharacter()}
+ *   bytes, back to back.</li>
+ *   <li>Tail: the last {@code count % 8} characters, compressed as a regular string by the compressor (empty if none).</li>
+ *   <li>Trailer: the total number of characters ({@code count}), as an 8-byte big-endian {@code long}.</li>
+ * </ol>
+ * <p>Because the trailer frames the data, no per-chunk parity flag is needed and the body can be produced as bytes
+ * arrive. At most 7 characters are buffered between writes. Use {@link DecompressingInputStream} to read it back.</p>
+ * <p>{@link #flush()} flushes the underlying stream, but can't flush an incomplete group of 8 characters. The tail and
+ * trailer are written by {@link #finish()} (or {@link #close()}).</p>
+ * <p>If the compressor throws exceptions on unsupported characters, they are thrown by {@code write} (or by
+ * {@link #finish()} for the last characters). The stream is then failed, as its characters can no longer match the
+ * trailer: further calls to {@code write} and {@link #finish()} throw an {@link IOException}, and {@link #close()} only
+ * closes the underlying stream. The same applies if the underlying stream throws. This class is not thread-safe.</p>
+ * @author Jean Dannemann Carone
+ * @see DecompressingInputStream
+ */
+public class CompressingOutputStream extends FilterOutputStream {
+
+	/**
+	 * Number of characters compressed per call to the compressor (multiple of 8).
+	 */
+	private static final int CHUNK = 8192;
+
+	private final AsciiCompressor compressor;
+	private final int bits;
+	private final byte[] pending = new byte[8];
+	private final byte[] buffer;
+
+	private int pendingLen;
+	private long count;
+	private boolean finished;
+	private boolean failed;
+
+	/**
+	 * @param out The stream receiving the compressed data.
+	 * @param compressor Compressor defining the charset and the number of bits per character.
+	 * @author Jean Dannemann Carone
+	 */
+	public CompressingOutputStream(OutputStream out, AsciiCompressor compressor) {
+		super(out);
+		this.compressor = compressor;
+		this.bits = compressor.getBitsPerCharacter();
+		this.buffer = new byte[Math.max(compressor.compressedLength(CHUNK), Long.BYTES)];
+	}
+
+	@Override
+	public void write(final int b) throws IOException {
+		ensureOpen();
+		pending[pendingLen++] = (byte) b;
+		count++;
+
+		if (pendingLen == 8) {
+			pendingLen = 0;
+			writeGroups(pending, 0, 8);
+		}
+	}
+
+	@Override
+	public void write(final byte[] b, int off, int len) throws IOException {
+		checkFromIndexSize(off, len, b.length);
+		ensureOpen();
+		count += len;
+
+		if (pendingLen != 0) {
+			final int fill = Math.min(8 - pendingLen, len);
+			System.arraycopy(b, off, pending, pendingLen, fill);
+			pendingLen += fill;
+			off += fill;
+			len -= fill;
+
+			if (pendingLen < 8)
+				return;
+
+			writeGroups(pending, 0, 8);
+			pendingLen = 0;
+		}
+
+		for (int chunk; (chunk = Math.min(len & ~7, CHUNK)) != 0; off += chunk, len -= chunk)
+			writeGroups(b, off, chunk);
+
+		System.arraycopy(b, off, pending, 0, len);
+		pendingLen = len;
+	}
+
+	/**
+	 * Writes the remaining characters and the trailer, without closing the underlying stream. Nothing else can be
+	 * written afterward.
+	 * @author Jean Dannemann Carone
+	 */
+	public void finish() throws IOException {
+		if (finished)
+			return;
+
+		ensureOpen();
+
+		try {
+			final int tailLen = compressor.compress(pending, 0, pendingLen, buffer, 0);
+			out.write(buffer, 0, tailLen);
+
+			for (int i = 0; i < Long.BYTES; i++)
+				buffer[i] = (byte) (count >>> 56 - (i << 3));
+
+			out.write(buffer, 0, Long.BYTES);
+			out.flush();
+		} catch (RuntimeException | IOException e) {
+			failed = true;
+			throw e;
+		}
+
+		finished = true;
+	}
+
+	/**
+	 * Finishes this stream (unless it failed) and closes the underlying stream.
+	 * @author Jean Dannemann Carone
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			if (!failed)
+				finish();
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * @return Number of characters written so far.
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Compresses a multiple of 8 characters. Its compressed form is byte-aligned and ends with a zero flag byte, which is
+	 * not written. Fails the stream if anything throws.
+	 */
+	private void writeGroups(final byte[] b, final int off, final int len) throws IOException {
+		try {
+			compressor.compress(b, off, len, buffer, 0);
+			out.write(buffer, 0, (len >> 3) * bits);
+		} catch (RuntimeException | IOException e) {
+			failed = true;
+			throw e;
+		}
+	}
+
+	private void ensureOpen() throws IOException {
+		if (failed)
+			throw new IOException("Stream failed: a previous call threw an exception.");
+
+		if (finished)
+			throw new IOException("Stream already finished.");
+	}
+
+}
@@ -0,0 +1,203 @@
+package com.dannemann.stringcompressor.stream;
+
+import com.dannemann.stringcompressor.AsciiCompressor;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static java.util.Objects.checkFromIndexSize;
+
+/**
+ * <p>Reads data written by {@link CompressingOutputStream} and returns the original characters, with constant memory.
+ * The compressor must use the same charset (and number of bits per character) as the one used to write the stream.</p>
+ * <p>Since the tail and trailer can only be told apart from the body at the end of the stream, the last bytes read
+ * from the underlying stream are held back until it is exhausted. The trailer is then checked against the amount of
+ * data actually read, and an {@link IOException} is thrown if the stream is truncated or corrupted.</p>
+ * <p>Mark and reset are not supported. This class is not thread-safe.</p>
+ * @author Jean Dannemann Carone
+ * @see CompressingOutputStream
+ */
+public class DecompressingInputStream extends FilterInputStream {
+
+	/**
+	 * Number of compressed bytes read from the underlying stream at once (not counting held back bytes).
+	 */
+	private static final int CHUNK = 8192;
+
+	private final AsciiCompressor compressor;
+	private final byte[] charset;
+	private final int bits;
+	private final int mask;
+	private final int holdback;
+	private final byte[] raw;
+	private final byte[] decoded;
+
+	private int rawPos;
+	private int rawEnd;
+	private int decodedPos;
+	private int decodedEnd;
+	private long groups;
+	private boolean eof;
+	private boolean finished;
+
+	/**
+	 * @param in The stream providing the compressed data.
+	 * @param compressor Compressor defining the charset and the number of bits per character.
+	 * @author Jean Dannemann Carone
+	 */
+	public DecompressingInputStream(InputStream in, AsciiCompressor compressor) {
+		super(in);
+		this.compressor = compressor;
+		this.charset = compressor.getSupportedCharset();
+		this.bits = compressor.getBitsPerCharacter();
+		this.mask = (1 << bits) - 1;
+		this.holdback = compressor.compressedLength(7) + Long.BYTES;
+		this.raw = new byte[CHUNK + holdback];
+		this.decoded = new byte[CHUNK / bits * 8];
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (decodedPos == decodedEnd && !decode())
+			return -1;
+
+		return decoded[decodedPos++] & 0xFF;
+	}
+
+	@Override
+	public int read(final byte[] b, final int off, final int len) throws IOException {
+		checkFromIndexSize(off, len, b.length);
+
+		if (len == 0)
+			return 0;
+
+		if (decodedPos == decodedEnd && !decode())
+			return -1;
+
+		final int n = Math.min(len, decodedEnd - decodedPos);
+		System.arraycopy(decoded, decodedPos, b, off, n);
+		decodedPos += n;
+
+		return n;
+	}
+
+	@Override
+	public long skip(final long n) throws IOException {
+		long skipped = 0;
+
+		while (skipped < n && (decodedPos != decodedEnd || decode())) {
+			final int step = (int) Math.min(n - skipped, decodedEnd - decodedPos);
+			decodedPos += step;
+			skipped += step;
+		}
+
+		return skipped;
+	}
+
+	/**
+	 * @return Number of characters that can be read without blocking (already decompressed).
+	 */
+	@Override
+	public int available() {
+		return decodedEnd - decodedPos;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	@Override
+	public void mark(final int readLimit) {
+	}
+
+	@Override
+	public void reset() throws IOException {
+		throw new IOException("Mark/reset not supported.");
+	}
+
+	/**
+	 * Refills {@link #decoded} with the next characters.
+	 * @return {@code false} if there are no more characters.
+	 */
+	private boolean decode() throws IOException {
+		decodedPos = decodedEnd = 0;
+
+		while (!eof) {
+			final int available = (rawEnd - rawPos - holdback) / bits;
+
+			if (available > 0) {
+				final int n = Math.min(available, decoded.length >> 3);
+				unpack(n);
+				decodedEnd = n << 3;
+				return true;
+			}
+
+			System.arraycopy(raw, rawPos, raw, 0, rawEnd - rawPos);
+			rawEnd -= rawPos;
+			rawPos = 0;
+
+			final int read = in.read(raw, rawEnd, raw.length - rawEnd);
+
+			if (read < 0)
+				eof = true;
+			else
+				rawEnd += read;
+		}
+
+		if (finished)
+			return false;
+
+		finished = true;
+
+		final int remaining = rawEnd - rawPos;
+
+		if (remaining < Long.BYTES)
+			throw new EOFException("Compressed stream is truncated (trailer missing).");
+
+		long count = 0;
+		for (int i = rawEnd - Long.BYTES; i < rawEnd; i++)
+			count = count << 8 | raw[i] & 0xFF;
+
+		final int tailChars = (int) (count & 7);
+		final int tailBytes = compressor.compressedLength(tailChars);
+		final int bodyBytes = remaining - Long.BYTES - tailBytes;
+
+		if (count < 0 || bodyBytes < 0 || bodyBytes % bits != 0 || groups + bodyBytes / bits != count >>> 3)
+			throw new IOException("Compressed stream is corrupted (length mismatch).");
+
+		final int n = bodyBytes / bits;
+		unpack(n);
+
+		if (compressor.decompressedLength(raw, rawPos, tailBytes) != tailChars)
+			throw new IOException("Compressed stream is corrupted (invalid tail).");
+
+		compressor.decompress(raw, rawPos, tailBytes, decoded, n << 3);
+		rawPos = rawEnd;
+		decodedEnd = (n << 3) + tailChars;
+
+		return decodedEnd != 0;
+	}
+
+	/**
+	 * Unpacks {@code n} groups of 8 characters from {@link #raw} into {@link #decoded}.
+	 */
+	private void unpack(final int n) {
+		int j = 0;
+
+		for (int g = 0; g < n; g++) {
+			long word = 0;
+
+			for (int k = 0; k < bits; k++)
+				word = word << 8 | raw[rawPos++] & 0xFF;
+
+			for (int shift = 7 * bits; shift >= 0; shift -= bits)
+				decoded[j++] = charset[(int) (word >>> shift) & mask];
+		}
+
+		groups += n;
+	}
+
+}
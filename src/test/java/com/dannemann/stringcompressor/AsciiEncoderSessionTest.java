@@ -0,0 +1,137 @@
+package com.dannemann.stringcompressor;
+
+import com.dannemann.stringcompressor.exception.CharacterNotSupportedException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static com.dannemann.stringcompressor.FiveBitAsciiCompressor.DEFAULT_5BIT_CHARSET;
+import static com.dannemann.stringcompressor.FourBitAsciiCompressor.DEFAULT_4BIT_CHARSET;
+import static com.dannemann.stringcompressor.SixBitAsciiCompressor.DEFAULT_6BIT_CHARSET;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author Jean Dannemann Carone
+ */
+class AsciiEncoderSessionTest extends BaseTest {
+
+	@Test
+	void matchesCompressTest() {
+		matchesCompress(new FourBitAsciiCompressor(true), DEFAULT_4BIT_CHARSET);
+		matchesCompress(new FiveBitAsciiCompressor(true), DEFAULT_5BIT_CHARSET);
+		matchesCompress(new SixBitAsciiCompressor(true), DEFAULT_6BIT_CHARSET);
+	}
+
+	@Test
+	void invalidCharLenientTest() {
+		// Unsupported characters are output exactly as compress(byte[]) does.
+		final byte[] charset = Arrays.copyOf(DEFAULT_6BIT_CHARSET, DEFAULT_6BIT_CHARSET.length + 2);
+		charset[charset.length - 2] = 'a';
+		charset[charset.length - 1] = (byte) 'Ç';
+		matchesCompress(new SixBitAsciiCompressor(), charset);
+		matchesCompress(new FourBitAsciiCompressor(), "0123456789abc".getBytes());
+	}
+
+	@Test
+	void invalidCharStrictTest() {
+		final AsciiEncoderSession session = new FiveBitAsciiCompressor(true).newSession();
+		final ByteBuffer out = ByteBuffer.allocate(100);
+		session.feed(AsciiCompressor.getBytes("HELLO"), 0, 5, out);
+		final byte[] invalid = AsciiCompressor.getBytes(" WORLD! AGAIN");
+		assertThrows(CharacterNotSupportedException.class, () -> session.feed(invalid, 0, invalid.length, out));
+	}
+
+	@Test
+	void bufferOverflowTest() {
+		final SixBitAsciiCompressor compressor = new SixBitAsciiCompressor();
+		final AsciiEncoderSession session = compressor.newSession();
+		final byte[] str = generateRandomStringBytes(21, DEFAULT_6BIT_CHARSET);
+		final ByteBuffer out = ByteBuffer.allocate(compressor.compressedLength(str.length));
+
+		assertEquals(0, session.feed(str, 0, 5, out));
+		assertThrows(BufferOverflowException.class, () -> session.feed(str, 5, 16, ByteBuffer.allocate(11)));
+		assertEquals(5, session.getCount());
+		assertEquals(12, session.feed(str, 5, 16, out));
+		assertThrows(BufferOverflowException.class, () -> session.finish(ByteBuffer.allocate(4)));
+		assertEquals(5, session.finish(out));
+		assertEquals(0, out.remaining());
+		assertArrayEquals(compressor.compress(str), out.array());
+	}
+
+	@Test
+	void noWritePastOutputTest() {
+		final SixBitAsciiCompressor compressor = new SixBitAsciiCompressor();
+		final byte[] str = generateRandomStringBytes(1000, DEFAULT_6BIT_CHARSET);
+
+		for (final boolean direct : new boolean[]{false, true}) {
+			final AsciiEncoderSession session = compressor.newSession();
+			final ByteBuffer out = direct ? ByteBuffer.allocateDirect(1000) : ByteBuffer.allocate(1000);
+			for (int i = 0; i < out.capacity(); i++)
+				out.put(i, (byte) 0x55);
+
+			for (final int len : new int[]{3, 5, 8, 16, 7, 400, 1})
+				assertEquals(session.feedLength(len), session.feed(str, 0, len, out));
+			for (int i = out.position(); i < out.capacity(); i++)
+				assertEquals(0x55, out.get(i)); // The flag byte of the compressed groups is not written.
+
+			final ByteBuffer exact = direct ? ByteBuffer.allocateDirect(60) : ByteBuffer.allocate(60);
+			assertEquals(60, session.feed(str, 0, 80, exact)); // Exactly the groups: no room for a flag byte.
+			assertEquals(0, exact.remaining());
+		}
+	}
+
+	@Test
+	void resetTest() {
+		final FourBitAsciiCompressor compressor = new FourBitAsciiCompressor();
+		final AsciiEncoderSession session = compressor.newSession();
+		final byte[] str = AsciiCompressor.getBytes("0123456789");
+		final ByteBuffer out = ByteBuffer.allocate(100);
+
+		session.feed(str, 0, 7, out);
+		session.reset();
+		assertEquals(0, session.getCount());
+		assertEquals(0, session.finish(out));
+
+		session.feed(str, 0, str.length, out);
+		session.finish(out);
+		session.feed(str, 0, str.length, out);
+		session.finish(out);
+		final byte[] compressed = compressor.compress(str);
+		assertArrayEquals(compressed, Arrays.copyOfRange(out.array(), 0, compressed.length));
+		assertArrayEquals(compressed, Arrays.copyOfRange(out.array(), compressed.length, out.position()));
+	}
+
+	private static void matchesCompress(final AsciiCompressor compressor, final byte[] charset) {
+		final AsciiEncoderSession session = compressor.newSession();
+
+		for (int i = 0; i < 3000; i++) {
+			final byte[] str = generateRandomStringBytes(RANDOM.nextInt(i < 1500 ? 50 : 30000), charset);
+			final int compressedLen = compressor.compressedLength(str.length);
+			// Heap buffers with no spare room, heap buffers with an offset, and direct buffers.
+			final ByteBuffer out = switch (i % 3) {
+				case 0 -> ByteBuffer.allocate(compressedLen);
+				case 1 -> ByteBuffer.allocate(compressedLen + 10).position(7).slice().limit(compressedLen);
+				default -> ByteBuffer.allocateDirect(compressedLen);
+			};
+
+			for (int off = 0, len; off < str.length; off += len) {
+				len = Math.min(str.length - off, RANDOM.nextInt(i < 1500 ? 10 : 10000));
+				final int expected = session.feedLength(len);
+				assertEquals(expected, session.feed(str, off, len, out));
+			}
+
+			assertEquals(str.length, session.getCount());
+			session.finish(out);
+			assertEquals(0, out.remaining());
+
+			final byte[] result = new byte[compressedLen];
+			out.flip().get(result);
+			assertArrayEquals(compressor.compress(str), result);
+		}
+	}
+
+}
@@ -3,6 +3,8 @@ package com.dannemann.stringcompressor;
 import com.dannemann.stringcompressor.exception.CharacterNotSupportedException;
 import org.junit.jupiter.api.Test;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import static com.dannemann.stringcompressor.AsciiCompressor.getBytes;
@@ -13,6 +15,7 @@ import static java.nio.charset.StandardCharsets.ISO_8859_1;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * @author Jean Dannemann Carone
@@ -33,8 +36,8 @@ class FiveBitAsciiCompressorTest extends BaseTest {
 
 		assertEquals("HELLO-COMPRESSOR", AsciiCompressor.getString(decompressed));
 
-		// If preserveOriginal is false, this will fail because inputStr has been modified.
-//		assertArrayEquals(inputStr, decompressed);
+		// The input is never modified by the compressor.
+		assertArrayEquals(inputStr, decompressed);
 	}
 
 	@Test
@@ -91,6 +94,45 @@ class FiveBitAsciiCompressorTest extends BaseTest {
 		assertEquals("Character '9' with code point 57 is not defined in the supported characters array. Source string is (maybe incomplete): \"9\"", e.getMessage());
 	}
 
+	@Test
+	void invalidCharInLongStringTest() {
+		// Strict mode only locates the character after the whole range was mapped. Makes sure the first one is reported.
+		final FiveBitAsciiCompressor compressor = new FiveBitAsciiCompressor(true, true);
+		for (int i = 0; i <= 10000; i++) {
+			final byte[] str = generateRandomStringBytes(1 + RANDOM.nextInt(5000), DEFAULT_5BIT_CHARSET);
+			final int first = RANDOM.nextInt(str.length);
+			str[first] = '|';
+			if (first + 1 < str.length)
+				str[first + 1 + RANDOM.nextInt(str.length - first - 1)] = (byte) 'Ç';
+			final byte[] original = str.clone();
+			CharacterNotSupportedException e = assertThrows(CharacterNotSupportedException.class, () -> compressor.compress(str));
+			assertTrue(e.getMessage().startsWith("Character '|' with code point 124 is not defined"));
+			assertArrayEquals(original, str);
+		}
+	}
+
+	@Test
+	void encodeRangeTest() {
+		final FiveBitAsciiCompressor strict = new FiveBitAsciiCompressor(true, false);
+		final FiveBitAsciiCompressor lenient = new FiveBitAsciiCompressor();
+		for (int i = 0; i <= 10000; i++) {
+			final byte[] str = generateRandomStringBytes(RANDOM.nextInt(200), DEFAULT_5BIT_CHARSET);
+			final int off = str.length == 0 ? 0 : RANDOM.nextInt(str.length);
+			final int len = RANDOM.nextInt(str.length - off + 1);
+			final byte[] encoded = str.clone();
+			strict.encode(encoded, off, len);
+			for (int j = 0; j < str.length; j++)
+				assertEquals(j < off || j >= off + len ? str[j] : lenient.encode(str[j]), encoded[j]);
+			if (len != 0) {
+				// Strict mode checks the range before mapping it, so a failure leaves it untouched.
+				str[off + RANDOM.nextInt(len)] = (byte) (RANDOM.nextBoolean() ? '|' : 'Ç');
+				final byte[] original = str.clone();
+				assertThrows(CharacterNotSupportedException.class, () -> strict.encode(str, off, len));
+				assertArrayEquals(original, str);
+			}
+		}
+	}
+
 	@Test
 	void compressDecompressSmallStringTest() {
 		final FiveBitAsciiCompressor compressor = new FiveBitAsciiCompressor(true, true);
@@ -178,6 +220,108 @@ class FiveBitAsciiCompressorTest extends BaseTest {
 			}
 	}
 
+	@Test
+	void compressDecompressRangeTest() {
+		final FiveBitAsciiCompressor compressor = new FiveBitAsciiCompressor(true, true);
+		for (int length = 0; length <= 100; length++)
+			for (int i = 0; i <= 10000; i++) {
+				final byte[] str = generateRandomStringBytes(length, DEFAULT_5BIT_CHARSET);
+				final int off = RANDOM.nextInt(10);
+				final byte[] src = new byte[off + length + RANDOM.nextInt(10)];
+				System.arraycopy(str, 0, src, off, length);
+				final int dstOff = RANDOM.nextInt(10);
+				final byte[] dst = new byte[dstOff + compressor.compressedLength(length) + RANDOM.nextInt(10)];
+				RANDOM.nextBytes(dst); // Reused buffers are not zeroed.
+				final int cLen = compressor.compress(src, off, length, dst, dstOff);
+				assertArrayEquals(compressor.compress(str), Arrays.copyOfRange(dst, dstOff, dstOff + cLen));
+				final byte[] decompressed = new byte[dstOff + compressor.decompressedLength(dst, dstOff, cLen)];
+				final int dLen = compressor.decompress(dst, dstOff, cLen, decompressed, dstOff);
+				assertArrayEquals(str, Arrays.copyOfRange(decompressed, dstOff, dstOff + dLen));
+			}
+	}
+
+	@Test
+	void compressLeavesInputUntouchedTest() {
+		// Characters are mapped while being packed, so neither the input nor the bytes around the destination range are touched.
+		final FiveBitAsciiCompressor compressor = new FiveBitAsciiCompressor();
+		for (int length = 0; length <= 1000; length++)
+			for (int i = 0; i <= 100; i++) {
+				final byte[] str = generateRandomStringBytes(length, DEFAULT_5BIT_CHARSET);
+				final byte[] original = str.clone();
+				final byte[] dst = new byte[compressor.compressedLength(length) + 200];
+				Arrays.fill(dst, (byte) 0x55);
+				final int cLen = compressor.compress(str, 0, length, dst, 100);
+				assertArrayEquals(original, str);
+				assertArrayEquals(original, compressor.decompress(Arrays.copyOfRange(dst, 100, 100 + cLen)));
+				for (int j = 0; j < 100; j++)
+					assertEquals(0x55, dst[j]);
+				for (int j = 100 + cLen; j < dst.length; j++)
+					assertEquals(0x55, dst[j]);
+			}
+	}
+
+	@Test
+	void rangeOutOfBoundsTest() {
+		final FiveBitAsciiCompressor compressor = new FiveBitAsciiCompressor();
+		final byte[] compressed = compressor.compress(new byte[]{'A', 'A', 'A'});
+		assertThrows(IndexOutOfBoundsException.class, () -> compressor.compress(new byte[4], 2, 3, new byte[10], 0));
+		assertThrows(IndexOutOfBoundsException.class, () -> compressor.compress(new byte[4], -1, 2, new byte[10], 0));
+		assertThrows(IndexOutOfBoundsException.class, () -> compressor.compress(new byte[4], 0, 4, new byte[compressor.compressedLength(4) - 1], 0));
+		assertThrows(IndexOutOfBoundsException.class, () -> compressor.decompress(compressed, 1, compressed.length, new byte[10], 0));
+		assertThrows(IndexOutOfBoundsException.class, () -> compressor.decompress(compressed, 0, compressed.length, new byte[2], 0));
+	}
+
+	@Test
+	void compressDecompressByteBufferTest() {
+		final FiveBitAsciiCompressor compressor = new FiveBitAsciiCompressor(true, false);
+		for (int length = 0; length <= 100; length++)
+			for (int i = 0; i <= 10000; i++) {
+				final byte[] str = generateRandomStringBytes(length, DEFAULT_5BIT_CHARSET);
+				final int pos = RANDOM.nextInt(10);
+				final boolean direct = RANDOM.nextBoolean();
+				final ByteBuffer in = (direct ? ByteBuffer.allocateDirect(pos + length) : ByteBuffer.allocate(pos + length)).position(pos);
+				in.put(str).position(pos);
+				final ByteBuffer readOnlyIn = in.asReadOnlyBuffer();
+				final int capacity = pos + compressor.compressedLength(length);
+				final ByteBuffer out = direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+				out.position(pos);
+				final int cLen = compressor.compress(readOnlyIn, out);
+				assertEquals(pos + length, readOnlyIn.position());
+				assertEquals(pos + cLen, out.position());
+				final byte[] compressed = new byte[cLen];
+				out.get(pos, compressed);
+				assertArrayEquals(compressor.compress(str.clone()), compressed);
+				final ByteBuffer decompressed = ByteBuffer.allocate(length);
+				assertEquals(length, compressor.decompress(out.flip().position(pos), decompressed));
+				assertArrayEquals(str, decompressed.array());
+			}
+	}
+
+	@Test
+	void byteBufferOverflowTest() {
+		final FiveBitAsciiCompressor compressor = new FiveBitAsciiCompressor();
+		final ByteBuffer in = ByteBuffer.wrap(generateRandomStringBytes(10, DEFAULT_5BIT_CHARSET));
+		final ByteBuffer out = ByteBuffer.allocate(compressor.compressedLength(10) - 1);
+		assertThrows(BufferOverflowException.class, () -> compressor.compress(in, out));
+		assertEquals(0, in.position());
+		assertEquals(0, out.position());
+	}
+
+	@Test
+	void wordAtATimeMatchesByteAtATimeTest() {
+		// The ByteBuffer path packs one character at a time and serves as reference for the byte[] word kernel.
+		final FiveBitAsciiCompressor compressor = new FiveBitAsciiCompressor(false, true);
+		for (int length = 0; length <= 100; length++)
+			for (int i = 0; i <= 10000; i++) {
+				final byte[] str = generateRandomStringBytes(length, DEFAULT_5BIT_CHARSET);
+				if (length > 0 && RANDOM.nextInt(4) == 0)
+					str[RANDOM.nextInt(length)] = (byte) RANDOM.nextInt(256); // Possibly unsupported (lenient mode).
+				final ByteBuffer reference = ByteBuffer.allocate(compressor.compressedLength(length));
+				compressor.compress(ByteBuffer.wrap(str), reference);
+				assertArrayEquals(reference.array(), compressor.compress(str));
+			}
+	}
+
 	@Test
 	void compressionRateTest() {
 		final FiveBitAsciiCompressor compressor = new FiveBitAsciiCompressor(true);
@@ -0,0 +1,151 @@
+package com.dannemann.stringcompressor.arena;
+
+import com.dannemann.stringcompressor.AsciiCompressor;
+import com.dannemann.stringcompressor.BaseTest;
+import com.dannemann.stringcompressor.FiveBitAsciiCompressor;
+import com.dannemann.stringcompressor.FourBitAsciiCompressor;
+import com.dannemann.stringcompressor.SixBitAsciiCompressor;
+import com.dannemann.stringcompressor.bulk.ManagedBulkCompressor;
+import com.dannemann.stringcompressor.exception.CharacterNotSupportedException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.dannemann.stringcompressor.AsciiCompressor.getBytes;
+import static com.dannemann.stringcompressor.AsciiCompressor.getString;
+import static com.dannemann.stringcompressor.FiveBitAsciiCompressor.DEFAULT_5BIT_CHARSET;
+import static com.dannemann.stringcompressor.FourBitAsciiCompressor.DEFAULT_4BIT_CHARSET;
+import static com.dannemann.stringcompressor.SixBitAsciiCompressor.DEFAULT_6BIT_CHARSET;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author Jean Dannemann Carone
+ */
+class CompressedStringArenaTest extends BaseTest {
+
+	@Test
+	void addAndGetTest() {
+		for (final boolean offHeap : new boolean[]{false, true}) {
+			addAndGet(new FourBitAsciiCompressor(true, true), DEFAULT_4BIT_CHARSET, new CompressedStringArena(offHeap, 5000));
+			addAndGet(new FiveBitAsciiCompressor(true, true), DEFAULT_5BIT_CHARSET, new CompressedStringArena(offHeap, 5000));
+			addAndGet(new SixBitAsciiCompressor(true, true), DEFAULT_6BIT_CHARSET, new CompressedStringArena(offHeap));
+		}
+	}
+
+	@Test
+	void managedBulkCompressTest() {
+		final SixBitAsciiCompressor compressor = new SixBitAsciiCompressor(true);
+		final CompressedStringArena arena = new CompressedStringArena(true, 100_000);
+		final ManagedBulkCompressor managed = new ManagedBulkCompressor(compressor, arena);
+		final List<byte[]> fullSource = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			final byte[][] batch = generateRandomByteArray(RANDOM.nextInt(1, 1000), 0, 100, DEFAULT_6BIT_CHARSET);
+			fullSource.addAll(List.of(batch));
+			final List<Integer> called = new ArrayList<>();
+			managed.compressAndAddAll(batch, (k, string, compressed) -> {
+				synchronized (called) {
+					called.add(k);
+				}
+				assertArrayEquals(string, compressor.decompress(compressed));
+			});
+			assertEquals(batch.length, called.size());
+			assertNull(batch[0]); // Released (preserveOriginal is false).
+		}
+		assertEquals(fullSource.size(), arena.size());
+		assertEquals(fullSource.size(), managed.getCurrentIndex());
+		for (int i = 0; i < arena.size(); i++)
+			assertArrayEquals(fullSource.get(i), arena.decompress(i, compressor));
+	}
+
+	@Test
+	void failedBatchTest() {
+		final FiveBitAsciiCompressor compressor = new FiveBitAsciiCompressor(true, true);
+		for (final boolean offHeap : new boolean[]{false, true}) {
+			final CompressedStringArena arena = new CompressedStringArena(offHeap, 1000);
+			final byte[][] valid = generateRandomByteArray(500, 0, 50, DEFAULT_5BIT_CHARSET);
+			arena.addAll(compressor, valid);
+			final long byteSize = arena.byteSize();
+
+			final byte[][] invalid = generateRandomByteArray(500, 1, 50, DEFAULT_5BIT_CHARSET);
+			invalid[250][0] = '!';
+			assertThrows(CharacterNotSupportedException.class, () -> arena.addAll(compressor, invalid));
+			assertEquals(valid.length, arena.size());
+			assertEquals(byteSize, arena.byteSize());
+
+			final byte[][] more = generateRandomByteArray(500, 0, 50, DEFAULT_5BIT_CHARSET);
+			assertEquals(valid.length, arena.addAll(compressor, more));
+			for (int i = 0; i < valid.length; i++) {
+				assertArrayEquals(valid[i], arena.decompress(i, compressor));
+				assertArrayEquals(more[i], arena.decompress(valid.length + i, compressor));
+			}
+		}
+	}
+
+	@Test
+	void failedLargeBatchTest() throws Exception {
+		final FiveBitAsciiCompressor compressor = new FiveBitAsciiCompressor(true, true);
+		final CompressedStringArena arena = new CompressedStringArena(false, 1 << 16);
+		final String[] invalid = generateRandomStringArray(200_000, 1, 20, DEFAULT_5BIT_CHARSET);
+		invalid[invalid.length / 2] = "!";
+		assertThrows(CharacterNotSupportedException.class, () -> arena.addAll(compressor, invalid));
+		assertEquals(0, arena.size());
+
+		final String[] more = generateRandomStringArray(200_000, 1, 20, DEFAULT_5BIT_CHARSET);
+		arena.addAll(compressor, more); // Reuses the rolled-back space.
+		Thread.sleep(200); // Late writes of the failed batch would show up by now.
+		for (int i = 0; i < more.length; i++)
+			assertEquals(more[i], getString(arena.decompress(i, compressor)));
+	}
+
+	@Test
+	void limitsTest() {
+		assertThrows(IllegalArgumentException.class, () -> new CompressedStringArena(false, 0));
+		final CompressedStringArena arena = new CompressedStringArena(false, 10);
+		assertThrows(IllegalArgumentException.class, () -> arena.add(new byte[11]));
+		assertEquals(0, arena.size());
+		assertEquals(0, arena.add(new byte[10]));
+		assertEquals(1, arena.add(new byte[0]));
+		assertEquals(2, arena.add(new byte[1]));
+		assertEquals(10, arena.length(0));
+		assertEquals(0, arena.length(1));
+		assertEquals(1, arena.length(2));
+		assertThrows(IndexOutOfBoundsException.class, () -> arena.get(3));
+		assertThrows(IndexOutOfBoundsException.class, () -> arena.get(-1));
+
+		final CompressedStringArena empties = new CompressedStringArena(true);
+		assertEquals(0, empties.add(new byte[0]));
+		assertEquals(1, empties.add(new SixBitAsciiCompressor(), new byte[0]));
+		assertArrayEquals(new byte[0], empties.get(0));
+		assertArrayEquals(new byte[0], empties.decompress(1, new SixBitAsciiCompressor()));
+	}
+
+	private static void addAndGet(final AsciiCompressor compressor, final byte[] charset, final CompressedStringArena arena) {
+		final List<byte[]> strings = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			final byte[][] batch = generateRandomByteArray(RANDOM.nextInt(1, 2000), 0, 200, charset);
+			arena.addAll(compressor, batch);
+			strings.addAll(List.of(batch));
+			final byte[] single = generateRandomStringBytes(RANDOM.nextInt(200), charset);
+			arena.add(compressor, single);
+			strings.add(single);
+			final String string = AsciiCompressor.getString(generateRandomStringBytes(RANDOM.nextInt(200), charset));
+			arena.add(compressor.compress(string));
+			strings.add(getBytes(string));
+		}
+		assertEquals(strings.size(), arena.size());
+		long byteSize = 0;
+		for (int i = 0; i < strings.size(); i++) {
+			final byte[] compressed = compressor.compress(strings.get(i));
+			byteSize += compressed.length;
+			assertEquals(compressed.length, arena.length(i));
+			assertArrayEquals(compressed, arena.get(i));
+			assertArrayEquals(strings.get(i), arena.decompress(i, compressor));
+		}
+		assertEquals(byteSize, arena.byteSize());
+	}
+
+}
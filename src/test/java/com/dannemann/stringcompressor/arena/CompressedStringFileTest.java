@@ -0,0 +1,216 @@
+package com.dannemann.stringcompressor.arena;
+
+import com.dannemann.stringcompressor.AsciiCompressor;
+import com.dannemann.stringcompressor.BaseTest;
+import com.dannemann.stringcompressor.FiveBitAsciiCompressor;
+import com.dannemann.stringcompressor.FourBitAsciiCompressor;
+import com.dannemann.stringcompressor.SixBitAsciiCompressor;
+import com.dannemann.stringcompressor.search.BaseBinarySearch;
+import com.dannemann.stringcompressor.search.FourBitBinarySearch;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static com.dannemann.stringcompressor.AsciiCompressor.getBytes;
+import static com.dannemann.stringcompressor.FiveBitAsciiCompressor.DEFAULT_5BIT_CHARSET;
+import static com.dannemann.stringcompressor.FourBitAsciiCompressor.DEFAULT_4BIT_CHARSET;
+import static com.dannemann.stringcompressor.SixBitAsciiCompressor.DEFAULT_6BIT_CHARSET;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Jean Dannemann Carone
+ */
+class CompressedStringFileTest extends BaseTest {
+
+	@Test
+	void writeAndOpenTest() throws IOException {
+		final byte[] charset = "0123456789ABCDEF".getBytes();
+		writeAndOpen(new FourBitAsciiCompressor(charset), charset, new CompressedStringArena(false, 3000));
+		writeAndOpen(new FiveBitAsciiCompressor(), DEFAULT_5BIT_CHARSET, new CompressedStringArena(true, 5000));
+		writeAndOpen(new SixBitAsciiCompressor(), DEFAULT_6BIT_CHARSET, new CompressedStringArena());
+	}
+
+	@Test
+	void byteArrayMatchesArenaTest() throws IOException {
+		final FiveBitAsciiCompressor compressor = new FiveBitAsciiCompressor();
+		final byte[][] data = new byte[3000][];
+		final byte[][] strings = generateRandomByteArray(2000, 0, 100, DEFAULT_5BIT_CHARSET);
+		for (int i = 0; i < strings.length; i++)
+			data[i] = compressor.compress(strings[i]); // Trailing nulls are unused slots.
+		final CompressedStringArena arena = new CompressedStringArena();
+		arena.addAll(compressor, strings);
+
+		final Path fromArray = Files.createTempFile("jsc", ".bin");
+		final Path fromArena = Files.createTempFile("jsc", ".bin");
+		try {
+			CompressedStringFile.write(data, compressor, fromArray);
+			CompressedStringFile.write(arena, compressor, fromArena);
+			assertArrayEquals(Files.readAllBytes(fromArena), Files.readAllBytes(fromArray));
+			assertEquals(strings.length, CompressedStringFile.open(fromArray).getArena().size());
+		} finally {
+			Files.delete(fromArray);
+			Files.delete(fromArena);
+		}
+	}
+
+	@Test
+	void emptyTest() throws IOException {
+		final Path path = Files.createTempFile("jsc", ".bin");
+		try {
+			CompressedStringFile.write(new CompressedStringArena(), new FourBitAsciiCompressor(), path);
+			final CompressedStringFile file = CompressedStringFile.open(path);
+			assertEquals(0, file.getArena().size());
+			assertEquals(-1, file.newBinarySearch(false).search(getBytes("1")));
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	@Test
+	void invalidFileTest() throws IOException {
+		final Path path = Files.createTempFile("jsc", ".bin");
+		try {
+			final CompressedStringArena arena = new CompressedStringArena();
+			arena.addAll(new SixBitAsciiCompressor(), generateRandomByteArray(100, 1, 50, DEFAULT_6BIT_CHARSET));
+			CompressedStringFile.write(arena, new SixBitAsciiCompressor(), path);
+			final byte[] bytes = Files.readAllBytes(path);
+
+			Files.write(path, Arrays.copyOf(bytes, bytes.length - 1)); // Truncated.
+			assertThrows(IOException.class, () -> CompressedStringFile.open(path));
+			Files.write(path, Arrays.copyOf(bytes, 100));
+			assertThrows(IOException.class, () -> CompressedStringFile.open(path));
+
+			final byte[] badMagic = bytes.clone();
+			badMagic[0] = 'X';
+			Files.write(path, badMagic);
+			assertThrows(IOException.class, () -> CompressedStringFile.open(path));
+
+			final byte[] badBits = bytes.clone();
+			badBits[11] = 7;
+			Files.write(path, badBits);
+			assertThrows(IOException.class, () -> CompressedStringFile.open(path));
+
+			// Page counts whose table size overflows an int, or that are just too large for the file.
+			for (final int pageCount : new int[]{(1 << 28) + 1, (1 << 27) - 1, 1 << 20}) {
+				final ByteBuffer manyPages = ByteBuffer.wrap(bytes.clone());
+				manyPages.putInt(16, Integer.MAX_VALUE).putInt(20, pageCount); // Count, then page count.
+				Files.write(path, manyPages.array());
+				assertThrows(IOException.class, () -> CompressedStringFile.open(path));
+			}
+
+			final int endsOffset = 128 + 16; // One page.
+			final byte[] endPastPage = bytes.clone();
+			endPastPage[endsOffset + 4 * 50] = 0x7F;
+			Files.write(path, endPastPage);
+			assertTrue(assertThrows(IOException.class, () -> CompressedStringFile.open(path)).getMessage().contains("string 50"));
+
+			final byte[] shortPage = bytes.clone();
+			shortPage[endsOffset + 4 * 99 + 3]--; // Last end before the end of the page.
+			Files.write(path, shortPage);
+			assertThrows(IOException.class, () -> CompressedStringFile.open(path));
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	@Test
+	void replaceTest() throws IOException {
+		final SixBitAsciiCompressor compressor = new SixBitAsciiCompressor();
+		final Path dir = Files.createTempDirectory("jsc");
+		final Path path = dir.resolve("strings.bin");
+		final byte[][] first = {compressor.compress(getBytes("AAA")), compressor.compress(getBytes("BBB"))};
+		final byte[][] second = {compressor.compress(getBytes("CCC"))};
+
+		try {
+			CompressedStringFile.write(first, compressor, path);
+			try (CompressedStringFile old = CompressedStringFile.open(path)) {
+				CompressedStringFile.write(second, compressor, path);
+				assertArrayEquals(first[1], old.getArena().get(1)); // The mapped file was replaced, not overwritten.
+
+				try (CompressedStringFile file = CompressedStringFile.open(path)) {
+					assertEquals(1, file.getArena().size());
+					assertArrayEquals(second[0], file.getArena().get(0));
+				}
+			}
+
+			assertThrows(IOException.class, () -> CompressedStringFile.write(first, compressor, dir.resolve("missing").resolve("strings.bin")));
+			try (Stream<Path> files = Files.list(dir)) {
+				assertEquals(List.of(path), files.toList()); // No temporary files left.
+			}
+		} finally {
+			Files.delete(path);
+			Files.delete(dir);
+		}
+	}
+
+	@Test
+	void closeTest() throws IOException {
+		final FourBitAsciiCompressor compressor = new FourBitAsciiCompressor();
+		final CompressedStringArena arena = new CompressedStringArena();
+		arena.addAll(compressor, generateRandomStringArray(100, 0, 20, DEFAULT_4BIT_CHARSET));
+		final Path path = Files.createTempFile("jsc", ".bin");
+
+		try {
+			CompressedStringFile.write(arena, compressor, path);
+			final CompressedStringFile file = CompressedStringFile.open(path);
+			final CompressedStringArena mapped = file.getArena();
+			final BaseBinarySearch search = file.newBinarySearch(false);
+			assertArrayEquals(arena.get(10), mapped.get(10));
+			file.close();
+			file.close();
+
+			assertEquals(100, mapped.size());
+			assertThrows(IllegalStateException.class, () -> mapped.get(10));
+			assertThrows(IllegalStateException.class, () -> mapped.length(10));
+			assertThrows(IllegalStateException.class, () -> mapped.slice(10));
+			assertThrows(IllegalStateException.class, () -> mapped.decompress(10, compressor));
+			assertThrows(IllegalStateException.class, () -> search.search(getBytes("1")));
+			assertThrows(IllegalStateException.class, () -> CompressedStringFile.write(mapped, compressor, path));
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	private void writeAndOpen(final AsciiCompressor compressor, final byte[] charset, final CompressedStringArena arena) throws IOException {
+		final List<String> source = generateRandomUniqueOrderedStringList(20_000, 0, 60, charset);
+		arena.addAll(compressor, source);
+		final Path path = Files.createTempFile("jsc", ".bin");
+
+		try {
+			CompressedStringFile.write(arena, compressor, path);
+			final CompressedStringFile file = CompressedStringFile.open(path);
+			final CompressedStringArena mapped = file.getArena();
+
+			assertTrue(mapped.isReadOnly());
+			assertEquals(compressor.getBitsPerCharacter(), file.getBitsPerCharacter());
+			assertArrayEquals(charset, file.getCharset());
+			assertEquals(arena.size(), mapped.size());
+			assertEquals(arena.byteSize(), mapped.byteSize());
+			assertEquals(arena.maxLength(), mapped.maxLength());
+			assertThrows(UnsupportedOperationException.class, () -> mapped.add(new byte[1]));
+
+			final AsciiCompressor decompressor = file.newCompressor();
+			final BaseBinarySearch search = file.newBinarySearch(false);
+			for (int i = 0; i < source.size(); i++) {
+				assertArrayEquals(arena.get(i), mapped.get(i));
+				assertArrayEquals(getBytes(source.get(i)), mapped.decompress(i, decompressor));
+				assertEquals(i, search.search(getBytes(source.get(i))));
+			}
+
+			if (compressor.getBitsPerCharacter() == 4)
+				assertEquals(FourBitBinarySearch.class, search.getClass());
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+}
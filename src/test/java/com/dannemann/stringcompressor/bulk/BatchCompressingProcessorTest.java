@@ -0,0 +1,118 @@
+package com.dannemann.stringcompressor.bulk;
+
+import com.dannemann.stringcompressor.BaseTest;
+import com.dannemann.stringcompressor.FourBitAsciiCompressor;
+import com.dannemann.stringcompressor.SixBitAsciiCompressor;
+import com.dannemann.stringcompressor.bulk.CompressingProcessorTest.Collector;
+import com.dannemann.stringcompressor.bulk.CompressingProcessorTest.CountingPublisher;
+import com.dannemann.stringcompressor.exception.CharacterNotSupportedException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+import static com.dannemann.stringcompressor.AsciiCompressor.getString;
+import static com.dannemann.stringcompressor.FourBitAsciiCompressor.DEFAULT_4BIT_CHARSET;
+import static com.dannemann.stringcompressor.SixBitAsciiCompressor.DEFAULT_6BIT_CHARSET;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Jean Dannemann Carone
+ */
+class BatchCompressingProcessorTest extends BaseTest {
+
+	@Test
+	void orderTest() throws Exception {
+		final ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			for (final boolean custom : new boolean[]{false, true}) {
+				final SixBitAsciiCompressor compressor = new SixBitAsciiCompressor(true, false);
+				final BatchCompressingProcessor processor = custom ?
+					new BatchCompressingProcessor(compressor, executor, 3, 4) : new BatchCompressingProcessor(compressor);
+				final Collector<byte[][]> collector = new Collector<>(Long.MAX_VALUE);
+				final List<String[]> batches = new ArrayList<>();
+				final List<byte[][]> sent = new ArrayList<>();
+
+				try (SubmissionPublisher<byte[][]> upstream = new SubmissionPublisher<>()) {
+					processor.subscribe(collector);
+					upstream.subscribe(processor);
+					for (int b = 0; b < 50; b++) {
+						final String[] batch = generateRandomStringArray(RANDOM.nextInt(0, 3000), 0, 40, DEFAULT_6BIT_CHARSET);
+						batches.add(batch);
+						sent.add(toBytes(batch));
+						upstream.submit(sent.get(b));
+					}
+				}
+
+				collector.done.get(30, TimeUnit.SECONDS);
+				assertEquals(batches.size(), collector.items.size());
+				for (int b = 0; b < batches.size(); b++) {
+					assertEquals(batches.get(b).length, collector.items.get(b).length);
+					for (int i = 0; i < batches.get(b).length; i++) {
+						assertEquals(batches.get(b)[i], getString(compressor.decompress(collector.items.get(b)[i])));
+						assertNull(sent.get(b)[i]); // Released.
+					}
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	void errorTest() throws Exception {
+		final BatchCompressingProcessor processor = new BatchCompressingProcessor(new FourBitAsciiCompressor(true, true));
+		final Collector<byte[][]> collector = new Collector<>(Long.MAX_VALUE);
+		processor.subscribe(collector);
+
+		try (SubmissionPublisher<byte[][]> upstream = new SubmissionPublisher<>()) {
+			upstream.subscribe(processor);
+			final String[] invalid = generateRandomStringArray(5000, 1, 10, DEFAULT_4BIT_CHARSET);
+			invalid[4000] = "a";
+			upstream.submit(toBytes(invalid));
+		}
+
+		final ExecutionException failure = assertThrows(ExecutionException.class, () -> collector.done.get(30, TimeUnit.SECONDS));
+		assertTrue(failure.getCause() instanceof CharacterNotSupportedException);
+		assertTrue(collector.items.isEmpty());
+		assertThrows(NullPointerException.class, () -> processor.onNext(null));
+	}
+
+	@Test
+	void documentedOrderTest() throws Exception {
+		final SixBitAsciiCompressor compressor = new SixBitAsciiCompressor(true, true);
+		final BatchCompressingProcessor processor = new BatchCompressingProcessor(compressor);
+		final List<byte[][]> batches = new ArrayList<>();
+		for (int b = 0; b < 5; b++)
+			batches.add(toBytes(generateRandomStringArray(100, 0, 20, DEFAULT_6BIT_CHARSET)));
+		final CountingPublisher<byte[][]> upstream = new CountingPublisher<>(batches);
+		upstream.subscribe(processor); // Before any subscriber: nothing is requested yet.
+		assertEquals(0, upstream.requested.get());
+
+		final Collector<byte[][]> collector = new Collector<>(Long.MAX_VALUE);
+		processor.subscribe(collector);
+		collector.done.get(30, TimeUnit.SECONDS);
+		assertEquals(5, collector.items.size());
+		for (int b = 0; b < 5; b++)
+			for (int i = 0; i < 100; i++)
+				assertArrayEquals(batches.get(b)[i], compressor.decompress(collector.items.get(b)[i]));
+	}
+
+	private static byte[][] toBytes(final String[] strings) {
+		final byte[][] bytes = new byte[strings.length][];
+		for (int i = 0; i < strings.length; i++)
+			bytes[i] = strings[i].getBytes(ISO_8859_1);
+		return bytes;
+	}
+
+}
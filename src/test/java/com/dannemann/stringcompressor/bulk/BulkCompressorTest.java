@@ -4,19 +4,35 @@ import com.dannemann.stringcompressor.BaseTest;
 import com.dannemann.stringcompressor.FiveBitAsciiCompressor;
 import com.dannemann.stringcompressor.FourBitAsciiCompressor;
 import com.dannemann.stringcompressor.SixBitAsciiCompressor;
+import com.dannemann.stringcompressor.exception.CharacterNotSupportedException;
 import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 import static com.dannemann.stringcompressor.AsciiCompressor.getString;
 import static com.dannemann.stringcompressor.FiveBitAsciiCompressor.DEFAULT_5BIT_CHARSET;
 import static com.dannemann.stringcompressor.FourBitAsciiCompressor.DEFAULT_4BIT_CHARSET;
 import static com.dannemann.stringcompressor.SixBitAsciiCompressor.DEFAULT_6BIT_CHARSET;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * @author Jean Dannemann Carone
@@ -101,4 +117,191 @@ class BulkCompressorTest extends BaseTest {
 		}
 	}
 
+	@Test
+	void chunkCallbackTest() {
+		for (final int chunkSize : new int[]{1, 7, 1000, BulkCompressor.DEFAULT_CHUNK_SIZE, Integer.MAX_VALUE}) {
+			final int quantity = RANDOM.nextInt(0, 50_000);
+			final List<String> source = generateRandomStringList(quantity, 0, 20, DEFAULT_5BIT_CHARSET);
+			final List<String> copy = new ArrayList<>(source);
+			final byte[][] destination = new byte[quantity + 5][];
+			final FiveBitAsciiCompressor compressor = new FiveBitAsciiCompressor(true, false); // Releases the source.
+			final BulkCompressor bulk = new BulkCompressor(compressor, destination, chunkSize);
+			final AtomicIntegerArray calls = new AtomicIntegerArray(quantity);
+
+			bulk.bulkCompressChunks(source, 5, (from, to) -> {
+				assertTrue(from < to && to - from <= chunkSize);
+				for (int j = from; j < to; j++) {
+					calls.incrementAndGet(j);
+					assertNotNull(source.get(j)); // Still there during the callback.
+				}
+			});
+
+			for (int j = 0; j < quantity; j++) {
+				assertEquals(1, calls.get(j));
+				assertNull(source.get(j));
+				assertEquals(copy.get(j), getString(compressor.decompress(destination[j + 5])));
+			}
+		}
+	}
+
+	@Test
+	void chunkSizeTest() {
+		assertThrows(IllegalArgumentException.class, () -> new BulkCompressor(new FourBitAsciiCompressor(), new byte[1][], 0));
+		assertEquals(BulkCompressor.DEFAULT_CHUNK_SIZE, new BulkCompressor(new FourBitAsciiCompressor(), new byte[1][]).chunkSize());
+		final BulkCompressor bulk = new BulkCompressor(new FourBitAsciiCompressor(), new byte[3][]);
+		assertThrows(IndexOutOfBoundsException.class, () -> bulk.bulkCompress(new String[]{"1", "2"}, 2));
+	}
+
+	@Test
+	void failureWaitsForChunksTest() throws Exception {
+		final ExecutorService fixed = Executors.newFixedThreadPool(3);
+		final ForkJoinPool pool = new ForkJoinPool(3);
+		try {
+			for (final Executor executor : new Executor[]{null, pool, fixed}) {
+				final String[] source = generateRandomStringArray(200_000, 1, 10, DEFAULT_4BIT_CHARSET);
+				source[source.length / 2] = "12a";
+				final byte[][] destination = new byte[source.length][];
+				final BulkCompressor bulk = new BulkCompressor(new FourBitAsciiCompressor(true, true), destination, 100)
+					.withExecutor(executor, 3);
+				assertThrows(CharacterNotSupportedException.class, () -> bulk.bulkCompress(source, 0));
+
+				final byte[][] snapshot = destination.clone();
+				Thread.sleep(100);
+				assertArrayEquals(snapshot, destination); // No chunk still running.
+			}
+		} finally {
+			fixed.shutdown();
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	void asyncTest() throws Exception {
+		final ExecutorService fixed = Executors.newFixedThreadPool(3);
+		final ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			for (final Executor executor : new Executor[]{null, pool, fixed}) {
+				final String[] source = generateRandomStringArray(20_000, 0, 30, DEFAULT_5BIT_CHARSET);
+				final List<String> list = List.of(source);
+				final byte[][] destination = new byte[source.length * 2][];
+				final FiveBitAsciiCompressor compressor = new FiveBitAsciiCompressor(true, true);
+				final BulkCompressor bulk = executor == null ? new BulkCompressor(compressor, destination, 500) :
+					executor instanceof ForkJoinPool forkJoinPool ? new BulkCompressor(compressor, destination, 500).withExecutor(forkJoinPool) :
+						new BulkCompressor(compressor, destination, 500).withExecutor(executor, 3);
+				final AtomicInteger compressed = new AtomicInteger();
+
+				final CompletableFuture<Void> first = bulk.bulkCompressChunksAsync(source, 0, (from, to) -> compressed.addAndGet(to - from));
+				final CompletableFuture<Void> second = bulk.bulkCompressAsync(list, source.length);
+				CompletableFuture.allOf(first, second).get();
+
+				assertEquals(source.length, compressed.get());
+				for (int i = 0; i < destination.length; i++)
+					assertEquals(source[i % source.length], getString(compressor.decompress(destination[i])));
+				assertTrue(bulk.bulkCompressAsync(new byte[0][], 0).isDone());
+				assertThrows(IndexOutOfBoundsException.class, () -> bulk.bulkCompressAsync(source, source.length + 1));
+
+				final String[] invalid = generateRandomStringArray(5000, 1, 10, DEFAULT_5BIT_CHARSET);
+				invalid[4000] = "a";
+				final ExecutionException failure = assertThrows(ExecutionException.class, () -> bulk.bulkCompressAsync(invalid, 0).get());
+				assertTrue(failure.getCause() instanceof CharacterNotSupportedException);
+			}
+		} finally {
+			fixed.shutdown();
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	void executorTest() throws Exception {
+		final ForkJoinPool pool = new ForkJoinPool(3);
+		final ExecutorService fixed = Executors.newFixedThreadPool(4);
+		final AtomicInteger threads = new AtomicInteger();
+		final Executor threadPerTask = r -> { // Like a virtual-thread-per-task executor.
+			threads.incrementAndGet();
+			new Thread(r, "per-task").start();
+		};
+		final Executor rejecting = r -> {
+			throw new RejectedExecutionException();
+		};
+
+		try {
+			final Object[][] executors = {{pool, 3}, {fixed, 2}, {threadPerTask, Integer.MAX_VALUE}, {rejecting, 4}};
+			for (final Object[] executor : executors) {
+				final String[] source = generateRandomStringArray(20_000, 0, 30, DEFAULT_4BIT_CHARSET);
+				final byte[][] destination = new byte[source.length][];
+				final FourBitAsciiCompressor compressor = new FourBitAsciiCompressor(true, true);
+				final BulkCompressor bulk = executor[0] instanceof ForkJoinPool forkJoinPool ?
+					new BulkCompressor(compressor, destination, 100).withExecutor(forkJoinPool) :
+					new BulkCompressor(compressor, destination, 100).withExecutor((Executor) executor[0], (int) executor[1]);
+				final AtomicInteger running = new AtomicInteger();
+				final AtomicInteger maxRunning = new AtomicInteger();
+				final Set<String> threadNames = ConcurrentHashMap.newKeySet();
+
+				bulk.bulkCompressChunks(source, 0, (from, to) -> {
+					maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+					threadNames.add(Thread.currentThread().getName());
+					running.decrementAndGet();
+				});
+
+				assertTrue(maxRunning.get() <= bulk.parallelism());
+				assertFalse(threadNames.isEmpty());
+				if (executor[0] == rejecting)
+					assertEquals(Set.of(Thread.currentThread().getName()), threadNames); // The caller runs the workers.
+				else
+					assertFalse(threadNames.contains(Thread.currentThread().getName()));
+				final String[] decompressed = new String[source.length];
+				bulk.bulkDecompress(0, decompressed);
+				assertArrayEquals(source, decompressed);
+			}
+			assertTrue(threads.get() > 1);
+
+			final String[] invalid = generateRandomStringArray(5000, 1, 10, DEFAULT_4BIT_CHARSET);
+			invalid[4000] = "a";
+			final BulkCompressor failing = new BulkCompressor(new FourBitAsciiCompressor(true, true), new byte[5000][], 10).withExecutor(fixed, 3);
+			assertThrows(CharacterNotSupportedException.class, () -> failing.bulkCompress(invalid, 0));
+			assertThrows(IllegalArgumentException.class, () -> failing.withExecutor(fixed, 0));
+		} finally {
+			pool.shutdown();
+			fixed.shutdown();
+		}
+	}
+
+	@Test
+	void bulkDecompressTest() {
+		for (int i = 0; i < 50; i++) {
+			final int quantity = RANDOM.nextInt(0, 10_000);
+			final String[] source = generateRandomStringArray(quantity, 0, 100, DEFAULT_6BIT_CHARSET);
+			final byte[][] destination = new byte[quantity + 10][]; // Nulls at the end.
+			final SixBitAsciiCompressor compressor = new SixBitAsciiCompressor(true, true);
+			final BulkCompressor bulk = new BulkCompressor(compressor, destination);
+			bulk.bulkCompress(source, 0);
+
+			final int start = quantity == 0 ? 0 : RANDOM.nextInt(quantity);
+			final int count = destination.length - start;
+			final byte[][] bytes = new byte[count][];
+			final String[] strings = new String[count];
+			final int[] offsets = new int[count + 1];
+			bulk.bulkDecompress(start, bytes);
+			bulk.bulkDecompress(start, strings);
+			final byte[] buffer = bulk.bulkDecompress(start, offsets);
+
+			assertEquals(buffer.length, offsets[count]);
+			for (int j = 0; j < count; j++) {
+				final String expected = start + j < quantity ? source[start + j] : null;
+				assertEquals(expected, getString(bytes[j]));
+				assertEquals(expected, strings[j]);
+				assertEquals(expected != null ? expected : "", new String(buffer, offsets[j], offsets[j + 1] - offsets[j], ISO_8859_1));
+			}
+		}
+	}
+
+	@Test
+	void bulkDecompressOutOfBoundsTest() {
+		final BulkCompressor bulk = new BulkCompressor(new FourBitAsciiCompressor(true, true), new byte[10][]);
+		assertThrows(IndexOutOfBoundsException.class, () -> bulk.bulkDecompress(5, new byte[6][]));
+		assertThrows(IndexOutOfBoundsException.class, () -> bulk.bulkDecompress(-1, new String[1]));
+		assertThrows(IndexOutOfBoundsException.class, () -> bulk.bulkDecompress(11, new int[1]));
+		assertEquals(0, bulk.bulkDecompress(10, new int[1]).length);
+	}
+
 }
@@ -0,0 +1,221 @@
+package com.dannemann.stringcompressor.bulk;
+
+import com.dannemann.stringcompressor.BaseTest;
+import com.dannemann.stringcompressor.FiveBitAsciiCompressor;
+import com.dannemann.stringcompressor.FourBitAsciiCompressor;
+import com.dannemann.stringcompressor.SixBitAsciiCompressor;
+import com.dannemann.stringcompressor.exception.CharacterNotSupportedException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.dannemann.stringcompressor.AsciiCompressor.getString;
+import static com.dannemann.stringcompressor.FiveBitAsciiCompressor.DEFAULT_5BIT_CHARSET;
+import static com.dannemann.stringcompressor.FourBitAsciiCompressor.DEFAULT_4BIT_CHARSET;
+import static com.dannemann.stringcompressor.SixBitAsciiCompressor.DEFAULT_6BIT_CHARSET;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Jean Dannemann Carone
+ */
+class CompressingProcessorTest extends BaseTest {
+
+	@Test
+	void orderTest() throws Exception {
+		final ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			for (final int batchSize : new int[]{1, 7, 1000, CompressingProcessor.DEFAULT_BATCH_SIZE}) {
+				final String[] source = generateRandomStringArray(5000, 0, 40, DEFAULT_6BIT_CHARSET);
+				final SixBitAsciiCompressor compressor = new SixBitAsciiCompressor(true, true);
+				final CompressingProcessor processor = batchSize == 7 ?
+					new CompressingProcessor(compressor, batchSize, pool, 2, 64) :
+					batchSize == CompressingProcessor.DEFAULT_BATCH_SIZE ? new CompressingProcessor(compressor) :
+						new CompressingProcessor(compressor, batchSize, null, 4, Flow.defaultBufferSize());
+				assertEquals(batchSize, processor.getBatchSize());
+				final Collector<byte[]> collector = new Collector<>(Long.MAX_VALUE);
+
+				try (SubmissionPublisher<byte[]> upstream = new SubmissionPublisher<>()) {
+					processor.subscribe(collector);
+					upstream.subscribe(processor);
+					for (final String s : source)
+						upstream.submit(s.getBytes(ISO_8859_1));
+				}
+
+				collector.done.get(30, TimeUnit.SECONDS);
+				assertEquals(source.length, collector.items.size());
+				for (int i = 0; i < source.length; i++)
+					assertEquals(source[i], getString(compressor.decompress(collector.items.get(i))));
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	void demandTest() throws Exception {
+		final FiveBitAsciiCompressor compressor = new FiveBitAsciiCompressor(true, true);
+		final CompressingProcessor processor = new CompressingProcessor(compressor, 10, null, 2, 16);
+		final CountingPublisher<byte[]> upstream = CountingPublisher.ofStrings(10_000, DEFAULT_5BIT_CHARSET);
+		final Collector<byte[]> collector = new Collector<>(5);
+
+		processor.subscribe(collector);
+		new Thread(() -> upstream.subscribe(processor)).start(); // Emits until blocked by the full buffer.
+		Thread.sleep(500);
+
+		assertEquals(5, collector.items.size()); // Only what was requested.
+		assertTrue(upstream.requested.get() <= 5 + 16 + 2 * 10); // Delivered, buffered, and up to two batches.
+
+		collector.subscription.request(Long.MAX_VALUE);
+		collector.done.get(30, TimeUnit.SECONDS);
+		assertEquals(upstream.items.size(), collector.items.size());
+		for (int i = 0; i < collector.items.size(); i++)
+			assertArrayEquals(upstream.items.get(i), compressor.decompress(collector.items.get(i)));
+	}
+
+	@Test
+	void errorTest() throws Exception {
+		final FourBitAsciiCompressor compressor = new FourBitAsciiCompressor(true, true);
+		final CompressingProcessor processor = new CompressingProcessor(compressor, 4, null, 2, 16);
+		final CountingPublisher<byte[]> upstream = CountingPublisher.ofStrings(100, DEFAULT_4BIT_CHARSET);
+		upstream.items.set(6, "12a".getBytes(ISO_8859_1));
+		final Collector<byte[]> collector = new Collector<>(Long.MAX_VALUE);
+
+		processor.subscribe(collector);
+		upstream.subscribe(processor);
+
+		final ExecutionException failure = assertThrows(ExecutionException.class, () -> collector.done.get(30, TimeUnit.SECONDS));
+		assertTrue(failure.getCause() instanceof CharacterNotSupportedException);
+		assertTrue(collector.items.size() <= 4); // At most the first batch.
+		assertTrue(upstream.cancelled.get());
+
+		final Collector<byte[]> failed = new Collector<>(Long.MAX_VALUE);
+		final CompressingProcessor empty = new CompressingProcessor(compressor);
+		empty.subscribe(failed);
+		empty.onError(new IllegalStateException());
+		assertTrue(assertThrows(ExecutionException.class, () -> failed.done.get(30, TimeUnit.SECONDS)).getCause() instanceof IllegalStateException);
+		assertThrows(IllegalArgumentException.class, () -> new CompressingProcessor(compressor, 0, null, 1, 16));
+		assertThrows(NullPointerException.class, () -> processor.onNext(null));
+	}
+
+	@Test
+	void documentedOrderTest() throws Exception {
+		final FiveBitAsciiCompressor compressor = new FiveBitAsciiCompressor(true, true);
+		final CompressingProcessor processor = new CompressingProcessor(compressor, 4, null, 2, 16);
+		final CountingPublisher<byte[]> upstream = CountingPublisher.ofStrings(10, DEFAULT_5BIT_CHARSET);
+		upstream.subscribe(processor); // Before any subscriber: nothing is requested yet.
+		assertEquals(0, upstream.requested.get());
+
+		final Collector<byte[]> collector = new Collector<>(Long.MAX_VALUE);
+		processor.subscribe(collector);
+		collector.done.get(30, TimeUnit.SECONDS);
+		assertEquals(10, collector.items.size());
+		for (int i = 0; i < 10; i++)
+			assertArrayEquals(upstream.items.get(i), compressor.decompress(collector.items.get(i)));
+		assertThrows(NullPointerException.class, () -> new CompressingProcessor(compressor).onSubscribe(null));
+	}
+
+	/**
+	 * Subscriber collecting the items received, in order. Requests {@code initialRequest} items at first.
+	 */
+	static final class Collector<T> implements Flow.Subscriber<T> {
+
+		final List<T> items = new ArrayList<>();
+		final CompletableFuture<Void> done = new CompletableFuture<>();
+		final long initialRequest;
+		volatile Flow.Subscription subscription;
+
+		Collector(long initialRequest) {
+			this.initialRequest = initialRequest;
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+			subscription.request(initialRequest);
+		}
+
+		@Override
+		public synchronized void onNext(T item) {
+			items.add(item);
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			done.completeExceptionally(throwable);
+		}
+
+		@Override
+		public void onComplete() {
+			done.complete(null);
+		}
+
+	}
+
+	/**
+	 * Synchronous publisher that only emits what was requested (from the requesting thread), and records how much that
+	 * was.
+	 */
+	static final class CountingPublisher<T> implements Flow.Publisher<T> {
+
+		final List<T> items;
+		final AtomicLong requested = new AtomicLong();
+		final AtomicBoolean cancelled = new AtomicBoolean();
+
+		CountingPublisher(List<T> items) {
+			this.items = new ArrayList<>(items);
+		}
+
+		static CountingPublisher<byte[]> ofStrings(int count, byte[] charset) {
+			final List<byte[]> strings = new ArrayList<>();
+			for (final String string : generateRandomStringList(count, 0, 30, charset))
+				strings.add(string.getBytes(ISO_8859_1));
+			return new CountingPublisher<>(strings);
+		}
+
+		@Override
+		public void subscribe(Flow.Subscriber<? super T> subscriber) {
+			subscriber.onSubscribe(new Flow.Subscription() {
+
+				private int next;
+				private boolean emitting;
+
+				@Override
+				public synchronized void request(long n) {
+					requested.addAndGet(n);
+					if (emitting)
+						return; // Reentrant call from onNext: the loop below goes on.
+
+					emitting = true;
+					while (requested.get() > next && next < items.size() && !cancelled.get())
+						subscriber.onNext(items.get(next++));
+					emitting = false;
+					if (next == items.size() && !cancelled.get()) {
+						next++;
+						subscriber.onComplete();
+					}
+				}
+
+				@Override
+				public void cancel() {
+					cancelled.set(true);
+				}
+
+			});
+		}
+
+	}
+
+}
@@ -0,0 +1,184 @@
+package com.dannemann.stringcompressor.bulk;
+
+import com.dannemann.stringcompressor.BaseTest;
+import com.dannemann.stringcompressor.FiveBitAsciiCompressor;
+import com.dannemann.stringcompressor.FourBitAsciiCompressor;
+import com.dannemann.stringcompressor.SixBitAsciiCompressor;
+import com.dannemann.stringcompressor.exception.BulkCompressionException;
+import com.dannemann.stringcompressor.exception.CharacterNotSupportedException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntFunction;
+
+import static com.dannemann.stringcompressor.AsciiCompressor.getString;
+import static com.dannemann.stringcompressor.FiveBitAsciiCompressor.DEFAULT_5BIT_CHARSET;
+import static com.dannemann.stringcompressor.FourBitAsciiCompressor.DEFAULT_4BIT_CHARSET;
+import static com.dannemann.stringcompressor.SixBitAsciiCompressor.DEFAULT_6BIT_CHARSET;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Jean Dannemann Carone
+ */
+class ConcurrentManagedBulkCompressorTest extends BaseTest {
+
+	private static final int PRODUCERS = 8;
+	private static final int BATCHES = 100;
+
+	@Test
+	void concurrentArrayTest() throws Exception {
+		final byte[][] destination = new byte[PRODUCERS * BATCHES * 300][];
+		final SixBitAsciiCompressor compressor = new SixBitAsciiCompressor(true, true);
+		final ConcurrentManagedBulkCompressor managed = new ConcurrentManagedBulkCompressor(compressor, destination);
+
+		final List<String> added = produce(managed, DEFAULT_6BIT_CHARSET, index -> getString(compressor.decompress(destination[index])));
+
+		assertEquals(added.size(), managed.getReservedIndex());
+		assertEquals(added.size(), managed.getPublishedIndex());
+		for (int i = 0; i < added.size(); i++)
+			assertEquals(added.get(i), getString(compressor.decompress(destination[i])));
+		for (int i = added.size(); i < destination.length; i++)
+			assertNull(destination[i]);
+	}
+
+	@Test
+	void concurrentGrowableTest() throws Exception {
+		final GrowableDestination destination = new GrowableDestination(GrowthPolicy.fixed(1000), GrowableDestination.MAX_CAPACITY);
+		final FiveBitAsciiCompressor compressor = new FiveBitAsciiCompressor(true, true);
+		final ConcurrentManagedBulkCompressor managed = new ConcurrentManagedBulkCompressor(compressor, destination);
+
+		final List<String> added = produce(managed, DEFAULT_5BIT_CHARSET, index -> getString(compressor.decompress(destination.get(index))));
+
+		assertEquals(added.size(), managed.getPublishedIndex());
+		assertEquals(added.size(), destination.size());
+		for (int i = 0; i < added.size(); i++)
+			assertEquals(added.get(i), getString(compressor.decompress(destination.get(i))));
+	}
+
+	@Test
+	void executorTest() throws Exception {
+		final ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			final GrowableDestination destination = new GrowableDestination(GrowthPolicy.doubling(500), GrowableDestination.MAX_CAPACITY);
+			final SixBitAsciiCompressor compressor = new SixBitAsciiCompressor(true, true);
+			final ConcurrentManagedBulkCompressor managed = new ConcurrentManagedBulkCompressor(compressor, destination, pool, 2);
+			final List<String> added = produce(managed, DEFAULT_6BIT_CHARSET, index -> getString(compressor.decompress(destination.get(index))));
+			for (int i = 0; i < added.size(); i++)
+				assertEquals(added.get(i), getString(compressor.decompress(destination.get(i))));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	void failedBatchTest() {
+		final FourBitAsciiCompressor compressor = new FourBitAsciiCompressor(true, true);
+		final GrowableDestination destination = new GrowableDestination(GrowthPolicy.fixed(7), 100);
+		final ConcurrentManagedBulkCompressor managed = new ConcurrentManagedBulkCompressor(compressor, destination);
+		assertEquals(0, managed.compressAndAddAll(new String[]{"1", "2", "3"}));
+
+		final String[] invalid = generateRandomStringArray(20, 1, 10, DEFAULT_4BIT_CHARSET);
+		invalid[15] = "12a";
+		assertThrows(CharacterNotSupportedException.class, () -> managed.compressAndAddAll(invalid));
+		assertEquals(23, managed.getPublishedIndex()); // Published anyway, so later batches are not held back.
+		for (int i = 3; i < 23; i++)
+			assertNull(destination.get(i));
+
+		assertEquals(23, managed.compressAndAddAll(List.of("4", "5")));
+		assertEquals("5", getString(compressor.decompress(destination.get(24))));
+		assertEquals(25, managed.compressAndAddAll(new byte[0][]));
+		assertThrows(BulkCompressionException.class, () -> managed.compressAndAddAll(new String[76]));
+		assertEquals(25, managed.getReservedIndex()); // Nothing reserved.
+	}
+
+	@Test
+	void failedLargeBatchTest() throws Exception {
+		final String[] batch = generateRandomStringArray(400_000, 1, 10, DEFAULT_4BIT_CHARSET);
+		batch[batch.length / 2] = "12a";
+		final byte[][] destination = new byte[batch.length][];
+		final ConcurrentManagedBulkCompressor managed =
+			new ConcurrentManagedBulkCompressor(new FourBitAsciiCompressor(true, true), destination);
+
+		assertThrows(CharacterNotSupportedException.class, () -> managed.compressAndAddAll(batch));
+		for (final byte[] string : destination)
+			assertNull(string); // Cleared after every chunk stopped.
+		Thread.sleep(200);
+		for (final byte[] string : destination)
+			assertNull(string); // No late writes.
+		assertEquals(batch.length, managed.getPublishedIndex());
+	}
+
+	@Test
+	void watermarkTest() {
+		final ConcurrentManagedBulkCompressor managed =
+			new ConcurrentManagedBulkCompressor(new FourBitAsciiCompressor(true, true), new byte[10][]);
+		final List<Integer> reached = new ArrayList<>();
+		managed.addWatermarkListener(50, (percentage, size, length) -> reached.add(size));
+		managed.compressAndAddAll(new String[]{"1", "2", "3", "4"});
+		assertEquals(List.of(), reached);
+		managed.compressAndAddAll(new String[]{"5"});
+		assertEquals(List.of(5), reached);
+	}
+
+	/**
+	 * Adds batches from many threads while a reader checks the published strings.
+	 * @return The strings added, in destination order.
+	 */
+	private static List<String> produce(final ConcurrentManagedBulkCompressor managed, final byte[] charset,
+		final IntFunction<String> reader) throws Exception {
+
+		final String[][] batches = new String[PRODUCERS * BATCHES][];
+		final int[] firsts = new int[batches.length];
+		final AtomicBoolean done = new AtomicBoolean();
+		final ExecutorService executor = Executors.newFixedThreadPool(PRODUCERS + 1);
+
+		try {
+			final Future<Integer> checked = executor.submit(() -> {
+				int checks = 0;
+				while (!done.get()) {
+					final int published = managed.getPublishedIndex();
+					assertTrue(published <= managed.getReservedIndex());
+					if (published > 0)
+						assertNotNull(reader.apply(RANDOM.nextInt(published)));
+					checks++;
+				}
+				return checks;
+			});
+
+			final List<Future<?>> producers = new ArrayList<>();
+			for (int p = 0; p < PRODUCERS; p++) {
+				final int producer = p;
+				producers.add(executor.submit(() -> {
+					for (int b = producer; b < batches.length; b += PRODUCERS) {
+						final String[] batch = generateRandomStringArray(RANDOM.nextInt(0, 300), 0, 30, charset);
+						batches[b] = batch.clone();
+						firsts[b] = b % 3 == 0 ? managed.compressAndAddAll(List.of(batch)) : managed.compressAndAddAll(batch);
+					}
+				}));
+			}
+
+			for (final Future<?> producer : producers)
+				producer.get();
+			done.set(true);
+			assertTrue(checked.get() > 0);
+		} finally {
+			executor.shutdownNow();
+		}
+
+		final String[] added = new String[managed.getPublishedIndex()];
+		for (int b = 0; b < batches.length; b++)
+			System.arraycopy(batches[b], 0, added, firsts[b], batches[b].length);
+		return List.of(added);
+	}
+
+}
@@ -0,0 +1,56 @@
+package com.dannemann.stringcompressor.bulk;
+
+import com.dannemann.stringcompressor.BaseTest;
+import com.dannemann.stringcompressor.exception.BulkCompressionException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author Jean Dannemann Carone
+ */
+class GrowableDestinationTest extends BaseTest {
+
+	@Test
+	void growthTest() {
+		final GrowableDestination fixed = new GrowableDestination(GrowthPolicy.fixed(10), 95);
+		fixed.ensureCapacity(0);
+		assertEquals(0, fixed.segmentCount());
+		fixed.ensureCapacity(25);
+		assertEquals(30, fixed.capacity());
+		fixed.ensureCapacity(95);
+		assertEquals(95, fixed.capacity()); // Last segment trimmed.
+		assertEquals(10, fixed.segmentCount());
+		assertEquals(5, fixed.segment(9).length);
+		assertThrows(BulkCompressionException.class, () -> fixed.ensureCapacity(96));
+
+		final GrowableDestination doubling = new GrowableDestination(GrowthPolicy.doubling(3), GrowableDestination.MAX_CAPACITY);
+		doubling.ensureCapacity(13);
+		assertEquals(24, doubling.capacity()); // 3, 3, 6, 12.
+		assertEquals(4, doubling.segmentCount());
+		for (int index = 0; index < 24; index++) {
+			final int segment = doubling.segmentOf(index);
+			assertEquals(index < 3 ? 0 : index < 6 ? 1 : index < 12 ? 2 : 3, segment);
+			assertEquals(true, index >= doubling.segmentStart(segment) && index < doubling.segmentStart(segment) + doubling.segment(segment).length);
+		}
+	}
+
+	@Test
+	void accessTest() {
+		final GrowableDestination destination = new GrowableDestination(GrowthPolicy.fixed(2), 10);
+		destination.ensureCapacity(5);
+		final byte[] string = {1};
+		destination.segment(2)[0] = string;
+		destination.setSize(5);
+		assertSame(string, destination.get(4));
+		assertSame(string, destination.toArray()[4]);
+		assertEquals(5, destination.toArray().length);
+		assertThrows(IndexOutOfBoundsException.class, () -> destination.get(5));
+		assertThrows(IllegalArgumentException.class, () -> new GrowableDestination(GrowthPolicy.fixed(1), -1));
+		assertThrows(IllegalArgumentException.class, () -> GrowthPolicy.doubling(0));
+		assertThrows(IllegalStateException.class, () -> new GrowableDestination(capacity -> 0, 10).ensureCapacity(1));
+	}
+
+}
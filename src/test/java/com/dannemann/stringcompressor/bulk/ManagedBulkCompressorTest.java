@@ -4,10 +4,21 @@ import com.dannemann.stringcompressor.BaseTest;
 import com.dannemann.stringcompressor.FiveBitAsciiCompressor;
 import com.dannemann.stringcompressor.FourBitAsciiCompressor;
 import com.dannemann.stringcompressor.SixBitAsciiCompressor;
+import com.dannemann.stringcompressor.arena.CompressedStringArena;
+import com.dannemann.stringcompressor.exception.BulkCompressionException;
+import com.dannemann.stringcompressor.exception.CharacterNotSupportedException;
+import com.dannemann.stringcompressor.util.TriConsumer;
 import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.dannemann.stringcompressor.AsciiCompressor.getString;
 import static com.dannemann.stringcompressor.FiveBitAsciiCompressor.DEFAULT_5BIT_CHARSET;
@@ -15,8 +26,11 @@ import static com.dannemann.stringcompressor.FourBitAsciiCompressor.DEFAULT_4BIT
 import static com.dannemann.stringcompressor.SixBitAsciiCompressor.DEFAULT_6BIT_CHARSET;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * @author Jean Dannemann Carone
@@ -140,4 +154,170 @@ class ManagedBulkCompressorTest extends BaseTest {
 		}
 	}
 
+	@Test
+	void growableTest() {
+		for (final GrowthPolicy policy : new GrowthPolicy[]{GrowthPolicy.fixed(1000), GrowthPolicy.doubling(100), GrowthPolicy.fixed(1)}) {
+			final GrowableDestination destination = new GrowableDestination(policy, GrowableDestination.MAX_CAPACITY);
+			final FiveBitAsciiCompressor compressor = new FiveBitAsciiCompressor(true, true);
+			final ManagedBulkCompressor managed = new ManagedBulkCompressor(compressor, destination);
+			final List<String> fullSource = new ArrayList<>();
+			final int[] callbacks = new int[1];
+
+			for (int j = 0; j < 30; j++) {
+				final String[] batch = generateRandomStringArray(RANDOM.nextInt(0, 700), 0, 50, DEFAULT_5BIT_CHARSET);
+				fullSource.addAll(List.of(batch));
+				managed.compressAndAddAll(batch, (k, s, c) -> {
+					assertEquals(batch[k], getString(compressor.decompress(c)));
+					synchronized (callbacks) {
+						callbacks[0]++;
+					}
+				});
+			}
+
+			assertEquals(fullSource.size(), callbacks[0]);
+			assertEquals(fullSource.size(), managed.getCurrentIndex());
+			assertEquals(fullSource.size(), destination.size());
+			final byte[][] array = destination.toArray();
+			assertEquals(fullSource.size(), array.length);
+			for (int j = 0; j < fullSource.size(); j++) {
+				assertEquals(fullSource.get(j), getString(compressor.decompress(destination.get(j))));
+				assertArrayEquals(destination.get(j), array[j]);
+			}
+		}
+	}
+
+	@Test
+	void executorTest() {
+		final ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			final List<String> source = generateRandomStringList(30_000, 0, 40, DEFAULT_6BIT_CHARSET);
+			final byte[][] array = new byte[source.size()][];
+			final GrowableDestination growable = new GrowableDestination(GrowthPolicy.fixed(7000), GrowableDestination.MAX_CAPACITY);
+			final SixBitAsciiCompressor compressor = new SixBitAsciiCompressor(true, true);
+			new ManagedBulkCompressor(compressor, array, executor, 3).compressAndAddAll(source);
+			new ManagedBulkCompressor(compressor, growable, executor, 3).compressAndAddAll(source);
+			for (int j = 0; j < source.size(); j++) {
+				assertEquals(source.get(j), getString(compressor.decompress(array[j])));
+				assertEquals(source.get(j), getString(compressor.decompress(growable.get(j))));
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	void asyncTest() throws Exception {
+		final ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			for (final boolean growing : new boolean[]{false, true}) {
+				final GrowableDestination growable = new GrowableDestination(GrowthPolicy.fixed(3000), GrowableDestination.MAX_CAPACITY);
+				final byte[][] array = new byte[100_000][];
+				final SixBitAsciiCompressor compressor = new SixBitAsciiCompressor(true, true);
+				final ManagedBulkCompressor managed = growing ?
+					new ManagedBulkCompressor(compressor, growable, executor, 3) : new ManagedBulkCompressor(compressor, array, executor, 3);
+				final List<String> fullSource = new ArrayList<>();
+				final List<CompletableFuture<Void>> futures = new ArrayList<>();
+				final AtomicInteger callbacks = new AtomicInteger();
+
+				for (int j = 0; j < 30; j++) {
+					final List<String> batch = generateRandomStringList(RANDOM.nextInt(0, 3000), 0, 40, DEFAULT_6BIT_CHARSET);
+					fullSource.addAll(batch);
+					futures.add(j % 2 == 0 ? managed.compressAndAddAllAsync(batch) :
+						managed.compressAndAddAllAsync(batch.toArray(new String[0]), (k, s, c) -> callbacks.incrementAndGet()));
+					assertEquals(fullSource.size(), managed.getCurrentIndex()); // Accepted right away.
+				}
+
+				managed.awaitInFlight();
+				for (final CompletableFuture<Void> future : futures)
+					assertTrue(future.isDone() && !future.isCompletedExceptionally());
+				assertTrue(callbacks.get() > 0);
+				for (int j = 0; j < fullSource.size(); j++)
+					assertEquals(fullSource.get(j), getString(compressor.decompress(growing ? growable.get(j) : array[j])));
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	void asyncBackpressureTest() throws Exception {
+		final ExecutorService executor = Executors.newFixedThreadPool(2);
+		final ExecutorService producer = Executors.newSingleThreadExecutor();
+		final CountDownLatch gate = new CountDownLatch(1);
+		try {
+			final byte[][] destination = new byte[30][];
+			final FourBitAsciiCompressor compressor = new FourBitAsciiCompressor(true, true);
+			final ManagedBulkCompressor managed = new ManagedBulkCompressor(compressor, destination, executor, 1);
+			managed.setMaxInFlightBatches(2);
+			final TriConsumer<Integer, String, byte[]> waitForGate = (k, s, c) -> {
+				try {
+					gate.await();
+				} catch (InterruptedException e) {
+					throw new IllegalStateException(e);
+				}
+			};
+
+			final CompletableFuture<Void> first = managed.compressAndAddAllAsync(new String[]{"1", "2"}, waitForGate);
+			final CompletableFuture<Void> second = managed.compressAndAddAllAsync(new String[]{"3"}, waitForGate);
+			final Future<CompletableFuture<Void>> third = producer.submit(() -> managed.compressAndAddAllAsync(List.of("4", "5")));
+			Thread.sleep(200);
+			assertFalse(third.isDone()); // Blocked: two batches in flight.
+			assertThrows(IllegalStateException.class, () -> managed.setMaxInFlightBatches(3));
+
+			gate.countDown();
+			third.get().get();
+			managed.awaitInFlight();
+			assertTrue(first.isDone() && second.isDone());
+			assertEquals(5, managed.getCurrentIndex());
+			for (int j = 0; j < 5; j++)
+				assertEquals(String.valueOf(j + 1), getString(compressor.decompress(destination[j])));
+
+			final String[] invalid = {"6", "7a"};
+			final ExecutionException failure = assertThrows(ExecutionException.class, () -> managed.compressAndAddAllAsync(invalid).get());
+			assertTrue(failure.getCause() instanceof CharacterNotSupportedException);
+			managed.awaitInFlight(); // The failed batch freed its slot.
+			assertThrows(BulkCompressionException.class, () -> managed.compressAndAddAllAsync(new String[24]));
+			assertThrows(IllegalArgumentException.class, () -> managed.setMaxInFlightBatches(0));
+			assertThrows(UnsupportedOperationException.class, () ->
+				new ManagedBulkCompressor(compressor, new CompressedStringArena()).compressAndAddAllAsync(new String[]{"1"}));
+		} finally {
+			gate.countDown();
+			executor.shutdown();
+			producer.shutdown();
+		}
+	}
+
+	@Test
+	void growableMaxCapacityTest() {
+		final GrowableDestination destination = new GrowableDestination(GrowthPolicy.doubling(4), 10);
+		final ManagedBulkCompressor managed = new ManagedBulkCompressor(new FourBitAsciiCompressor(true, true), destination);
+		managed.compressAndAddAll(new String[]{"1", "2", "3", "4", "5", "6"});
+		assertEquals(8, destination.capacity()); // 4 + 4.
+		managed.compressAndAddAll(List.of("7", "8", "9", "0"));
+		assertEquals(10, destination.capacity()); // Then 8, trimmed to 2.
+		assertEquals(3, destination.segmentCount());
+		assertThrows(BulkCompressionException.class, () -> managed.compressAndAddAll(new String[]{"1"}));
+		assertEquals(10, managed.getCurrentIndex());
+	}
+
+	@Test
+	void watermarkTest() {
+		final byte[][] destination = new byte[200][];
+		final ManagedBulkCompressor managed = new ManagedBulkCompressor(new FourBitAsciiCompressor(true, true), destination);
+		final List<String> reached = new ArrayList<>();
+		managed.addWatermarkListener(90, (p, size, length) -> reached.add(p + ":" + size + "/" + length));
+		managed.addWatermarkListener(50, (p, size, length) -> reached.add(p + ":" + size + "/" + length));
+		managed.addWatermarkListener(75, (p, size, length) -> reached.add(p + ":" + size + "/" + length));
+
+		managed.compressAndAddAll(generateRandomStringArray(99, 0, 10, DEFAULT_4BIT_CHARSET));
+		assertEquals(List.of(), reached);
+		managed.compressAndAddAll(generateRandomStringArray(79, 0, 10, DEFAULT_4BIT_CHARSET)); // 178: two at once.
+		assertEquals(List.of("50:178/200", "75:178/200"), reached);
+		managed.addWatermarkListener(10, (p, size, length) -> reached.add(p + ":" + size + "/" + length)); // Already reached.
+		assertEquals(List.of("50:178/200", "75:178/200", "10:178/200"), reached);
+		managed.compressAndAddAll(generateRandomStringArray(20, 0, 10, DEFAULT_4BIT_CHARSET));
+		assertEquals(List.of("50:178/200", "75:178/200", "10:178/200", "90:198/200"), reached);
+		assertThrows(IllegalArgumentException.class, () -> managed.addWatermarkListener(0, (p, size, length) -> {}));
+	}
+
 }
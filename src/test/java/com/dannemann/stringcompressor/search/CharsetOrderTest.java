@@ -0,0 +1,54 @@
+package com.dannemann.stringcompressor.search;
+
+import com.dannemann.stringcompressor.BaseTest;
+import org.junit.jupiter.api.Test;
+
+import static com.dannemann.stringcompressor.FiveBitAsciiCompressor.DEFAULT_5BIT_CHARSET;
+import static com.dannemann.stringcompressor.FourBitAsciiCompressor.DEFAULT_4BIT_CHARSET;
+import static com.dannemann.stringcompressor.SixBitAsciiCompressor.DEFAULT_6BIT_CHARSET;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Jean Dannemann Carone
+ */
+class CharsetOrderTest extends BaseTest {
+
+	@Test
+	void ascendingTest() {
+		assertTrue(new CharsetOrder(DEFAULT_4BIT_CHARSET).isAscending());
+		assertTrue(new CharsetOrder(DEFAULT_5BIT_CHARSET).isAscending());
+		assertTrue(new CharsetOrder(DEFAULT_6BIT_CHARSET).isAscending());
+		assertFalse(new CharsetOrder("0123456789ABCDFE".getBytes()).isAscending());
+		assertFalse(new CharsetOrder("0123456789ABCDEE".getBytes()).isAscending()); // Repeated character.
+
+		final CharsetOrder order = new CharsetOrder(DEFAULT_6BIT_CHARSET);
+		assertSame(DEFAULT_6BIT_CHARSET, order.getCharset());
+		for (int code = 0; code < DEFAULT_6BIT_CHARSET.length; code++) {
+			assertEquals(code, order.rankOf(code));
+			assertEquals(code, order.codeOf(DEFAULT_6BIT_CHARSET[code]));
+		}
+		assertEquals(-1, order.codeOf((byte) 'a'));
+		assertEquals(-1, order.codeOf((byte) -1));
+	}
+
+	@Test
+	void rankTest() {
+		final byte[] charset = {'9', '8', '7', '6', '5', '4', '3', '2', '1', '0', '#', '+', ',', '-', '.', ';'};
+		final CharsetOrder order = new CharsetOrder(charset);
+		assertEquals(14, order.rankOf(0)); // '9'
+		assertEquals(5, order.rankOf(9)); // '0'
+		assertEquals(0, order.rankOf(10)); // '#'
+		assertEquals(15, order.rankOf(15)); // ';'
+		assertEquals(9, order.codeOf((byte) '0'));
+
+		// Rank differences compare like character differences, for any key character.
+		for (int code = 0; code < charset.length; code++)
+			for (int c = Byte.MIN_VALUE; c <= Byte.MAX_VALUE; c++)
+				assertEquals(Integer.signum(charset[code] - c),
+					Integer.signum(order.codeRanks()[code] - order.keyRanks()[c & 0xFF]), charset[code] + " vs " + c);
+	}
+
+}
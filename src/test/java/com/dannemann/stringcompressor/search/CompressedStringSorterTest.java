@@ -0,0 +1,163 @@
+package com.dannemann.stringcompressor.search;
+
+import com.dannemann.stringcompressor.AsciiCompressor;
+import com.dannemann.stringcompressor.BaseTest;
+import com.dannemann.stringcompressor.FiveBitAsciiCompressor;
+import com.dannemann.stringcompressor.FourBitAsciiCompressor;
+import com.dannemann.stringcompressor.SixBitAsciiCompressor;
+import com.dannemann.stringcompressor.arena.CompressedStringArena;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static com.dannemann.stringcompressor.AsciiCompressor.getBytes;
+import static com.dannemann.stringcompressor.AsciiCompressor.getString;
+import static com.dannemann.stringcompressor.FiveBitAsciiCompressor.DEFAULT_5BIT_CHARSET;
+import static com.dannemann.stringcompressor.FourBitAsciiCompressor.DEFAULT_4BIT_CHARSET;
+import static com.dannemann.stringcompressor.SixBitAsciiCompressor.DEFAULT_6BIT_CHARSET;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * @author Jean Dannemann Carone
+ */
+class CompressedStringSorterTest extends BaseTest {
+
+	@Test
+	void sortTest() {
+		for (int i = 0; i < 30; i++) {
+			sort(new FourBitAsciiCompressor(true, true), DEFAULT_4BIT_CHARSET, i);
+			sort(new FiveBitAsciiCompressor(true, true), DEFAULT_5BIT_CHARSET, i);
+			sort(new SixBitAsciiCompressor(true, true), DEFAULT_6BIT_CHARSET, i);
+		}
+	}
+
+	@Test
+	void parallelSortTest() {
+		final ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			final SixBitAsciiCompressor compressor = new SixBitAsciiCompressor(true, true);
+			final List<String> source = generateRandomStringList(200_000, 0, 40, DEFAULT_6BIT_CHARSET);
+			final byte[][] data = compress(compressor, source, 0);
+			final CompressedStringArena arena = new CompressedStringArena();
+			arena.addAll(compressor, source);
+
+			CompressedStringSorter.sort(data, compressor, pool);
+			final CompressedStringArena sortedArena = CompressedStringSorter.sort(arena, compressor, pool);
+			Collections.sort(source);
+
+			final SixBitBinarySearch search = new SixBitBinarySearch(data, false);
+			for (int i = 0; i < source.size(); i++) {
+				assertEquals(source.get(i), getString(compressor.decompress(data[i])));
+				assertEquals(source.get(i), getString(sortedArena.decompress(i, compressor)));
+				assertEquals(source.get(i), source.get(search.search(getBytes(source.get(i)))));
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	void paddingTest() {
+		// Code 0 at the end looks like padding: only the decoded length tells these apart.
+		for (final AsciiCompressor compressor : new AsciiCompressor[]{new FourBitAsciiCompressor(true, true),
+			new FiveBitAsciiCompressor(true, true), new SixBitAsciiCompressor(true, true)}) {
+
+			final byte[] charset = compressor.getSupportedCharset();
+			final String zero = getString(new byte[]{charset[0]});
+			final String last = getString(new byte[]{charset[charset.length - 1]});
+			final List<String> source = new ArrayList<>();
+			for (int i = 0; i < 100; i++) {
+				source.add(last.repeat(i % 10) + zero.repeat(i % 7));
+				source.add(last.repeat(20) + zero.repeat(i % 7)); // Beyond the cached 8 bytes.
+				source.add("");
+			}
+
+			final byte[][] data = compress(compressor, source, 0);
+			CompressedStringSorter.sort(data, compressor);
+			Collections.sort(source);
+
+			for (int i = 0; i < source.size(); i++)
+				assertEquals(source.get(i), getString(compressor.decompress(data[i])));
+		}
+	}
+
+	@Test
+	void unsortedCharsetTest() {
+		final byte[][] charsets = {
+			{'9', '8', '7', '6', '5', '4', '3', '2', '1', '0', '#', '+', ',', '-', '.', ';'},
+			reversed(DEFAULT_5BIT_CHARSET), reversed(DEFAULT_6BIT_CHARSET)};
+		final AsciiCompressor[] compressors = {new FourBitAsciiCompressor(charsets[0], true, true),
+			new FiveBitAsciiCompressor(charsets[1], true, true), new SixBitAsciiCompressor(charsets[2], true, true)};
+
+		for (int c = 0; c < compressors.length; c++) {
+			final AsciiCompressor compressor = compressors[c];
+			final List<String> source = generateRandomStringList(3000, 0, 30, charsets[c]);
+			final byte[][] data = compress(compressor, source, 0);
+			final CompressedStringArena arena = new CompressedStringArena();
+			arena.addAll(compressor, source);
+
+			CompressedStringSorter.sort(data, compressor);
+			final CompressedStringArena sortedArena = CompressedStringSorter.sort(arena, compressor, ForkJoinPool.commonPool());
+			Collections.sort(source);
+
+			final BaseBinarySearch search = switch (c) {
+				case 0 -> new FourBitBinarySearch(data, false, charsets[c]);
+				case 1 -> new FiveBitBinarySearch(data, false, charsets[c]);
+				default -> new SixBitBinarySearch(data, false, charsets[c]);
+			};
+			for (int i = 0; i < source.size(); i++) {
+				assertEquals(source.get(i), getString(compressor.decompress(data[i])));
+				assertEquals(source.get(i), getString(sortedArena.decompress(i, compressor)));
+				assertEquals(source.get(i), source.get(search.search(getBytes(source.get(i)))));
+			}
+		}
+	}
+
+	private void sort(final AsciiCompressor compressor, final byte[] charset, final int round) {
+		final List<String> source = generateRandomStringList(RANDOM.nextInt(1, 5000), 0, 30, charset);
+		// Shared prefixes longer than 8 packed bytes, and duplicates.
+		final String prefix = getString(generateRandomStringBytes(20, charset));
+		for (int i = 0; i < source.size() / 10; i++)
+			source.add(prefix + source.get(i));
+		for (int i = 0; i < source.size() / 20; i++)
+			source.add(source.get(i));
+		Collections.shuffle(source);
+
+		final int unused = RANDOM.nextInt(10);
+		final byte[][] data = compress(compressor, source, unused);
+		final CompressedStringArena arena = new CompressedStringArena(round % 2 == 0, 1000);
+		arena.addAll(compressor, source);
+
+		CompressedStringSorter.sort(data, compressor);
+		final CompressedStringArena sortedArena = CompressedStringSorter.sort(arena, compressor);
+		Collections.sort(source);
+
+		assertEquals(source.size(), sortedArena.size());
+		assertEquals(round % 2 == 0, sortedArena.isOffHeap());
+		for (int i = 0; i < source.size(); i++) {
+			assertEquals(source.get(i), getString(compressor.decompress(data[i])));
+			assertEquals(source.get(i), getString(sortedArena.decompress(i, compressor)));
+		}
+		for (int i = source.size(); i < data.length; i++)
+			assertNull(data[i]);
+	}
+
+	private static byte[] reversed(final byte[] charset) {
+		final byte[] reversed = new byte[charset.length];
+		for (int i = 0; i < charset.length; i++)
+			reversed[i] = charset[charset.length - 1 - i];
+		return reversed;
+	}
+
+	private static byte[][] compress(final AsciiCompressor compressor, final List<String> source, final int unused) {
+		final byte[][] data = new byte[source.size() + unused][]; // Nulls at the end.
+		for (int i = 0; i < source.size(); i++)
+			data[i] = compressor.compress(getBytes(source.get(i)));
+		return data;
+	}
+
+}
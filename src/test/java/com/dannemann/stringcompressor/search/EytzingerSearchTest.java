@@ -0,0 +1,117 @@
+package com.dannemann.stringcompressor.search;
+
+import com.dannemann.stringcompressor.AsciiCompressor;
+import com.dannemann.stringcompressor.BaseTest;
+import com.dannemann.stringcompressor.FiveBitAsciiCompressor;
+import com.dannemann.stringcompressor.FourBitAsciiCompressor;
+import com.dannemann.stringcompressor.SixBitAsciiCompressor;
+import com.dannemann.stringcompressor.arena.CompressedStringArena;
+import com.dannemann.stringcompressor.bulk.ManagedBulkCompressor;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static com.dannemann.stringcompressor.AsciiCompressor.getBytes;
+import static com.dannemann.stringcompressor.AsciiCompressor.getString;
+import static com.dannemann.stringcompressor.FiveBitAsciiCompressor.DEFAULT_5BIT_CHARSET;
+import static com.dannemann.stringcompressor.FourBitAsciiCompressor.DEFAULT_4BIT_CHARSET;
+import static com.dannemann.stringcompressor.SixBitAsciiCompressor.DEFAULT_6BIT_CHARSET;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Jean Dannemann Carone
+ */
+class EytzingerSearchTest extends BaseTest {
+
+	@Test
+	void searchTest() {
+		for (int i = 0; i < 100; i++) {
+			search(new FourBitAsciiCompressor(true, true), DEFAULT_4BIT_CHARSET, i);
+			search(new FiveBitAsciiCompressor(true, true), DEFAULT_5BIT_CHARSET, i);
+			search(new SixBitAsciiCompressor(true, true), DEFAULT_6BIT_CHARSET, i);
+		}
+	}
+
+	@Test
+	void unsortedCharsetTest() {
+		final byte[] charset = {'9', '8', '7', '6', '5', '4', '3', '2', '1', '0', '#', '+', ',', '-', '.', ';'};
+		final FourBitAsciiCompressor compressor = new FourBitAsciiCompressor(charset, true, true);
+		final List<String> source = generateRandomUniqueOrderedStringList(2000, 0, 20, charset);
+		final byte[][] destination = new byte[source.size()][];
+		new ManagedBulkCompressor(compressor, destination).compressAndAddAll(source);
+		final FourBitBinarySearch binary = new FourBitBinarySearch(destination, false, charset);
+		final EytzingerSearch eytzinger = new EytzingerSearch(binary);
+		assertFalse(binary.isPackedComparison());
+		for (int j = 0; j < source.size(); j++)
+			assertEquals(j, eytzinger.search(getBytes(source.get(j))));
+	}
+
+	@Test
+	void edgeCaseTest() {
+		final byte[][] empty = new byte[10][];
+		assertEquals(0, new EytzingerSearch(new SixBitBinarySearch(empty, false)).size());
+		assertEquals(-1, new EytzingerSearch(new SixBitBinarySearch(empty, false)).search(getBytes("A")));
+		assertEquals(-1, new EytzingerSearch(new SixBitBinarySearch(new CompressedStringArena(), false)).search(getBytes("")));
+
+		final SixBitAsciiCompressor compressor = new SixBitAsciiCompressor();
+		final byte[][] one = {compressor.compress(getBytes("B")), null};
+		final EytzingerSearch search = new EytzingerSearch(new SixBitBinarySearch(one, false));
+		assertEquals(1, search.size());
+		assertEquals(-1, search.search(getBytes("A")));
+		assertEquals(0, search.search(getBytes("B")));
+		assertEquals(-2, search.search(getBytes("BB")));
+		assertEquals(-2, search.search(getBytes("C")));
+	}
+
+	private void search(final AsciiCompressor compressor, final byte[] charset, final int round) {
+		final List<String> source = generateRandomUniqueOrderedStringList(RANDOM.nextInt(1, 3000), 0, 30, charset);
+		final byte[][] destination = new byte[source.size() + RANDOM.nextInt(10)][]; // Nulls at the end.
+		new ManagedBulkCompressor(compressor, destination).compressAndAddAll(source);
+		final CompressedStringArena arena = new CompressedStringArena(round % 2 == 0, 1000);
+		new ManagedBulkCompressor(compressor, arena).compressAndAddAll(source);
+
+		for (final boolean prefix : new boolean[]{false, true}) {
+			final BaseBinarySearch binary = binarySearch(compressor, destination, prefix);
+			// Small pages, so nodes spread across several of them.
+			final EytzingerSearch fromArray = new EytzingerSearch(binary, 500);
+			final EytzingerSearch fromArena = new EytzingerSearch(binarySearch(compressor, arena, prefix));
+			assertEquals(source.size(), fromArray.size());
+
+			for (int j = 0; j < source.size() * 2; j++) {
+				final String key = j < source.size() ? source.get(j) :
+					getString(generateRandomStringBytes(RANDOM.nextInt(32), charset));
+				final int expected = Collections.binarySearch(source, key);
+				final int found = fromArray.search(getBytes(key));
+				assertEquals(found, fromArena.search(getBytes(key)));
+
+				if (!prefix)
+					assertEquals(expected, found);
+				else if (found >= 0) { // First string starting with the key.
+					assertTrue(source.get(found).startsWith(key));
+					assertTrue(found == 0 || !source.get(found - 1).startsWith(key));
+				} else
+					assertEquals(expected, found);
+			}
+		}
+	}
+
+	private static BaseBinarySearch binarySearch(final AsciiCompressor compressor, final byte[][] data, final boolean prefix) {
+		return switch (compressor.getBitsPerCharacter()) {
+			case 4 -> new FourBitBinarySearch(data, prefix);
+			case 5 -> new FiveBitBinarySearch(data, prefix);
+			default -> new SixBitBinarySearch(data, prefix);
+		};
+	}
+
+	private static BaseBinarySearch binarySearch(final AsciiCompressor compressor, final CompressedStringArena arena, final boolean prefix) {
+		return switch (compressor.getBitsPerCharacter()) {
+			case 4 -> new FourBitBinarySearch(arena, prefix);
+			case 5 -> new FiveBitBinarySearch(arena, prefix);
+			default -> new SixBitBinarySearch(arena, prefix);
+		};
+	}
+
+}
@@ -2,17 +2,28 @@ package com.dannemann.stringcompressor.search;
 
 import com.dannemann.stringcompressor.BaseTest;
 import com.dannemann.stringcompressor.FiveBitAsciiCompressor;
+import com.dannemann.stringcompressor.arena.CompressedStringArena;
 import com.dannemann.stringcompressor.bulk.ManagedBulkCompressor;
 import org.junit.jupiter.api.RepeatedTest;
 import org.junit.jupiter.api.Test;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
 
 import static com.dannemann.stringcompressor.AsciiCompressor.getBytes;
+import static com.dannemann.stringcompressor.AsciiCompressor.getString;
 import static com.dannemann.stringcompressor.FiveBitAsciiCompressor.DEFAULT_5BIT_CHARSET;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * @author Jean Dannemann Carone
@@ -227,4 +238,221 @@ class FiveBitBinarySearchTest extends BaseTest {
 		assertEquals(-6, Arrays.binarySearch(CLIENT_DATA_ARRAY, "ABCDEFGHIEE "));
 	}
 
+	// -----------------------------------------------------------------------------------------------------------------
+	// Arena:
+
+	@Test
+	void arenaSearchTest() {
+		for (int i = 0; i < 200; i++) {
+			final List<String> source = generateRandomUniqueOrderedStringList(2000, 0, 30, DEFAULT_5BIT_CHARSET);
+			final byte[][] destination = new byte[source.size()][];
+			new ManagedBulkCompressor(COMPRESSOR, destination).compressAndAddAll(source);
+			// Small pages (off-heap every other time) so the strings spread across several of them.
+			final CompressedStringArena arena = new CompressedStringArena(i % 2 == 0, 1000);
+			new ManagedBulkCompressor(COMPRESSOR, arena).compressAndAddAll(source);
+			for (final boolean prefix : new boolean[]{false, true}) {
+				final FiveBitBinarySearch arraySearch = new FiveBitBinarySearch(destination, prefix);
+				final FiveBitBinarySearch arenaSearch = new FiveBitBinarySearch(arena, prefix);
+				for (int j = 0, len = source.size(); j < len; j++) {
+					final byte[] key = getBytes(source.get(j));
+					final byte[] other = generateRandomStringBytes(RANDOM.nextInt(30), DEFAULT_5BIT_CHARSET);
+					assertEquals(arraySearch.search(key), arenaSearch.search(key));
+					assertEquals(arraySearch.search(other), arenaSearch.search(other));
+				}
+			}
+		}
+		assertEquals(-1, new FiveBitBinarySearch(new CompressedStringArena(), false).search(getBytes("A")));
+	}
+
+	@Test
+	void arenaGrowingStringsTest() {
+		// Each thread reuses one scratch array for arena strings, which must grow with the longest string.
+		for (final boolean offHeap : new boolean[]{false, true}) {
+			final CompressedStringArena arena = new CompressedStringArena(offHeap, 1000);
+			final FiveBitBinarySearch search = new FiveBitBinarySearch(arena, false);
+			final FiveBitBinarySearch prefixSearch = new FiveBitBinarySearch(arena, true);
+			for (int length = 1; length <= 500; length++) {
+				arena.add(COMPRESSOR, getBytes("A".repeat(length))); // Each string is a prefix of the next: still sorted.
+				assertEquals(length - 1, search.search(getBytes("A".repeat(length))));
+				assertEquals(-(length + 1), search.search(getBytes("A".repeat(length + 1))));
+				assertEquals(length / 2, search.search(getBytes("A".repeat(length / 2 + 1))));
+				assertTrue(prefixSearch.search(getBytes("A".repeat(length))) >= length - 1);
+			}
+		}
+	}
+
+	@Test
+	void packedComparisonTest() {
+		// Few characters, including the one with code zero, so strings often differ only in length or padding.
+		final byte[] charset = {DEFAULT_5BIT_CHARSET[0], DEFAULT_5BIT_CHARSET[1], DEFAULT_5BIT_CHARSET[31]};
+		for (int i = 0; i < 200; i++) {
+			final List<String> source = generateRandomUniqueOrderedStringList(300, 0, 13, charset);
+			final byte[][] destination = new byte[source.size()][];
+			new ManagedBulkCompressor(COMPRESSOR, destination).compressAndAddAll(source);
+			final FiveBitBinarySearch exact = new FiveBitBinarySearch(destination, false);
+			final FiveBitBinarySearch prefix = new FiveBitBinarySearch(destination, true);
+			assertTrue(exact.isPackedComparison());
+			for (int j = 0; j < 300; j++) {
+				final String key = getString(generateRandomStringBytes(RANDOM.nextInt(15), charset));
+				final int expected = Collections.binarySearch(source, key);
+				final int found = prefix.search(getBytes(key));
+				assertEquals(expected, exact.search(getBytes(key)));
+				if (found >= 0)
+					assertTrue(source.get(found).startsWith(key));
+				else
+					assertEquals(expected, found); // No string starts with the key.
+			}
+		}
+		assertFalse(new FiveBitBinarySearch(new byte[0][], false, new byte[]{'B', 'A'}).isPackedComparison());
+	}
+
+	@Test
+	void unsortedCharsetTest() {
+		final byte[] charset = new byte[DEFAULT_5BIT_CHARSET.length];
+		for (int i = 0; i < charset.length; i++)
+			charset[i] = DEFAULT_5BIT_CHARSET[charset.length - 1 - i];
+		final FiveBitAsciiCompressor compressor = new FiveBitAsciiCompressor(charset, true, true);
+		final byte[] alphabet = {charset[0], charset[1], charset[charset.length - 1]};
+		for (int i = 0; i < 100; i++) {
+			final List<String> source = generateRandomUniqueOrderedStringList(500, 0, 12, alphabet);
+			final byte[][] destination = new byte[source.size()][];
+			new ManagedBulkCompressor(compressor, destination).compressAndAddAll(source);
+			final FiveBitBinarySearch search = new FiveBitBinarySearch(destination, false, charset);
+			assertFalse(search.isPackedComparison());
+			for (int j = 0; j < 500; j++) {
+				final String key = getString(generateRandomStringBytes(RANDOM.nextInt(14), alphabet));
+				assertEquals(Collections.binarySearch(source, key), search.search(getBytes(key)));
+			}
+		}
+	}
+
+	@Test
+	void prefixKeysTest() {
+		final byte[] charset = {DEFAULT_5BIT_CHARSET[0], DEFAULT_5BIT_CHARSET[1], DEFAULT_5BIT_CHARSET[31]};
+		for (int i = 0; i < 100; i++) {
+			final List<String> source = generateRandomUniqueOrderedStringList(1000, 0, 30, charset);
+			final int built = RANDOM.nextInt(source.size() + 1); // Strings after this one are added later.
+			final byte[][] destination = new byte[source.size() + 10][];
+			final CompressedStringArena arena = new CompressedStringArena(i % 2 == 0, 1000);
+			new ManagedBulkCompressor(COMPRESSOR, destination).compressAndAddAll(source.subList(0, built));
+			new ManagedBulkCompressor(COMPRESSOR, arena).compressAndAddAll(source.subList(0, built));
+			final FiveBitBinarySearch[] searches = {
+				new FiveBitBinarySearch(destination, false), new FiveBitBinarySearch(destination, true),
+				new FiveBitBinarySearch(arena, false), new FiveBitBinarySearch(arena, true)};
+			for (final FiveBitBinarySearch search : searches) {
+				search.buildPrefixKeys();
+				assertTrue(search.hasPrefixKeys());
+			}
+			for (int j = built; j < source.size(); j++) {
+				destination[j] = COMPRESSOR.compress(source.get(j));
+				arena.add(COMPRESSOR, getBytes(source.get(j)));
+			}
+			for (int j = 0; j < source.size() * 2; j++) {
+				final String key = j < source.size() ? source.get(j) : getString(generateRandomStringBytes(RANDOM.nextInt(32), charset));
+				final int expected = Collections.binarySearch(source, key);
+				for (final FiveBitBinarySearch search : searches) {
+					final int found = search.search(getBytes(key));
+					if (!search.isPrefixSearch() || found < 0)
+						assertEquals(expected, found);
+					else
+						assertTrue(source.get(found).startsWith(key));
+				}
+			}
+		}
+		assertThrows(IllegalStateException.class, () -> new FiveBitBinarySearch(new byte[0][], false, new byte[]{'B', 'A'}).buildPrefixKeys());
+	}
+
+	@Test
+	void searchAllTest() {
+		final byte[] charset = {DEFAULT_5BIT_CHARSET[0], DEFAULT_5BIT_CHARSET[1], DEFAULT_5BIT_CHARSET[2], DEFAULT_5BIT_CHARSET[31]};
+		for (int i = 0; i < 50; i++) {
+			final List<String> source = generateRandomUniqueOrderedStringList(RANDOM.nextInt(1, 5000), 0, 20, charset);
+			final byte[][] destination = new byte[source.size() + RANDOM.nextInt(10)][];
+			final CompressedStringArena arena = new CompressedStringArena(i % 2 == 0, 1000);
+			new ManagedBulkCompressor(COMPRESSOR, destination).compressAndAddAll(source);
+			new ManagedBulkCompressor(COMPRESSOR, arena).compressAndAddAll(source);
+			final byte[][] keys = new byte[RANDOM.nextInt(5000)][];
+			for (int j = 0; j < keys.length; j++)
+				keys[j] = j % 2 == 0 ? getBytes(source.get(RANDOM.nextInt(source.size()))) : generateRandomStringBytes(RANDOM.nextInt(22), charset);
+			for (int j = 0; j < keys.length; j += 7) // Some keys with characters outside the charset.
+				keys[j] = new byte[]{(byte) RANDOM.nextInt(-128, 0), (byte) RANDOM.nextInt(256), charset[0]};
+			final FiveBitBinarySearch[] searches = {
+				new FiveBitBinarySearch(destination, false), new FiveBitBinarySearch(destination, true),
+				new FiveBitBinarySearch(arena, false), new FiveBitBinarySearch(arena, true)};
+			for (final FiveBitBinarySearch search : searches) {
+				final int[] results = new int[keys.length];
+				final int[] parallel = new int[keys.length];
+				search.searchAll(keys, results);
+				search.searchAll(keys, parallel, ForkJoinPool.commonPool());
+				assertArrayEquals(results, parallel);
+				for (int j = 0; j < keys.length; j++) {
+					final String key = getString(keys[j]);
+					final int found = results[j];
+					if (!search.isPrefixSearch())
+						assertEquals(search.search(keys[j]), found);
+					if (keys[j].length > 0 && keys[j][0] < 0)
+						continue; // Outside the charset: only the order of search() applies.
+					if (search.isPrefixSearch() && found >= 0) { // First string starting with the key.
+						assertTrue(source.get(found).startsWith(key));
+						assertTrue(found == 0 || !source.get(found - 1).startsWith(key));
+					} else
+						assertEquals(Collections.binarySearch(source, key), found);
+				}
+			}
+		}
+		assertThrows(IllegalArgumentException.class, () -> new FiveBitBinarySearch(new byte[0][], false).searchAll(new byte[2][], new int[1]));
+	}
+
+	@Test
+	void rangeTest() {
+		final byte[] charset = {DEFAULT_5BIT_CHARSET[0], DEFAULT_5BIT_CHARSET[1], DEFAULT_5BIT_CHARSET[2], DEFAULT_5BIT_CHARSET[31]};
+		for (int i = 0; i < 50; i++) {
+			final List<String> source = new ArrayList<>();
+			for (final String string : generateRandomUniqueOrderedStringList(RANDOM.nextInt(1, 2000), 0, 12, charset))
+				for (int copies = RANDOM.nextInt(1, 4); copies > 0; copies--) // Duplicates.
+					source.add(string);
+			final byte[][] destination = new byte[source.size() + RANDOM.nextInt(10)][];
+			final CompressedStringArena arena = new CompressedStringArena(i % 2 == 0, 1000);
+			new ManagedBulkCompressor(COMPRESSOR, destination).compressAndAddAll(source);
+			new ManagedBulkCompressor(COMPRESSOR, arena).compressAndAddAll(source);
+			final FiveBitBinarySearch[] searches = {
+				new FiveBitBinarySearch(destination, false), new FiveBitBinarySearch(destination, true),
+				new FiveBitBinarySearch(arena, false), new FiveBitBinarySearch(arena, true)};
+			for (int j = 0; j < 300; j++) {
+				final String key = j % 2 == 0 ? getString(generateRandomStringBytes(RANDOM.nextInt(14), charset)) :
+					prefix(source.get(RANDOM.nextInt(source.size())));
+				int lower = 0, upper = 0, from = -1, to = -1;
+				for (int k = 0; k < source.size(); k++) {
+					lower += source.get(k).compareTo(key) < 0 ? 1 : 0;
+					upper += source.get(k).compareTo(key) <= 0 ? 1 : 0;
+					if (source.get(k).startsWith(key)) {
+						from = from < 0 ? k : from;
+						to = k + 1;
+					}
+				}
+				final IndexRange expected = from < 0 ? new IndexRange(lower, lower) : new IndexRange(from, to);
+				for (final FiveBitBinarySearch search : searches) {
+					assertEquals(lower, search.lowerBound(getBytes(key)));
+					assertEquals(upper, search.upperBound(getBytes(key)));
+					final IndexRange range = search.prefixRange(getBytes(key));
+					assertEquals(expected, range);
+					final Iterator<ByteBuffer> entries = search.entries(range);
+					for (int k = range.from(); k < range.to(); k++) {
+						final ByteBuffer entry = entries.next();
+						final byte[] compressed = new byte[entry.remaining()];
+						entry.get(compressed);
+						assertArrayEquals(COMPRESSOR.compress(source.get(k)), compressed);
+					}
+					assertFalse(entries.hasNext());
+					assertThrows(NoSuchElementException.class, entries::next);
+				}
+			}
+			assertEquals(new IndexRange(0, source.size()), searches[RANDOM.nextInt(4)].prefixRange(new byte[0]));
+		}
+	}
+
+	private static String prefix(final String string) { // Short prefixes match many strings.
+		return string.substring(0, Math.min(string.length(), RANDOM.nextInt(3)));
+	}
+
 }
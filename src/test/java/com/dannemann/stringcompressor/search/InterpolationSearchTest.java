@@ -0,0 +1,194 @@
+package com.dannemann.stringcompressor.search;
+
+import com.dannemann.stringcompressor.AsciiCompressor;
+import com.dannemann.stringcompressor.BaseTest;
+import com.dannemann.stringcompressor.FiveBitAsciiCompressor;
+import com.dannemann.stringcompressor.FourBitAsciiCompressor;
+import com.dannemann.stringcompressor.SixBitAsciiCompressor;
+import com.dannemann.stringcompressor.arena.CompressedStringArena;
+import com.dannemann.stringcompressor.bulk.ManagedBulkCompressor;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+import static com.dannemann.stringcompressor.AsciiCompressor.getBytes;
+import static com.dannemann.stringcompressor.AsciiCompressor.getString;
+import static com.dannemann.stringcompressor.FiveBitAsciiCompressor.DEFAULT_5BIT_CHARSET;
+import static com.dannemann.stringcompressor.FourBitAsciiCompressor.DEFAULT_4BIT_CHARSET;
+import static com.dannemann.stringcompressor.SixBitAsciiCompressor.DEFAULT_6BIT_CHARSET;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Jean Dannemann Carone
+ */
+class InterpolationSearchTest extends BaseTest {
+
+	@Test
+	void searchTest() {
+		for (int i = 0; i < 100; i++) {
+			search(new FourBitAsciiCompressor(true, true), DEFAULT_4BIT_CHARSET, i);
+			search(new FiveBitAsciiCompressor(true, true), DEFAULT_5BIT_CHARSET, i);
+			search(new SixBitAsciiCompressor(true, true), DEFAULT_6BIT_CHARSET, i);
+		}
+	}
+
+	@Test
+	void uniformDataTest() {
+		final List<String> source = numericIds(200_000, false);
+		final byte[][] destination = new byte[source.size()][];
+		new ManagedBulkCompressor(new FourBitAsciiCompressor(true, true), destination).compressAndAddAll(source);
+		final FourBitBinarySearch binary = new FourBitBinarySearch(destination, false);
+		final InterpolationSearch interpolation = new InterpolationSearch(binary);
+		final InterpolationSearch bisection = new InterpolationSearch(binary, 0);
+		long interpolationProbes = 0;
+		long bisectionProbes = 0;
+
+		for (int j = 0; j < 10_000; j++) {
+			final String key = j % 2 == 0 ? source.get(RANDOM.nextInt(source.size())) : String.valueOf(RANDOM.nextLong(100_000_000_000L, 1_000_000_000_000L));
+			final int expected = Collections.binarySearch(source, key);
+			assertEquals(expected, interpolation.search(getBytes(key)));
+			assertEquals(expected, bisection.search(getBytes(key)));
+			interpolationProbes += interpolation.probes(getBytes(key));
+			bisectionProbes += bisection.probes(getBytes(key));
+		}
+
+		assertTrue(interpolationProbes * 2 < bisectionProbes, interpolationProbes + " vs " + bisectionProbes);
+	}
+
+	@Test
+	void skewedDataTest() {
+		final List<String> source = numericIds(100_000, true);
+		final CompressedStringArena arena = new CompressedStringArena();
+		new ManagedBulkCompressor(new FourBitAsciiCompressor(true, true), arena).compressAndAddAll(source);
+		final InterpolationSearch interpolation = new InterpolationSearch(new FourBitBinarySearch(arena, false));
+		long probes = 0;
+
+		for (int j = 0; j < 10_000; j++) {
+			final String key = source.get(RANDOM.nextInt(source.size()));
+			assertEquals(Collections.binarySearch(source, key), interpolation.search(getBytes(key)));
+			probes += interpolation.probes(getBytes(key));
+		}
+
+		// Bad guesses fall back to bisection: never far from log2(n) probes.
+		assertTrue(probes / 10_000 < 30, String.valueOf(probes));
+	}
+
+	@Test
+	void codesAbsentFromDataTest() {
+		// Every 12-character string of '0' and '9': keys made of the other codes fall between, before, or after them.
+		final FourBitAsciiCompressor compressor = new FourBitAsciiCompressor(true, true);
+		final byte[][] data = new byte[4096][];
+		final List<String> source = new ArrayList<>();
+		for (int i = 0; i < data.length; i++) {
+			final String string = String.format("%12s", Integer.toBinaryString(i)).replace(' ', '0').replace('1', '9');
+			source.add(string);
+			data[i] = compressor.compress(getBytes(string));
+		}
+
+		final FourBitBinarySearch binary = new FourBitBinarySearch(data, false);
+		final InterpolationSearch interpolation = new InterpolationSearch(binary);
+		assertEquals(-2049, interpolation.search(getBytes("5;;;;;;;;;;;")));
+
+		for (int j = 0; j < 10_000; j++) {
+			final byte[] key = generateRandomStringBytes(RANDOM.nextInt(1, 16), DEFAULT_4BIT_CHARSET);
+			if (j % 2 == 0) // Mostly the data's codes.
+				for (int k = 0; k < key.length; k++)
+					key[k] = RANDOM.nextInt(4) != 0 ? source.get(j % source.size()).getBytes()[k % 12] : key[k];
+			assertEquals(Collections.binarySearch(source, getString(key)), interpolation.search(key));
+			assertEquals(binary.search(key), interpolation.search(key));
+		}
+	}
+
+	@Test
+	void unsortedCharsetTest() {
+		final byte[] charset = {'9', '8', '7', '6', '5', '4', '3', '2', '1', '0', '#', '+', ',', '-', '.', ';'};
+		assertThrows(IllegalArgumentException.class,
+			() -> new InterpolationSearch(new FourBitBinarySearch(new byte[1][], false, charset)));
+	}
+
+	@Test
+	void edgeCaseTest() {
+		final byte[][] empty = new byte[10][];
+		assertEquals(0, new InterpolationSearch(new SixBitBinarySearch(empty, false)).size());
+		assertEquals(-1, new InterpolationSearch(new SixBitBinarySearch(empty, false)).search(getBytes("A")));
+		assertEquals(-1, new InterpolationSearch(new SixBitBinarySearch(new CompressedStringArena(), false)).search(getBytes("")));
+
+		final SixBitAsciiCompressor compressor = new SixBitAsciiCompressor();
+		final byte[][] one = {compressor.compress(getBytes("B")), null};
+		final InterpolationSearch search = new InterpolationSearch(new SixBitBinarySearch(one, false));
+		assertEquals(1, search.size());
+		assertEquals(-1, search.search(getBytes("A")));
+		assertEquals(0, search.search(getBytes("B")));
+		assertEquals(-2, search.search(getBytes("BB")));
+		assertEquals(-2, search.search(getBytes("C")));
+		assertEquals(-2, search.search(getBytes("b"))); // Outside the charset.
+	}
+
+	private void search(final AsciiCompressor compressor, final byte[] charset, final int round) {
+		final List<String> source = generateRandomUniqueOrderedStringList(RANDOM.nextInt(1, 3000), 0, 30, charset);
+		final byte[][] destination = new byte[source.size() + RANDOM.nextInt(10)][]; // Nulls at the end.
+		new ManagedBulkCompressor(compressor, destination).compressAndAddAll(source);
+		final CompressedStringArena arena = new CompressedStringArena(round % 2 == 0, 1000);
+		new ManagedBulkCompressor(compressor, arena).compressAndAddAll(source);
+
+		for (final boolean prefix : new boolean[]{false, true}) {
+			final InterpolationSearch fromArray = new InterpolationSearch(binarySearch(compressor, destination, prefix));
+			final InterpolationSearch fromArena = new InterpolationSearch(binarySearch(compressor, arena, prefix), 1);
+			assertEquals(source.size(), fromArray.size());
+
+			for (int j = 0; j < source.size() * 2; j++) {
+				final String key = j < source.size() ? source.get(j) :
+					getString(generateRandomStringBytes(RANDOM.nextInt(32), charset));
+				final int expected = Collections.binarySearch(source, key);
+				final int found = fromArray.search(getBytes(key));
+				final int foundInArena = fromArena.search(getBytes(key));
+
+				if (!prefix) {
+					assertEquals(expected, found);
+					assertEquals(expected, foundInArena);
+				} else if (found >= 0) { // Prefixes are unique in this data only up to the key length.
+					assertTrue(source.get(found).startsWith(key));
+					assertTrue(source.get(foundInArena).startsWith(key));
+				} else {
+					assertEquals(expected, found);
+					assertEquals(expected, foundInArena);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param skewed If {@code true}, lengths vary and most IDs crowd at the low end of the range.
+	 */
+	private static List<String> numericIds(final int count, final boolean skewed) {
+		final TreeSet<String> ids = new TreeSet<>();
+
+		while (ids.size() < count)
+			ids.add(String.valueOf(skewed ?
+				(long) Math.pow(10, RANDOM.nextDouble(12)) : RANDOM.nextLong(100_000_000_000L, 1_000_000_000_000L)));
+
+		return new ArrayList<>(ids);
+	}
+
+	private static BaseBinarySearch binarySearch(final AsciiCompressor compressor, final byte[][] data, final boolean prefix) {
+		return switch (compressor.getBitsPerCharacter()) {
+			case 4 -> new FourBitBinarySearch(data, prefix);
+			case 5 -> new FiveBitBinarySearch(data, prefix);
+			default -> new SixBitBinarySearch(data, prefix);
+		};
+	}
+
+	private static BaseBinarySearch binarySearch(final AsciiCompressor compressor, final CompressedStringArena arena, final boolean prefix) {
+		return switch (compressor.getBitsPerCharacter()) {
+			case 4 -> new FourBitBinarySearch(arena, prefix);
+			case 5 -> new FiveBitBinarySearch(arena, prefix);
+			default -> new SixBitBinarySearch(arena, prefix);
+		};
+	}
+
+}
@@ -0,0 +1,109 @@
+package com.dannemann.stringcompressor.stream;
+
+import com.dannemann.stringcompressor.AsciiCompressor;
+import com.dannemann.stringcompressor.BaseTest;
+import com.dannemann.stringcompressor.FiveBitAsciiCompressor;
+import com.dannemann.stringcompressor.FourBitAsciiCompressor;
+import com.dannemann.stringcompressor.SixBitAsciiCompressor;
+import com.dannemann.stringcompressor.exception.CharacterNotSupportedException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static com.dannemann.stringcompressor.FiveBitAsciiCompressor.DEFAULT_5BIT_CHARSET;
+import static com.dannemann.stringcompressor.FourBitAsciiCompressor.DEFAULT_4BIT_CHARSET;
+import static com.dannemann.stringcompressor.SixBitAsciiCompressor.DEFAULT_6BIT_CHARSET;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author Jean Dannemann Carone
+ */
+class CompressingOutputStreamTest extends BaseTest {
+
+	@Test
+	void roundTripTest() throws IOException {
+		roundTrip(new FourBitAsciiCompressor(true), DEFAULT_4BIT_CHARSET);
+		roundTrip(new FiveBitAsciiCompressor(true), DEFAULT_5BIT_CHARSET);
+		roundTrip(new SixBitAsciiCompressor(true), DEFAULT_6BIT_CHARSET);
+	}
+
+	@Test
+	void bodyMatchesCompressTest() throws IOException {
+		// A multiple of 8 characters is compressed exactly as compress(byte[]) does, minus its trailing flag byte.
+		final SixBitAsciiCompressor compressor = new SixBitAsciiCompressor();
+		for (int length = 0; length <= 800; length += 8) {
+			final byte[] str = generateRandomStringBytes(length, DEFAULT_6BIT_CHARSET);
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			try (CompressingOutputStream out = new CompressingOutputStream(bytes, compressor)) {
+				out.write(str);
+			}
+			final byte[] stream = bytes.toByteArray();
+			final byte[] compressed = compressor.compress(str);
+			assertArrayEquals(Arrays.copyOf(compressed, length * 6 / 8), Arrays.copyOf(stream, stream.length - Long.BYTES));
+		}
+	}
+
+	@Test
+	void invalidCharTest() throws IOException {
+		final CompressingOutputStream out = new CompressingOutputStream(new ByteArrayOutputStream(), new FiveBitAsciiCompressor(true));
+		out.write(AsciiCompressor.getBytes("HELLO"));
+		assertThrows(CharacterNotSupportedException.class, () -> out.write(AsciiCompressor.getBytes(" WORLD! AGAIN")));
+	}
+
+	@Test
+	void writeAfterFailureTest() throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final CompressingOutputStream out = new CompressingOutputStream(bytes, new FiveBitAsciiCompressor(true));
+		out.write(AsciiCompressor.getBytes("HELLO W"));
+		assertThrows(CharacterNotSupportedException.class, () -> out.write('!')); // Completes a group.
+
+		assertThrows(IOException.class, () -> out.write('A'));
+		assertThrows(IOException.class, () -> out.write(AsciiCompressor.getBytes("ABCDEFGHIJ")));
+		assertThrows(IOException.class, out::finish);
+		out.close(); // Closes the underlying stream only.
+		assertEquals(0, bytes.size());
+
+		final CompressingOutputStream tail = new CompressingOutputStream(new ByteArrayOutputStream(), new FourBitAsciiCompressor(true));
+		tail.write('a');
+		assertThrows(CharacterNotSupportedException.class, tail::finish);
+		assertThrows(IOException.class, () -> tail.write('1'));
+		assertThrows(IOException.class, tail::finish);
+	}
+
+	@Test
+	void writeAfterFinishTest() throws IOException {
+		final CompressingOutputStream out = new CompressingOutputStream(new ByteArrayOutputStream(), new FourBitAsciiCompressor());
+		out.write('1');
+		out.finish();
+		out.finish();
+		assertEquals(1, out.getCount());
+		assertThrows(IOException.class, () -> out.write('2'));
+	}
+
+	private static void roundTrip(final AsciiCompressor compressor, final byte[] charset) throws IOException {
+		for (int i = 0; i < 2000; i++) {
+			final byte[] str = generateRandomStringBytes(RANDOM.nextInt(i < 1000 ? 40 : 40000), charset);
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			try (CompressingOutputStream out = new CompressingOutputStream(bytes, compressor)) {
+				// Random fragments, including single bytes.
+				for (int off = 0, len; off < str.length; off += len) {
+					len = Math.min(str.length - off, RANDOM.nextInt(20000));
+					if (len == 1)
+						out.write(str[off]);
+					else
+						out.write(str, off, len);
+				}
+				assertEquals(str.length, out.getCount());
+			}
+			try (DecompressingInputStream in = new DecompressingInputStream(new ByteArrayInputStream(bytes.toByteArray()), compressor)) {
+				assertArrayEquals(str, in.readAllBytes());
+			}
+		}
+	}
+
+}
@@ -0,0 +1,104 @@
+package com.dannemann.stringcompressor.stream;
+
+import com.dannemann.stringcompressor.AsciiCompressor;
+import com.dannemann.stringcompressor.BaseTest;
+import com.dannemann.stringcompressor.FiveBitAsciiCompressor;
+import com.dannemann.stringcompressor.FourBitAsciiCompressor;
+import com.dannemann.stringcompressor.SixBitAsciiCompressor;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static com.dannemann.stringcompressor.FiveBitAsciiCompressor.DEFAULT_5BIT_CHARSET;
+import static com.dannemann.stringcompressor.FourBitAsciiCompressor.DEFAULT_4BIT_CHARSET;
+import static com.dannemann.stringcompressor.SixBitAsciiCompressor.DEFAULT_6BIT_CHARSET;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author Jean Dannemann Carone
+ */
+class DecompressingInputStreamTest extends BaseTest {
+
+	@Test
+	void singleByteReadsTest() throws IOException {
+		final FiveBitAsciiCompressor compressor = new FiveBitAsciiCompressor();
+		for (int length = 0; length <= 100; length++) {
+			final byte[] str = generateRandomStringBytes(length, DEFAULT_5BIT_CHARSET);
+			try (DecompressingInputStream in = new DecompressingInputStream(new ByteArrayInputStream(compress(str, compressor)), compressor)) {
+				for (byte b : str)
+					assertEquals(b & 0xFF, in.read());
+				assertEquals(-1, in.read());
+				assertEquals(-1, in.read());
+			}
+		}
+	}
+
+	@Test
+	void slowSourceTest() throws IOException {
+		// The underlying stream returns at most a few bytes per read.
+		final SixBitAsciiCompressor compressor = new SixBitAsciiCompressor();
+		for (int i = 0; i < 1000; i++) {
+			final byte[] str = generateRandomStringBytes(RANDOM.nextInt(1000), DEFAULT_6BIT_CHARSET);
+			final InputStream source = new ByteArrayInputStream(compress(str, compressor)) {
+				@Override
+				public synchronized int read(byte[] b, int off, int len) {
+					return super.read(b, off, Math.min(len, 1 + RANDOM.nextInt(3)));
+				}
+			};
+			try (DecompressingInputStream in = new DecompressingInputStream(source, compressor)) {
+				assertArrayEquals(str, in.readAllBytes());
+			}
+		}
+	}
+
+	@Test
+	void skipTest() throws IOException {
+		final FourBitAsciiCompressor compressor = new FourBitAsciiCompressor();
+		final byte[] str = generateRandomStringBytes(100000, DEFAULT_4BIT_CHARSET);
+		try (DecompressingInputStream in = new DecompressingInputStream(new ByteArrayInputStream(compress(str, compressor)), compressor)) {
+			assertEquals(54321, in.skip(54321));
+			assertEquals(str[54321] & 0xFF, in.read());
+			assertEquals(100000 - 54322, in.skip(Long.MAX_VALUE));
+			assertEquals(-1, in.read());
+		}
+	}
+
+	@Test
+	void truncatedStreamTest() throws IOException {
+		final SixBitAsciiCompressor compressor = new SixBitAsciiCompressor();
+		final byte[] compressed = compress(generateRandomStringBytes(1001, DEFAULT_6BIT_CHARSET), compressor);
+		for (int length = 0; length < compressed.length; length++) {
+			final byte[] truncated = Arrays.copyOf(compressed, length);
+			final DecompressingInputStream in = new DecompressingInputStream(new ByteArrayInputStream(truncated), compressor);
+			if (length < Long.BYTES)
+				assertThrows(EOFException.class, in::readAllBytes);
+			else
+				assertThrows(IOException.class, in::readAllBytes);
+		}
+	}
+
+	@Test
+	void corruptedTrailerTest() throws IOException {
+		final FiveBitAsciiCompressor compressor = new FiveBitAsciiCompressor();
+		final byte[] compressed = compress(generateRandomStringBytes(1003, DEFAULT_5BIT_CHARSET), compressor);
+		compressed[compressed.length - 1]++;
+		final DecompressingInputStream in = new DecompressingInputStream(new ByteArrayInputStream(compressed), compressor);
+		assertThrows(IOException.class, in::readAllBytes);
+	}
+
+	private static byte[] compress(final byte[] str, final AsciiCompressor compressor) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (CompressingOutputStream out = new CompressingOutputStream(bytes, compressor)) {
+			out.write(str);
+		}
+		return bytes.toByteArray();
+	}
+
+}